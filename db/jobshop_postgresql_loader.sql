@@ -32,6 +32,8 @@ delete FROM taskworkcenterassn;
 delete FROM taskprecedence;
 delete FROM task;
 delete FROM workcenter;
+delete FROM calendarexception;
+delete FROM calendarpattern;
 delete FROM calendarshift;
 delete FROM calendar;
 delete FROM sku;
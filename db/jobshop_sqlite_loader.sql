@@ -29,6 +29,8 @@ delete from _planparameter_staging;
 delete from _sku_staging;
 delete from _calendar_staging;
 delete from _calendarshift_staging;
+delete from _calendarpattern_staging;
+delete from _calendarexception_staging;
 delete from _workcenter_staging;
 delete from _task_staging;
 delete from _taskprecedence_staging;
@@ -44,6 +46,8 @@ delete from _demandplan_staging;
 .import sku.csv _sku_staging
 .import calendar.csv _calendar_staging
 .import calendarshift.csv _calendarshift_staging
+.import calendarpattern.csv _calendarpattern_staging
+.import calendarexception.csv _calendarexception_staging
 .import workcenter.csv _workcenter_staging
 .import task.csv _task_staging
 .import taskprecedence.csv _taskprecedence_staging
@@ -56,6 +60,8 @@ delete from planparameter;
 delete from sku;
 delete from calendar;
 delete from calendarshift;
+delete from calendarpattern;
+delete from calendarexception;
 delete from workcenter;
 delete from task;
 delete from taskprecedence;
@@ -86,6 +92,15 @@ insert into calendarshift (calendarid, shiftid, shiftstart, shiftend,
 select calendarid, shiftid, shiftstart, shiftend, shiftnumber, value
 from _calendarshift_staging;
 
+insert into calendarpattern (calendarid, dayofweek, starttime, endtime,
+                             shiftnumber, value)
+select calendarid, dayofweek, starttime, endtime, shiftnumber, value
+from _calendarpattern_staging;
+
+insert into calendarexception (calendarid, exceptionstart, exceptionend, value)
+select calendarid, exceptionstart, exceptionend, value
+from _calendarexception_staging;
+
 insert into workcenter (workcenterid, efficiency_calendar, 
                         max_setups_per_shift, criticality_index)
 select workcenterid, efficiency_calendar, max_setups_per_shift,
@@ -122,6 +137,8 @@ drop table if exists _planparameter_staging;
 drop table if exists _sku_staging;
 drop table if exists _calendar_staging;
 drop table if exists _calendarshift_staging;
+drop table if exists _calendarpattern_staging;
+drop table if exists _calendarexception_staging;
 drop table if exists _workcenter_staging;
 drop table if exists _task_staging;
 drop table if exists _taskprecedence_staging;
@@ -136,6 +153,8 @@ update plan set planstart=strftime('%Y-%m-%d %H:%M:%f', planstart);
 update plan set planend=strftime('%Y-%m-%d %H:%M:%f', planend);
 update calendarshift set shiftstart=strftime('%Y-%m-%d %H:%M:%f', shiftstart);
 update calendarshift set shiftend=strftime('%Y-%m-%d %H:%M:%f', shiftend);
+update calendarexception set exceptionstart=strftime('%Y-%m-%d %H:%M:%f', exceptionstart);
+update calendarexception set exceptionend=strftime('%Y-%m-%d %H:%M:%f', exceptionend);
 update relworkorder set startdate=strftime('%Y-%m-%d %H:%M:%f', startdate);
 update relworkorder set enddate=strftime('%Y-%m-%d %H:%M:%f', enddate);
 update demand set duedate=strftime('%Y-%m-%d %H:%M:%f', duedate);
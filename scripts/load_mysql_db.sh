@@ -60,4 +60,13 @@ do
 done < $3
 
 cd $DATASETDIR
-mysql -h "$DBHOSTNAME" -u "$DBUSERNAME" -D "$DBNAME" -p < $ROOTDIR/db/jobshop_mysql_loader.sql 
+# The calendarpattern and calendarexception files are optional
+(
+  cat $ROOTDIR/db/jobshop_mysql_loader.sql
+  for optfile in calendarpattern calendarexception
+  do
+    if [ -f $optfile.csv ]; then
+      cat $ROOTDIR/db/jobshop_mysql_${optfile}_loader.sql
+    fi
+  done
+) | mysql -h "$DBHOSTNAME" -u "$DBUSERNAME" -D "$DBNAME" -p 
@@ -60,5 +60,14 @@ do
 done < $3
 
 cd $DATASETDIR
-psql -d $DBNAME -U $DBUSERNAME -h $DBHOSTNAME -f $ROOTDIR/db/jobshop_postgresql_loader.sql 
+# The calendarpattern and calendarexception files are optional
+(
+  cat $ROOTDIR/db/jobshop_postgresql_loader.sql
+  for optfile in calendarpattern calendarexception
+  do
+    if [ -f $optfile.csv ]; then
+      cat $ROOTDIR/db/jobshop_postgresql_${optfile}_loader.sql
+    fi
+  done
+) | psql -d $DBNAME -U $DBUSERNAME -h $DBHOSTNAME -f - 
 
@@ -27,8 +27,8 @@ import sqlite3
 import copy
 
 def usage():
-    print "Usage: python load_sqlite_db.py <load sequence filename> <path to dbfile> <path to dataset directory>"
-    print "For example: python load_sqlite_db.py scripts/load_sequence.dat db/jobshop.db tests/test0001"
+    print("Usage: python load_sqlite_db.py <load sequence filename> <path to dbfile> <path to dataset directory>")
+    print("For example: python load_sqlite_db.py scripts/load_sequence.dat db/jobshop.db tests/test0001")
     exit(1)
 
 def emptydatabasetable (connection, tablename):
@@ -98,10 +98,10 @@ if __name__ == "__main__":
         connection = sqlite3.connect(sqlitedb)
         connection.execute("PRAGMA foreign_keys = ON;")
 
-    except sqlite3.Error, e:
+    except sqlite3.Error as e:
         if connection:
             connection.rollback()
-        print "Error %s:" % e.args[0]
+        print("Error %s:" % e.args[0])
         sys.exit(1)
 
     ## First delete data from the tables in reverse load sequence
@@ -122,6 +122,8 @@ if __name__ == "__main__":
              "update plan set planend=strftime('%Y-%m-%d %H:%M:%f', planend)",
              "update calendarshift set shiftstart=strftime('%Y-%m-%d %H:%M:%f', shiftstart)",
              "update calendarshift set shiftend=strftime('%Y-%m-%d %H:%M:%f', shiftend)",
+             "update calendarexception set exceptionstart=strftime('%Y-%m-%d %H:%M:%f', exceptionstart)",
+             "update calendarexception set exceptionend=strftime('%Y-%m-%d %H:%M:%f', exceptionend)",
              "update relworkorder set startdate=strftime('%Y-%m-%d %H:%M:%f', startdate)",
              "update relworkorder set enddate=strftime('%Y-%m-%d %H:%M:%f', enddate)",
              "update demand set duedate=strftime('%Y-%m-%d %H:%M:%f', duedate)" ]
@@ -48,6 +48,13 @@ do
     tail -n +2 $dfile > $STAGINGDIR/$bname
 done
 
+# The calendarpattern and calendarexception files are optional; make sure
+# that the files of an earlier dataset are not imported instead
+for optfile in calendarpattern calendarexception
+do
+    test -f $DATASETDIR/$optfile.csv || : > $STAGINGDIR/$optfile.csv
+done
+
 cd $STAGINGDIR
 sqlite3 $DBFILELOC < $ROOTDIR/db/jobshop_schema_staging_sqlite.ddl
 sqlite3 $DBFILELOC < $ROOTDIR/db/jobshop_sqlite_loader.sql
@@ -0,0 +1,198 @@
+###############################################################################
+# JobShop Minimal - A minimal JobShop Scheduler                               #
+###############################################################################
+#                                                                             #
+# Copyright (c) 2017-2018 Arun Kunchithapatham                                #
+#                                                                             #
+# This program is free software: you can redistribute it and/or modify        #
+# it under the terms of the GNU Affero General Public License as published    #
+# by the Free Software Foundation, either version 3 of the License, or        #
+# (at your option) any later version.                                         #
+#                                                                             #
+# This program is distributed in the hope that it will be useful,             #
+# but WITHOUT ANY WARRANTY; without even the implied warranty of              #
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the               #
+# GNU Affero General Public License for more details.                         #
+#                                                                             #
+# You should have received a copy of the GNU Affero General Public License    #
+# along with this program.  If not, see <http://www.gnu.org/licenses/>.       #
+#                                                                             #
+# Contributors:                                                               #
+# Arun Kunchithapatham - Initial Contribution                                 #
+###############################################################################
+
+# Tests the publishing of the plans to a SQLite database with each of the
+# db_publish_modes (DIRECT, STAGING and DELTA).  For each mode, a dataset
+# is loaded into a new database and planned twice: first all the plans,
+# and then (after some demands are changed) only one of the plans.  The
+# delta counts logged by each publish and the final contents of the
+# taskplan and demandplan tables are compared with the expects.
+#
+# The lib directory must hold JobShop.jar and the SQLite JDBC driver named
+# in its manifest (sqlite-jdbc-3.16.1.jar).
+
+import sys
+import os
+import os.path
+import re
+import shutil
+import sqlite3
+import subprocess
+
+# Do not leave compiled files of the loader in the scripts directory
+sys.dont_write_bytecode = True
+import load_sqlite_db
+
+DATASET = "test0047"
+PUBLISH_MODES = [ "DIRECT", "STAGING", "DELTA" ]
+REPLAN = "Basic Plan"
+CHANGES = [ "update demand set duequantity=200 where planid='Basic Plan' and demandid='DMD001'",
+            "update demand set duedate='2018-01-22 00:00:00.000' where planid='Basic Plan' and demandid='DMD002'" ]
+
+def usage():
+    print("Usage: python run_db_tests.py <path to tests directory> <path to lib directory>")
+    print("For example: python run_db_tests.py tests lib")
+    exit(1)
+
+def createdatabase(rootdir, dbfile, datadir):
+
+    if os.path.isfile(dbfile):
+        os.remove(dbfile)
+
+    connection = sqlite3.connect(dbfile)
+    ddlfile = open(rootdir + "/db/jobshop_schema_sqlite.ddl", 'r')
+    connection.executescript(ddlfile.read())
+    ddlfile.close()
+    connection.close()
+
+    loadfile = open(rootdir + "/scripts/load_sequence.dat", 'r')
+    loadseq = [ t.rstrip() for t in loadfile.readlines() ]
+    loadfile.close()
+
+    connection = sqlite3.connect(dbfile)
+    connection.execute("PRAGMA foreign_keys = ON;")
+    for tablename in loadseq:
+        datafilename = datadir + "/" + tablename + ".csv"
+        if os.path.isfile(datafilename):
+            load_sqlite_db.loaddatabase(connection, tablename, datafilename)
+
+    # Timestamps in the JDBC driver compliant format
+    stmt = [ "update plan set planstart=strftime('%Y-%m-%d %H:%M:%f', planstart)",
+             "update plan set planend=strftime('%Y-%m-%d %H:%M:%f', planend)",
+             "update calendarshift set shiftstart=strftime('%Y-%m-%d %H:%M:%f', shiftstart)",
+             "update calendarshift set shiftend=strftime('%Y-%m-%d %H:%M:%f', shiftend)",
+             "update calendarexception set exceptionstart=strftime('%Y-%m-%d %H:%M:%f', exceptionstart)",
+             "update calendarexception set exceptionend=strftime('%Y-%m-%d %H:%M:%f', exceptionend)",
+             "update relworkorder set startdate=strftime('%Y-%m-%d %H:%M:%f', startdate)",
+             "update relworkorder set enddate=strftime('%Y-%m-%d %H:%M:%f', enddate)",
+             "update demand set duedate=strftime('%Y-%m-%d %H:%M:%f', duedate)" ]
+    for s in stmt:
+        connection.execute(s)
+    connection.commit()
+    connection.close()
+
+def runjobshop(libdir, workdir, dbfile, mode, plan):
+
+    optfile = workdir + "/jobshop_options.opt"
+    opts = open(optfile, 'w')
+    opts.write("input_mode|DATABASE\n")
+    opts.write("db_connection_string|jdbc:sqlite:" + dbfile + "\n")
+    opts.write("output_mode|TESTPLAN\n")
+    opts.write("datadir|" + workdir + "\n")
+    opts.write("logdir|" + workdir + "\n")
+    opts.write("cleandata|false\n")
+    opts.write("debug_level|MINIMAL\n")
+    opts.write("db_publish_mode|" + mode + "\n")
+    if plan is not None:
+        opts.write("default_plan|" + plan + "\n")
+    opts.close()
+
+    devnull = open(os.devnull, 'w')
+    subprocess.call(["java", "-jar", libdir + "/JobShop.jar", optfile],
+                    stdout=devnull, stderr=devnull)
+    devnull.close()
+
+    # The delta counts are only logged by db_publish_mode DELTA
+    counts = []
+    logfile = open(workdir + "/jobshop.log", 'r')
+    for line in logfile.readlines():
+        m = re.search("Plan delta written to database: (.*)$", line)
+        if m:
+            counts.append(m.group(1))
+    logfile.close()
+    return counts
+
+def dumptables(dbfile):
+
+    rows = []
+    connection = sqlite3.connect(dbfile)
+    rows.append("taskplan:")
+    for r in connection.execute("select planid, demandid, skuid, taskid, startdate, enddate, " +
+                                "quantity, workcenterid, workorderid, lotid from taskplan " +
+                                "order by planid, demandid, skuid, taskid, startdate, workorderid, lotid"):
+        rows.append(",".join("" if v is None else str(v) for v in r))
+    rows.append("demandplan:")
+    for r in connection.execute("select planid, demandid, plandate, planquantity from demandplan " +
+                                "order by planid, demandid"):
+        rows.append(",".join("" if v is None else str(v) for v in r))
+    connection.close()
+    return rows
+
+def runtest(rootdir, testdir, libdir, mode):
+
+    tname = DATASET + ".db_" + mode.lower()
+    workdir = testdir + "/outputs/" + tname
+    if os.path.isdir(workdir):
+        shutil.rmtree(workdir)
+    os.makedirs(workdir)
+    dbfile = workdir + "/jobshop.db"
+
+    createdatabase(rootdir, dbfile, testdir + "/" + DATASET)
+
+    report = []
+    for c in runjobshop(libdir, workdir, dbfile, mode, None):
+        report.append("Publish 1: " + c)
+
+    connection = sqlite3.connect(dbfile)
+    for s in CHANGES:
+        connection.execute(s)
+    connection.commit()
+    connection.close()
+
+    for c in runjobshop(libdir, workdir, dbfile, mode, REPLAN):
+        report.append("Publish 2: " + c)
+    report.extend(dumptables(dbfile))
+
+    outfile = open(testdir + "/outputs/" + tname + ".out", 'w')
+    outfile.write("\n".join(report) + "\n")
+    outfile.close()
+
+    expfile = testdir + "/expects/" + tname + ".expect"
+    result = False
+    if os.path.isfile(expfile):
+        exp = open(expfile, 'r')
+        result = exp.read() == "\n".join(report) + "\n"
+        exp.close()
+
+    if result:
+        print("Running test " + DATASET + " [db_publish_mode|" + mode + "]... passed. (matched " + tname + ".expect)")
+    else:
+        print("Running test " + DATASET + " [db_publish_mode|" + mode + "]... FAILED.")
+
+
+
+if __name__ == "__main__":
+
+    if len(sys.argv) != 3:
+        usage()
+    elif sys.argv[1] == "-h":
+        usage()
+    elif sys.argv[1] == "-help":
+        usage()
+
+    rootdir = os.path.dirname(os.path.dirname(os.path.realpath(__file__)))
+    testdir = os.path.realpath(sys.argv[1])
+    libdir = os.path.realpath(sys.argv[2])
+
+    for mode in PUBLISH_MODES:
+        runtest(rootdir, testdir, libdir, mode)
@@ -28,8 +28,17 @@ TESTNAME=$1
 TESTDIR=$2
 LIBDIR=$3
 
-if [ "$TESTNAME" = "ALL" ]
-then
+# Run every test once with the default options plus the option lines
+# in $2 and compare each plan against the same expects; $1 labels the
+# pass in the report (an empty label for the default pass).  If $3 is
+# "snapshot", each test is run twice with a snapshot_file: the second run
+# must restore the model from the snapshot written by the first, compute
+# the same partitions and produce the same plan (the "Reading" progress
+# lines differ and are not compared)
+run_all_tests() {
+    label=$1
+    extra=$2
+    snapshot=$3
     for tid in `find $TESTDIR -type d -name test0\* | sort`
         do
             tname=`basename $tid`
@@ -39,14 +48,47 @@ then
             echo "logdir|$LIBDIR/../logs" >> $TESTDIR/$tname/jobshop_options.opt
             echo "cleandata|false" >> $TESTDIR/$tname/jobshop_options.opt
             echo "debug_level|MINIMAL" >> $TESTDIR/$tname/jobshop_options.opt
+            if [ -n "$extra" ]
+            then
+                printf "%s\n" "$extra" >> $TESTDIR/$tname/jobshop_options.opt
+            fi
+            if [ "$snapshot" = "snapshot" ]
+            then
+                snapfile=$TESTDIR/$tname/jobshop.snapshot
+                rm -f $snapfile
+                echo "snapshot_file|$snapfile" >> $TESTDIR/$tname/jobshop_options.opt
+            fi
 
             java -jar $LIBDIR/JobShop.jar $TESTDIR/$tname/jobshop_options.opt > /dev/null 2>&1
+            restored=0
+            if [ "$snapshot" = "snapshot" ] && [ -f $snapfile ]
+            then
+                grep "belongs to partition" $LIBDIR/../logs/jobshop.log | sed 's/^[^ ]* : //' | sort > $TESTDIR/outputs/$tname.partitions
+                java -jar $LIBDIR/JobShop.jar $TESTDIR/$tname/jobshop_options.opt > /dev/null 2>&1
+                grep "belongs to partition" $LIBDIR/../logs/jobshop.log | sed 's/^[^ ]* : //' | sort > $TESTDIR/outputs/$tname.partitions.restored
+                grep "^Reading model snapshot" $TESTDIR/$tname/jobshop.testplan.out > /dev/null
+                if [ $? -ne 0 ]
+                then
+                    restored=1
+                fi
+                diff $TESTDIR/outputs/$tname.partitions $TESTDIR/outputs/$tname.partitions.restored > /dev/null
+                if [ $? -ne 0 ]
+                then
+                    restored=1
+                fi
+            fi
             cp $TESTDIR/$tname/jobshop.testplan.out $TESTDIR/outputs/$tname.out
             result=1
             matchfile=`basename $tname.expect`
             for exp in `find $TESTDIR/expects -name $tname.expect\* | sort`
                 do
-                    diff $TESTDIR/outputs/$tname.out $exp > /dev/null
+                    if [ "$snapshot" = "snapshot" ]
+                    then
+                        grep -v "^Reading" $TESTDIR/outputs/$tname.out > $TESTDIR/outputs/$tname.out.compare
+                        grep -v "^Reading" $exp | diff $TESTDIR/outputs/$tname.out.compare - > /dev/null
+                    else
+                        diff $TESTDIR/outputs/$tname.out $exp > /dev/null
+                    fi
                     if [ $? -eq 0 ]
                     then
                         result=0
@@ -54,13 +96,29 @@ then
                         break
                     fi
                 done
-            if [ $result -eq 0 ]
+            if [ $result -eq 0 ] && [ $restored -eq 0 ]
             then
-                echo "Running test $tname... passed. (matched $matchfile)"
+                echo "Running test $tname$label... passed. (matched $matchfile)"
             else
-                echo "Running test $tname... FAILED."
+                echo "Running test $tname$label... FAILED."
             fi
         done
+}
+
+if [ "$TESTNAME" = "ALL" ]
+then
+    run_all_tests "" ""
+    # The parallel planners must produce the same plans as the
+    # sequential planner
+    run_all_tests " [plan_threads|4]" "plan_threads|4"
+    run_all_tests " [speculative_window|4]" "speculative_window|4"
+    run_all_tests " [plan_threads|4, speculative_window|4]" "plan_threads|4
+speculative_window|4"
+    run_all_tests " [concurrent_plans|true]" "concurrent_plans|true"
+    # A model restored from a snapshot must be planned like a fresh load;
+    # the partitions are recomputed after the restore and are used by
+    # the parallel planners
+    run_all_tests " [snapshot_file, plan_threads|4]" "plan_threads|4" "snapshot"
 else
     echo "input_mode|FLATFILE" > $TESTDIR/$TESTNAME/jobshop_options.opt
     echo "output_mode|TESTPLAN" >> $TESTDIR/$tname/jobshop_options.opt
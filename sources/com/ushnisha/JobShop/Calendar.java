@@ -26,30 +26,60 @@
 package com.ushnisha.JobShop;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * A representation of a calendar object.  A calendar has a name, a type,
  * and a list of calendar shifts (that represent the value of the calendar
  * corrsponding to its type).
+ *
+ * The shifts are stored column-wise as primitives: the shift boundaries
+ * are held as epoch minutes (the calendar arithmetic is minute granular),
+ * the values in a double[] and the working flags in a bit set.  The
+ * CalendarShift objects returned by getShifts() are light-weight views
+ * over these columns and are created only when requested.
+ *
+ * Shifts are only ever appended.  The columns are published through a
+ * volatile reference and the shift count is written after the shift,
+ * so the shifts below the count read by a thread are always visible to
+ * it; a calendar may be queried (and its pattern extended) by several
+ * threads without any other synchronization.
+ *
+ * A calendar of type PATTERN_CALENDAR is defined by a CalendarPattern
+ * (a weekly template and exceptions) instead of explicit shifts; its
+ * shifts are generated lazily as the calendar is queried.
  */
 class Calendar {
 
+    private static double ZEROPLUS = 0.000001;
+    private static int INITIAL_CAPACITY = 16;
+
     private String name;
     private String type;
-    private List<CalendarShift> shifts;
+    private volatile int count;
+    private volatile Columns columns;
+    private volatile long[] cumulative;
+    private CalendarPattern pattern;
+    private volatile CalendarCache cache;
 
     /**
      * Constructor for a calendar
      * @param n String representing the name of the calendar
-     * @param t type of the calendar.  At this time only one type,
-     *          EFFICIENCY_CALENDAR is supported
+     * @param t type of the calendar.  EFFICIENCY_CALENDAR (explicit shifts)
+     *          and PATTERN_CALENDAR (shifts generated from a weekly
+     *          template) are supported
      */
     Calendar (String n, String t) {
         this.name = n;
         this.type = t;
-        this.shifts = new ArrayList<CalendarShift> ();
+        this.count = 0;
+        this.columns = new Columns(null, INITIAL_CAPACITY);
+        this.cumulative = null;
+        this.pattern = null;
+        this.cache = null;
     }
 
     /**
@@ -69,11 +99,261 @@ class Calendar {
     }
 
     /**
-     * Add a shift to the calendar
-     * @param s a CalendarShift that must be added to the calendar
+     * Set the pattern from which the shifts of this calendar are generated
+     * @param cp CalendarPattern from which the shifts are generated
+     */
+    void setPattern(CalendarPattern cp) {
+        this.pattern = cp;
+    }
+
+    /**
+     * Return the pattern from which the shifts of this calendar are generated
+     * @return CalendarPattern of the calendar; null for explicit shift calendars
+     */
+    CalendarPattern getPattern() {
+        return this.pattern;
+    }
+
+    /**
+     * Ensure that the shifts of a pattern calendar have been generated
+     * up to (and including) the input date.  This is a no-op for
+     * calendars with explicit shifts
+     * @param dt long value representing a date/time in epoch minutes
+     */
+    void ensureShifts(long dt) {
+        if (this.pattern == null) {
+            return;
+        }
+        int n = this.count;
+        if (n > 0 && dt < this.columns.ends[n - 1]) {
+            return;
+        }
+        synchronized (this) {
+            this.pattern.generate(this, dt);
+        }
+    }
+
+    /**
+     * Generate the next week of shifts of a pattern calendar
+     * @return boolean value that is true if more shifts were generated
+     */
+    boolean extendShifts() {
+        if (this.pattern == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (!this.pattern.canExtend()) {
+                return false;
+            }
+            this.pattern.generateNext(this);
+            return true;
+        }
+    }
+
+    /**
+     * Generate all the remaining shifts of a pattern calendar and extend
+     * the cumulative working minutes to all the shifts, so that the
+     * calendar is no longer modified when it is queried.  The threads
+     * that plan in parallel then never wait on the calendar to extend it
+     */
+    synchronized void materialize() {
+        if (this.pattern != null) {
+            while (this.pattern.canExtend()) {
+                this.pattern.generateNext(this);
+            }
+        }
+        getCumulativeMinutes();
+        getCache();
+    }
+
+    /**
+     * Add a shift to the calendar.  Shifts must be added in the order
+     * of their start date/time
+     * @param id ID of the shift (a unique value for each calendar shift)
+     * @param st start date/time of the shift
+     * @param en end date/time of the shift
+     * @param p priority of the shift (used in planning)
+     * @param val value of the shift; for efficiency calendars this is a value between 0 and 1
+     */
+    void addShift(int id, LocalDateTime st, LocalDateTime en, int p, double val) {
+        addShift(id, toEpochMinute(st), toEpochMinute(en), p, val);
+    }
+
+    /**
+     * Add a shift, with its boundaries specified in epoch minutes, to the
+     * calendar.  Shifts must be added in the order of their start.  The
+     * shift is written before the count is incremented, so that threads
+     * querying the calendar never see a partially written shift
+     * @param id ID of the shift (a unique value for each calendar shift)
+     * @param st start of the shift in epoch minutes
+     * @param en end of the shift in epoch minutes
+     * @param p priority of the shift (used in planning)
+     * @param val value of the shift; for efficiency calendars this is a value between 0 and 1
+     */
+    synchronized void addShift(int id, long st, long en, int p, double val) {
+        int n = this.count;
+        Columns c = this.columns;
+        if (n == c.starts.length) {
+            c = new Columns(c, n * 2);
+            this.columns = c;
+        }
+        c.shiftIDs[n] = id;
+        c.starts[n] = st;
+        c.ends[n] = en;
+        c.priorities[n] = p;
+        c.values[n] = val;
+        if (val > ZEROPLUS) {
+            c.working[n >>> 6] |= 1L << n;
+        }
+        this.count = n + 1;
+        if (this.cache != null) {
+            this.cache.clear();
+        }
+    }
+
+    /**
+     * Return the cache of lead time calculations on this calendar.  The
+     * cache is created when the calendar is first queried
+     * @return CalendarCache of the calendar
+     */
+    CalendarCache getCache() {
+        CalendarCache c = this.cache;
+        if (c == null) {
+            synchronized (this) {
+                if (this.cache == null) {
+                    this.cache = new CalendarCache();
+                }
+                c = this.cache;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Return the number of shifts in this calendar
+     * @return int value representing the number of shifts
+     */
+    int getShiftCount() {
+        return this.count;
+    }
+
+    /**
+     * Return the ID of the shift at an index
+     * @param i int value representing the index of the shift
+     * @return int value representing the ID of the shift
+     */
+    int getShiftID(int i) {
+        return this.columns.shiftIDs[i];
+    }
+
+    /**
+     * Return the start of the shift at an index in epoch minutes
+     * @param i int value representing the index of the shift
+     * @return long value representing the start of the shift
+     */
+    long getShiftStart(int i) {
+        return this.columns.starts[i];
+    }
+
+    /**
+     * Return the end of the shift at an index in epoch minutes
+     * @param i int value representing the index of the shift
+     * @return long value representing the end of the shift
+     */
+    long getShiftEnd(int i) {
+        return this.columns.ends[i];
+    }
+
+    /**
+     * Return the priority of the shift at an index
+     * @param i int value representing the index of the shift
+     * @return int value representing the priority of the shift
+     */
+    int getShiftPriority(int i) {
+        return this.columns.priorities[i];
+    }
+
+    /**
+     * Return the value of the shift at an index
+     * @param i int value representing the index of the shift
+     * @return double value representing the value of the shift
+     */
+    double getShiftValue(int i) {
+        return this.columns.values[i];
+    }
+
+    /**
+     * Return true if the shift at an index is working; false if it is a holiday
+     * @param i int value representing the index of the shift
+     * @return boolean value representing if the shift is working or holiday
+     */
+    boolean isWorking(int i) {
+        return (this.columns.working[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Return the index of the nearest working shift that is lesser than
+     * or equal to the input index
+     * @param i int value of the shift index that we should start searching from
+     * @return int value of the index of the working shift; -1 if none
+     */
+    int prevWorkingShift(int i) {
+        if (i < 0) {
+            return -1;
+        }
+        long[] w = this.columns.working;
+        int u = i >>> 6;
+        long word = w[u] & (-1L >>> (63 - (i & 63)));
+        while (word == 0) {
+            if (u == 0) {
+                return -1;
+            }
+            word = w[--u];
+        }
+        return (u << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    /**
+     * Return the index of the nearest working shift that is greater than
+     * or equal to the input index
+     * @param i int value of the shift index that we should start searching from
+     * @return int value of the index of the working shift; the number of
+     *         shifts in the calendar if none
      */
-    void addShift(CalendarShift s) {
-        this.shifts.add(s);
+    int nextWorkingShift(int i) {
+        int n = this.count;
+        int idx = nextWorkingShift(i, n);
+        // Another thread may have extended the calendar when this one can not
+        while (idx == n && (extendShifts() || this.count > n)) {
+            n = this.count;
+            idx = nextWorkingShift(i, n);
+        }
+        return idx;
+    }
+
+    /**
+     * Return the index of the nearest working shift that is greater than
+     * or equal to the input index among the first n shifts.  Flags of the
+     * shifts beyond n may be being set by another thread and are ignored
+     * @param i int value of the shift index that we should start searching from
+     * @param n int value representing the number of shifts to search
+     * @return int value of the index of the working shift; n if none
+     */
+    private int nextWorkingShift(int i, int n) {
+        if (i >= n) {
+            return n;
+        }
+        long[] w = this.columns.working;
+        int u = i >>> 6;
+        int last = (n - 1) >>> 6;
+        long word = w[u] & (-1L << i);
+        while (word == 0) {
+            if (u == last) {
+                return n;
+            }
+            word = w[++u];
+        }
+        return Math.min((u << 6) + Long.numberOfTrailingZeros(word), n);
     }
 
     /**
@@ -81,7 +361,68 @@ class Calendar {
      * @return List<CalendarShift> representing the shifts in the calendar
      */
     List<CalendarShift> getShifts() {
-        return this.shifts;
+        if (this.pattern != null) {
+            ensureShifts(this.pattern.getHorizonEnd());
+        }
+        final Calendar cal = this;
+        return new AbstractList<CalendarShift>() {
+            public CalendarShift get(int i) {
+                if (i < 0 || i >= cal.count) {
+                    throw new IndexOutOfBoundsException("Shift index: " + i);
+                }
+                return new CalendarShift(cal, i);
+            }
+            public int size() {
+                return cal.count;
+            }
+        };
+    }
+
+    /**
+     * Return the cumulative effective (efficiency adjusted) working minutes
+     * of the shifts in this calendar.  Element i of the array holds the
+     * total effective minutes of shifts 0 to i-1, so that the effective
+     * minutes between the start of shift i and the end of shift j-1 is
+     * given by cumulative[j] - cumulative[i].  Since shifts are only ever
+     * appended, the array is extended (rather than rebuilt) for the shifts
+     * added since it was last requested.  Threads that extend it at the
+     * same time compute the same values, so the last one to publish wins.
+     * @return long[] with at least (number of shifts + 1) cumulative values
+     */
+    long[] getCumulativeMinutes() {
+        int n = this.count;
+        long[] cuml = this.cumulative;
+        if (cuml == null || cuml.length < n + 1) {
+            Columns c = this.columns;
+            int from = (cuml == null) ? 0 : cuml.length - 1;
+            cuml = (cuml == null) ? new long[n + 1] : Arrays.copyOf(cuml, n + 1);
+            for (int i = from; i < n; i++) {
+                long tm = c.ends[i] - c.starts[i];
+                cuml[i+1] = cuml[i] + (long) Math.ceil(tm * c.values[i]);
+            }
+            this.cumulative = cuml;
+        }
+        return cuml;
+    }
+
+    /**
+     * Convert a date/time to the number of minutes since the epoch.  Any
+     * seconds in the date/time are truncated; the calendar records that
+     * have seconds are logged when they are loaded
+     * @param dt LocalDateTime representing a date/time
+     * @return long value representing the date/time in epoch minutes
+     */
+    static long toEpochMinute(LocalDateTime dt) {
+        return Math.floorDiv(dt.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    /**
+     * Convert a number of minutes since the epoch to a date/time
+     * @param m long value representing the date/time in epoch minutes
+     * @return LocalDateTime representing the date/time
+     */
+    static LocalDateTime fromEpochMinute(long m) {
+        return LocalDateTime.ofEpochSecond(m * 60L, 0, ZoneOffset.UTC);
     }
 
     /**
@@ -92,4 +433,44 @@ class Calendar {
         return this.type + "-Calendar-" + this.name;
     }
 
+    /**
+     * The columns holding the shifts of a calendar.  The columns are
+     * replaced by larger copies when they are full; the entries below the
+     * shift count are never modified once written
+     */
+    private static class Columns {
+
+        final int[] shiftIDs;
+        final long[] starts;
+        final long[] ends;
+        final int[] priorities;
+        final double[] values;
+        final long[] working;
+
+        /**
+         * Constructor for the columns of a calendar
+         * @param c Columns whose shifts must be copied; null for empty columns
+         * @param capacity int value representing the number of shifts that fit
+         */
+        Columns(Columns c, int capacity) {
+            int words = (capacity + 63) >>> 6;
+            if (c == null) {
+                this.shiftIDs = new int[capacity];
+                this.starts = new long[capacity];
+                this.ends = new long[capacity];
+                this.priorities = new int[capacity];
+                this.values = new double[capacity];
+                this.working = new long[words];
+            }
+            else {
+                this.shiftIDs = Arrays.copyOf(c.shiftIDs, capacity);
+                this.starts = Arrays.copyOf(c.starts, capacity);
+                this.ends = Arrays.copyOf(c.ends, capacity);
+                this.priorities = Arrays.copyOf(c.priorities, capacity);
+                this.values = Arrays.copyOf(c.values, capacity);
+                this.working = Arrays.copyOf(c.working, words);
+            }
+        }
+    }
+
 }
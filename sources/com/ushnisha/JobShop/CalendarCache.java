@@ -0,0 +1,182 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+package com.ushnisha.JobShop;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the results of the lead time
+ * calculations (CalendarUtils.calcStartAfter and calcEndBefore) on a
+ * single Calendar.  Entries are keyed on the anchor date (in epoch
+ * minutes), the lead time and the direction of the calculation.  The
+ * cache keeps count of its hits, misses and evictions.
+ */
+class CalendarCache {
+
+    static final int DEFAULT_CAPACITY = 4096;
+    private static int defaultCapacity = DEFAULT_CAPACITY;
+
+    private final int capacity;
+    private final LinkedHashMap<Key,DateRange> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor for a CalendarCache using the default capacity
+     */
+    CalendarCache() {
+        this(defaultCapacity);
+    }
+
+    /**
+     * Constructor for a CalendarCache
+     * @param cap int value representing the maximum number of entries;
+     *            a value of 0 (or lesser) disables the cache
+     */
+    CalendarCache(int cap) {
+        this.capacity = cap;
+        this.entries = new LinkedHashMap<Key,DateRange>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key,DateRange> eldest) {
+                if (size() > CalendarCache.this.capacity) {
+                    CalendarCache.this.evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+    /**
+     * Set the capacity of the caches created from now on (option
+     * calendar_cache_size)
+     * @param cap int value representing the maximum number of entries
+     *            per calendar; a value of 0 (or lesser) disables caching
+     */
+    static void setDefaultCapacity(int cap) {
+        defaultCapacity = cap;
+    }
+
+    /**
+     * Look up the result of a lead time calculation
+     * @param anchor long value representing the anchor date in epoch minutes
+     * @param tm long value representing the lead time in minutes
+     * @param forward boolean value that is true for calcStartAfter and
+     *                false for calcEndBefore
+     * @return DateRange result of the calculation; null if not cached
+     */
+    synchronized DateRange get(long anchor, long tm, boolean forward) {
+        if (this.capacity <= 0) {
+            return null;
+        }
+        DateRange dr = this.entries.get(new Key(anchor, tm, forward));
+        if (dr == null) {
+            this.misses++;
+        }
+        else {
+            this.hits++;
+        }
+        return dr;
+    }
+
+    /**
+     * Store the result of a lead time calculation
+     * @param anchor long value representing the anchor date in epoch minutes
+     * @param tm long value representing the lead time in minutes
+     * @param forward boolean value that is true for calcStartAfter and
+     *                false for calcEndBefore
+     * @param dr DateRange result of the calculation
+     */
+    synchronized void put(long anchor, long tm, boolean forward, DateRange dr) {
+        if (this.capacity <= 0) {
+            return;
+        }
+        this.entries.put(new Key(anchor, tm, forward), dr);
+    }
+
+    /**
+     * Drop all the entries of the cache (when the shifts of the calendar change)
+     */
+    synchronized void clear() {
+        this.entries.clear();
+    }
+
+    synchronized long getHits() {
+        return this.hits;
+    }
+
+    synchronized long getMisses() {
+        return this.misses;
+    }
+
+    synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * String representation of the statistics of the cache
+     * @return String value representing the cache statistics
+     */
+    public synchronized String toString() {
+        return "Hits: " + this.hits + "; Misses: " + this.misses +
+               "; Evictions: " + this.evictions + "; Size: " +
+               this.entries.size() + "/" + this.capacity;
+    }
+
+    /**
+     * The key of a cache entry
+     */
+    private static class Key {
+
+        private final long anchor;
+        private final long tm;
+        private final boolean forward;
+
+        Key(long a, long t, boolean f) {
+            this.anchor = a;
+            this.tm = t;
+            this.forward = f;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return this.anchor == k.anchor && this.tm == k.tm && this.forward == k.forward;
+        }
+
+        public int hashCode() {
+            int h = Long.hashCode(this.anchor);
+            h = 31 * h + Long.hashCode(this.tm);
+            return 31 * h + (this.forward ? 1 : 0);
+        }
+    }
+}
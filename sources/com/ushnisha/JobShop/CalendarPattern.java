@@ -0,0 +1,335 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+package com.ushnisha.JobShop;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A weekly shift template (along with a list of exceptions such as holidays
+ * and efficiency overrides) from which the shifts of a PATTERN_CALENDAR
+ * are generated.  Shifts are generated a week at a time, only when the
+ * calendar is queried for a date that is beyond the shifts generated so
+ * far.  Periods of the week that are not covered by the template are
+ * generated as non-working shifts so that the shifts of the calendar are
+ * always contiguous.
+ */
+class CalendarPattern {
+
+    static final int DEFAULT_EXTENSION_WEEKS = 52;
+    private static int WEEK_MINUTES = 7 * 24 * 60;
+
+    private List<long[]> template;
+    private List<ExceptionPeriod> exceptions;
+    private long origin;
+    private long horizonEnd;
+    private long limit;
+    private long nextWeek;
+    private long generatedUntil;
+    private int nextShiftID;
+    private int nextException;
+
+    /**
+     * Constructor for an empty CalendarPattern
+     */
+    CalendarPattern() {
+        this.template = new ArrayList<long[]>();
+        this.exceptions = new ArrayList<ExceptionPeriod>();
+        this.origin = Long.MIN_VALUE;
+        this.horizonEnd = Long.MIN_VALUE;
+        this.limit = Long.MIN_VALUE;
+        this.nextWeek = Long.MIN_VALUE;
+        this.generatedUntil = Long.MIN_VALUE;
+        this.nextShiftID = 1;
+        this.nextException = 0;
+    }
+
+    /**
+     * Add a shift to the weekly template.  An end time that is on or before
+     * the start time represents a shift that ends on the following day
+     * @param day DayOfWeek on which the shift starts
+     * @param st LocalTime representing the start time of the shift
+     * @param en LocalTime representing the end time of the shift
+     * @param p priority (shift number) of the shift
+     * @param val value of the shift; for efficiency calendars this is a value between 0 and 1
+     */
+    void addTemplateShift(DayOfWeek day, LocalTime st, LocalTime en, int p, double val) {
+        long offset = (day.getValue() - 1) * 24L * 60L;
+        long start = offset + st.getHour() * 60L + st.getMinute();
+        long end = offset + en.getHour() * 60L + en.getMinute();
+        if (end <= start) {
+            end += 24L * 60L;
+        }
+        addTemplateShift(start, end, p, val);
+    }
+
+    /**
+     * Add an exception to the pattern.  All the generated shifts (or part
+     * of shifts) that fall within the exception period will take the value
+     * of the exception.  Exceptions must not overlap each other
+     * @param st LocalDateTime representing the start of the exception
+     * @param en LocalDateTime representing the end of the exception
+     * @param val value of the calendar during the exception period
+     */
+    void addException(LocalDateTime st, LocalDateTime en, double val) {
+        addException(Calendar.toEpochMinute(st), Calendar.toEpochMinute(en), val);
+    }
+
+    /**
+     * Add a shift to the weekly template given its start and end as
+     * minutes from the start of Monday
+     * @param st long value representing the start of the shift
+     * @param en long value representing the end of the shift
+     * @param p priority (shift number) of the shift
+     * @param val value of the shift
+     */
+    void addTemplateShift(long st, long en, int p, double val) {
+        this.template.add(new long[] { st, en, p, Double.doubleToLongBits(val) });
+        this.template.sort(Comparator.comparingLong(t -> t[0]));
+    }
+
+    /**
+     * Add an exception to the pattern given its start and end in epoch minutes
+     * @param st long value representing the start of the exception
+     * @param en long value representing the end of the exception
+     * @param val value of the calendar during the exception period
+     */
+    void addException(long st, long en, double val) {
+        this.exceptions.add(new ExceptionPeriod(st, en, val));
+        Collections.sort(this.exceptions);
+    }
+
+    /**
+     * Returns the number of shifts in the weekly template
+     * @return int value representing the number of template shifts
+     */
+    int getTemplateSize() {
+        return this.template.size();
+    }
+
+    /**
+     * Returns a shift of the weekly template
+     * @param i int value representing the index of the template shift
+     * @return long[] holding the start and end (minutes from the start of
+     *         Monday), the priority and the bits of the value of the shift
+     */
+    long[] getTemplateShift(int i) {
+        return this.template.get(i).clone();
+    }
+
+    /**
+     * Returns the number of exceptions of the pattern
+     * @return int value representing the number of exceptions
+     */
+    int getExceptionCount() {
+        return this.exceptions.size();
+    }
+
+    /**
+     * Returns the start of an exception of the pattern
+     * @param i int value representing the index of the exception
+     * @return long value representing the start of the exception in epoch minutes
+     */
+    long getExceptionStart(int i) {
+        return this.exceptions.get(i).start;
+    }
+
+    /**
+     * Returns the end of an exception of the pattern
+     * @param i int value representing the index of the exception
+     * @return long value representing the end of the exception in epoch minutes
+     */
+    long getExceptionEnd(int i) {
+        return this.exceptions.get(i).end;
+    }
+
+    /**
+     * Returns the value of an exception of the pattern
+     * @param i int value representing the index of the exception
+     * @return double value representing the value of the exception
+     */
+    double getExceptionValue(int i) {
+        return this.exceptions.get(i).value;
+    }
+
+    /**
+     * Return true if the template has at least one shift
+     * @return boolean value representing whether the template has shifts
+     */
+    boolean hasShifts() {
+        return !this.template.isEmpty();
+    }
+
+    /**
+     * Set the period for which shifts can be generated.  Generation starts
+     * on the Monday of the week containing the start date and is never
+     * extended beyond the end of the week that is a given number of weeks
+     * after the end date (so that lead times may extend beyond the horizon)
+     * @param st LocalDateTime representing the start of the pattern horizon
+     * @param en LocalDateTime representing the end of the pattern horizon
+     * @param extraWeeks int value representing the number of weeks beyond
+     *                   the horizon for which shifts may be generated
+     */
+    void setHorizon(LocalDateTime st, LocalDateTime en, int extraWeeks) {
+        LocalDateTime monday = st.truncatedTo(ChronoUnit.DAYS)
+                                 .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        this.origin = Calendar.toEpochMinute(monday);
+        this.horizonEnd = Calendar.toEpochMinute(en);
+        long weeks = Math.floorDiv(this.horizonEnd - this.origin, (long) WEEK_MINUTES) + 1 + extraWeeks;
+        this.limit = this.origin + weeks * WEEK_MINUTES;
+        this.nextWeek = this.origin;
+        this.generatedUntil = this.origin;
+    }
+
+    /**
+     * Return the end of the pattern horizon in epoch minutes
+     * @return long value representing the end of the pattern horizon
+     */
+    long getHorizonEnd() {
+        return this.horizonEnd;
+    }
+
+    /**
+     * Return true if more shifts can still be generated
+     * @return boolean value representing whether the horizon is exhausted
+     */
+    boolean canExtend() {
+        return this.nextWeek < this.limit;
+    }
+
+    /**
+     * Generate the shifts of the calendar (a week at a time) until the
+     * generated shifts end after the input date or the limit is reached
+     * @param cal Calendar to which the generated shifts must be added
+     * @param dt long value representing a date/time in epoch minutes
+     */
+    void generate(Calendar cal, long dt) {
+        while (this.generatedUntil <= dt && canExtend()) {
+            generateWeek(cal, this.nextWeek);
+        }
+    }
+
+    /**
+     * Generate the shifts of the next week of the pattern (if the limit
+     * has not been reached)
+     * @param cal Calendar to which the generated shifts must be added
+     */
+    void generateNext(Calendar cal) {
+        if (canExtend()) {
+            generateWeek(cal, this.nextWeek);
+        }
+    }
+
+    /**
+     * Generate the shifts of the week starting at a given date/time
+     * @param cal Calendar to which the generated shifts must be added
+     * @param weekStart long value representing the Monday of the week in
+     *                  epoch minutes
+     */
+    private void generateWeek(Calendar cal, long weekStart) {
+        long weekEnd = weekStart + WEEK_MINUTES;
+        long cursor = this.generatedUntil;
+
+        for (long[] t : this.template) {
+            long st = Math.max(weekStart + t[0], cursor);
+            long en = weekStart + t[1];
+            if (en <= st) {
+                continue;
+            }
+            if (st > cursor) {
+                appendShift(cal, cursor, st, 0, 0.0);
+            }
+            appendShift(cal, st, en, (int) t[2], Double.longBitsToDouble(t[3]));
+            cursor = en;
+        }
+        if (cursor < weekEnd) {
+            appendShift(cal, cursor, weekEnd, 0, 0.0);
+            cursor = weekEnd;
+        }
+        this.generatedUntil = cursor;
+        this.nextWeek = weekEnd;
+    }
+
+    /**
+     * Append a shift to the calendar, splitting it at the boundaries of any
+     * exceptions that overlap with it
+     * @param cal Calendar to which the shift must be added
+     * @param st long value representing the shift start in epoch minutes
+     * @param en long value representing the shift end in epoch minutes
+     * @param p priority (shift number) of the shift
+     * @param val value of the shift
+     */
+    private void appendShift(Calendar cal, long st, long en, int p, double val) {
+        long cursor = st;
+        while (this.nextException < this.exceptions.size() &&
+               this.exceptions.get(this.nextException).end <= cursor) {
+            this.nextException++;
+        }
+        for (int i = this.nextException; i < this.exceptions.size(); i++) {
+            ExceptionPeriod ex = this.exceptions.get(i);
+            if (ex.start >= en) {
+                break;
+            }
+            long exStart = Math.max(ex.start, cursor);
+            long exEnd = Math.min(ex.end, en);
+            if (exStart > cursor) {
+                cal.addShift(this.nextShiftID++, cursor, exStart, p, val);
+            }
+            cal.addShift(this.nextShiftID++, exStart, exEnd, p, ex.value);
+            cursor = exEnd;
+        }
+        if (cursor < en) {
+            cal.addShift(this.nextShiftID++, cursor, en, p, val);
+        }
+    }
+
+    /**
+     * A period of time during which the calendar takes a specific value
+     */
+    private static class ExceptionPeriod implements Comparable<ExceptionPeriod> {
+
+        private long start;
+        private long end;
+        private double value;
+
+        ExceptionPeriod(long st, long en, double val) {
+            this.start = st;
+            this.end = en;
+            this.value = val;
+        }
+
+        public int compareTo(ExceptionPeriod other) {
+            return Long.compare(this.start, other.start);
+        }
+    }
+}
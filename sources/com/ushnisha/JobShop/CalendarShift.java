@@ -30,35 +30,22 @@ import java.time.LocalDateTime;
 /**
  * CalenderShift is an object that represents a shift within a calendar.  Depending
  * on the type of the calendar, its value indicates the behaviour/availability of
- * the calendar during the period of that shift.
+ * the calendar during the period of that shift.  The shift data itself is held
+ * by the Calendar; a CalendarShift is only a view of one of its shifts.
  */
 class CalendarShift {
 
     private Calendar cal;
-    private int shiftID;
-    private LocalDateTime start;
-    private LocalDateTime end;
-    private int priority;
-    private double value;
-
-    private static double ZEROPLUS = 0.000001;
+    private int index;
 
     /**
      * Constructor for a CalenderShift object
-     * @param c name of the Calendar to which this shift belongs
-     * @param id ID of the shift (a unique value for each calendar shift)
-     * @param st start date/time of the shift
-     * @param en end date/time of the shift
-     * @param p priority of the shift (used in planning)
-     * @param val value of the shift; for efficiency calendars this is a value between 0 and 1
+     * @param c the Calendar to which this shift belongs
+     * @param idx index of the shift within the calendar
      */
-    CalendarShift(Calendar c, int id, LocalDateTime st, LocalDateTime en, int p, double val) {
+    CalendarShift(Calendar c, int idx) {
         this.cal = c;
-        this.shiftID = id;
-        this.start = st;
-        this.end = en;
-        this.priority = p;
-        this.value = val;
+        this.index = idx;
     }
 
     /**
@@ -66,7 +53,7 @@ class CalendarShift {
      * @return priority of the shift
      */
     int getPriority() {
-        return this.priority;
+        return this.cal.getShiftPriority(this.index);
     }
 
     /**
@@ -74,7 +61,7 @@ class CalendarShift {
      * @return value of the shift
      */
     double getValue() {
-        return this.value;
+        return this.cal.getShiftValue(this.index);
     }
 
     /**
@@ -82,7 +69,7 @@ class CalendarShift {
      * @return boolean value representing if the shift is working or holiday
      */
     boolean isWorking() {
-        return (this.value > ZEROPLUS);
+        return this.cal.isWorking(this.index);
     }
 
     /**
@@ -90,7 +77,7 @@ class CalendarShift {
      * @return start date/time of the shift
      */
     LocalDateTime getStart() {
-        return this.start;
+        return Calendar.fromEpochMinute(this.cal.getShiftStart(this.index));
     }
 
     /**
@@ -98,7 +85,7 @@ class CalendarShift {
      * @return end date/time of the shift
      */
     LocalDateTime getEnd() {
-        return this.end;
+        return Calendar.fromEpochMinute(this.cal.getShiftEnd(this.index));
     }
 
     /**
@@ -106,7 +93,7 @@ class CalendarShift {
      * @return String value representing the CalendarShift
      */
     public String toString() {
-        return this.cal + "-" + this.shiftID;
+        return this.cal + "-" + this.cal.getShiftID(this.index);
     }
 
 }
@@ -26,8 +26,6 @@
 package com.ushnisha.JobShop;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
 
 import static com.ushnisha.JobShop.JobShop.DEBUG_LEVELS;
 import static com.ushnisha.JobShop.JobShop.LOG;
@@ -37,12 +35,15 @@ import static com.ushnisha.JobShop.JobShop.LOG;
  */
 class CalendarUtils {
 
-    private static double ZEROPLUS = 0.000001;
+    private static long NONE = Long.MIN_VALUE;
 
     /**
      * Calculates a start date given an end date and the lead time in minutes
      * It simulates an "End-On-Or-Before" behaviour while representing the
-     * calendar availability
+     * calendar availability.  The shift in which the end date falls is
+     * handled directly; the remaining time is then located with a binary
+     * search over the cumulative effective minutes of the calendar.
+     * Results are memoized in the cache of the calendar
      * @param cal a Calendar that specifies the working shifts and efficiency
      *            that must be used for the calculation of the start date/time
      * @param end LocalDateTime representing an end date/time
@@ -55,45 +56,26 @@ class CalendarUtils {
     static DateRange calcEndBefore(Calendar cal, LocalDateTime end,
                                           long tm) {
 
-        List<CalendarShift> shifts = cal.getShifts();
-        LocalDateTime validStart = null;
-        LocalDateTime validEnd = calcValidDateOnOrBefore(cal, end);
+        JobShop.LOG(() -> "Base LT from calcStart: " + tm, DEBUG_LEVELS.MAXIMAL);
 
-        long remaining_tm = tm;
-        LocalDateTime currentEnd = validEnd;
-        int currentShiftIdx = getShiftIndex(shifts, currentEnd);
+        long dt = Calendar.toEpochMinute(end);
+        cal.ensureShifts(dt);
 
-        JobShop.LOG("Base LT from calcStart: " + remaining_tm, DEBUG_LEVELS.MAXIMAL);
-
-        while (remaining_tm > 0) {
-            CalendarShift cshift = shifts.get(currentShiftIdx);
-            long time_in_currentShift = ChronoUnit.MINUTES.between(cshift.getStart(), currentEnd);
-            time_in_currentShift = (long) Math.ceil(time_in_currentShift * cshift.getValue());
-
-            JobShop.LOG(cshift.getStart() + "-" + currentEnd + "; = " +
-                        time_in_currentShift + "; Remaining Time: " + remaining_tm,
-                        DEBUG_LEVELS.MAXIMAL);
-
-            if (time_in_currentShift >= remaining_tm) {
-                validStart = currentEnd.minusMinutes((long) Math.ceil(remaining_tm/cshift.getValue()));
-                remaining_tm -= time_in_currentShift;
-            }
-            else {
-                remaining_tm -= time_in_currentShift;
-                currentShiftIdx--;
-                if (currentShiftIdx < 0) {
-                    return calcStartAfter(cal, shifts.get(0).getStart(), tm);
-                }
-                currentEnd = shifts.get(currentShiftIdx).getEnd();
-            }
+        DateRange dr = cal.getCache().get(dt, tm, false);
+        if (dr == null) {
+            dr = toDateRange(calcEndBefore(cal, dt, tm));
+            cal.getCache().put(dt, tm, false, dr);
         }
-        return new DateRange(validStart, validEnd);
+        return dr;
     }
 
     /**
      * Calculates an end date given a start date and the lead time in minutes
      * It simulates a "Start-On-Or-After" behaviour while representing the
-     * calendar availability
+     * calendar availability.  The shift in which the start date falls is
+     * handled directly; the remaining time is then located with a binary
+     * search over the cumulative effective minutes of the calendar.
+     * Results are memoized in the cache of the calendar
      * @param cal a Calendar that specifies the working shifts and efficiency
      *            that must be used for the calculation of the end date/time
      * @param start LocalDateTime representing a start date/time
@@ -105,65 +87,214 @@ class CalendarUtils {
      */
     static DateRange calcStartAfter(Calendar cal, LocalDateTime start,
                                         long tm) {
-        List<CalendarShift> shifts = cal.getShifts();
-        LocalDateTime validStart = calcValidDateOnOrAfter(cal, start);
-        LocalDateTime validEnd = null;
 
-        long remaining_tm = tm;
-        LocalDateTime currentStart = validStart;
-        int currentShiftIdx = getShiftIndex(shifts, currentStart);
+        JobShop.LOG(() -> "Base LT from calcEnd: " + tm, DEBUG_LEVELS.MAXIMAL);
+
+        long dt = Calendar.toEpochMinute(start);
+        cal.ensureShifts(dt);
+
+        DateRange dr = cal.getCache().get(dt, tm, true);
+        if (dr == null) {
+            dr = toDateRange(calcStartAfter(cal, dt, tm));
+            cal.getCache().put(dt, tm, true, dr);
+        }
+        return dr;
+    }
+
+    /**
+     * Converts a {start, end} pair of epoch minutes into a DateRange.  When
+     * there is no lead time, only the anchor date of the calculation is
+     * set on the DateRange (matching the behaviour of the calc methods)
+     * @param range long[] holding the start and end in epoch minutes
+     * @return DateRange representing the input range
+     */
+    private static DateRange toDateRange(long[] range) {
+        LocalDateTime st = (range[0] == NONE) ? null : Calendar.fromEpochMinute(range[0]);
+        LocalDateTime en = (range[1] == NONE) ? null : Calendar.fromEpochMinute(range[1]);
+        return new DateRange(st, en);
+    }
+
+    /**
+     * Epoch minute based implementation of calcEndBefore
+     * @param cal a Calendar that specifies the working shifts and efficiency
+     * @param end long value representing an end date/time in epoch minutes
+     * @param tm long value representing the *working* time in minutes
+     * @return long[] holding the start and end in epoch minutes; the start
+     *         is NONE if the lead time is not positive
+     */
+    private static long[] calcEndBefore(Calendar cal, long end, long tm) {
+
+        long validEnd = calcValidDateOnOrBefore(cal, end);
+
+        if (tm <= 0) {
+            return new long[] { NONE, validEnd };
+        }
+
+        // Time available in the shift containing the end date
+        int currentShiftIdx = getShiftIndex(cal, validEnd);
+        double value = cal.getShiftValue(currentShiftIdx);
+        long time_in_currentShift = (long) Math.ceil((validEnd - cal.getShiftStart(currentShiftIdx)) * value);
+
+        JobShop.LOG(() -> Calendar.fromEpochMinute(cal.getShiftStart(currentShiftIdx)) + "-" +
+                          Calendar.fromEpochMinute(validEnd) + "; = " +
+                          time_in_currentShift + "; Remaining Time: " + tm,
+                          DEBUG_LEVELS.MAXIMAL);
+
+        if (time_in_currentShift >= tm) {
+            long validStart = validEnd - (long) Math.ceil(tm/value);
+            return new long[] { validStart, validEnd };
+        }
+
+        // The earlier shift (idx) in which the lead time is consumed is the
+        // latest one for which cuml[idx] <= cuml[currentShiftIdx] - remaining_tm
+        long[] cuml = cal.getCumulativeMinutes();
+        long target = cuml[currentShiftIdx] - (tm - time_in_currentShift);
+        int idx = lastIndexAtMost(cuml, 0, currentShiftIdx - 1, target);
+        if (idx < 0) {
+            return calcStartAfter(cal, cal.getShiftStart(0), tm);
+        }
+
+        long remaining_tm = cuml[idx+1] - target;
+        long validStart = cal.getShiftEnd(idx) - (long) Math.ceil(remaining_tm/cal.getShiftValue(idx));
 
-        JobShop.LOG("Base LT from calcEnd: " + remaining_tm, DEBUG_LEVELS.MAXIMAL);
+        JobShop.LOG(() -> "Lead time consumed in shift index: " + idx +
+                          "; Remaining Time: " + remaining_tm,
+                          DEBUG_LEVELS.MAXIMAL);
+
+        return new long[] { validStart, validEnd };
+    }
+
+    /**
+     * Epoch minute based implementation of calcStartAfter
+     * @param cal a Calendar that specifies the working shifts and efficiency
+     * @param start long value representing a start date/time in epoch minutes
+     * @param tm long value representing the *working* time in minutes
+     * @return long[] holding the start and end in epoch minutes; the end
+     *         is NONE if the lead time is not positive
+     */
+    private static long[] calcStartAfter(Calendar cal, long start, long tm) {
+
+        long validStart = calcValidDateOnOrAfter(cal, start);
+
+        if (tm <= 0) {
+            return new long[] { validStart, NONE };
+        }
 
-        while (remaining_tm > 0) {
-            CalendarShift cshift = shifts.get(currentShiftIdx);
-            long time_in_currentShift = ChronoUnit.MINUTES.between(currentStart, cshift.getEnd());
-            time_in_currentShift = (long) Math.ceil(time_in_currentShift * cshift.getValue());
+        // Time available in the shift containing the start date
+        int currentShiftIdx = getShiftIndex(cal, validStart);
+        double value = cal.getShiftValue(currentShiftIdx);
+        long time_in_currentShift = (long) Math.ceil((cal.getShiftEnd(currentShiftIdx) - validStart) * value);
 
-			JobShop.LOG(currentStart + "-" + cshift.getEnd() + "; = " +
-                        time_in_currentShift + "; Remaining Time: " + remaining_tm,
+        JobShop.LOG(() -> Calendar.fromEpochMinute(validStart) + "-" +
+                          Calendar.fromEpochMinute(cal.getShiftEnd(currentShiftIdx)) + "; = " +
+                          time_in_currentShift + "; Remaining Time: " + tm,
+                          DEBUG_LEVELS.MAXIMAL);
+
+        if (time_in_currentShift >= tm) {
+            long validEnd = validStart + (long) Math.ceil(tm/value);
+            return new long[] { validStart, validEnd };
+        }
+
+        // The later shift (idx) in which the lead time is consumed is the
+        // earliest one for which cuml[idx+1] >= cuml[currentShiftIdx+1] + remaining_tm
+        // Pattern calendars are extended until such a shift is generated
+        int n = cal.getShiftCount();
+        long[] cuml = cal.getCumulativeMinutes();
+        long target = cuml[currentShiftIdx + 1] + (tm - time_in_currentShift);
+        int idx = firstIndexAtLeast(cuml, currentShiftIdx + 2, n, target) - 1;
+        while (idx == n && cal.extendShifts()) {
+            int from = n + 1;
+            n = cal.getShiftCount();
+            cuml = cal.getCumulativeMinutes();
+            idx = firstIndexAtLeast(cuml, from, n, target) - 1;
+        }
+        if (idx == n) {
+            return calcEndBefore(cal, cal.getShiftEnd(n - 1), tm);
+        }
+
+        long remaining_tm = target - cuml[idx];
+        long validEnd = cal.getShiftStart(idx) + (long) Math.ceil(remaining_tm/cal.getShiftValue(idx));
+
+        if (JobShop.isLoggable(DEBUG_LEVELS.MAXIMAL)) {
+            JobShop.LOG("Lead time consumed in shift index: " + idx +
+                        "; Remaining Time: " + remaining_tm,
                         DEBUG_LEVELS.MAXIMAL);
+        }
+
+        return new long[] { validStart, validEnd };
+    }
 
-            if (time_in_currentShift >= remaining_tm) {
-                validEnd = currentStart.plusMinutes((long) Math.ceil(remaining_tm/cshift.getValue()));
-                remaining_tm -= time_in_currentShift;
+    /**
+     * Binary search for the largest index i in [lo, hi] of a non-decreasing
+     * array such that values[i] is lesser than or equal to the target
+     * @param values long[] of non-decreasing values
+     * @param lo int value representing the lowest index to search
+     * @param hi int value representing the highest index to search
+     * @param target long value that we are searching for
+     * @return int value of the largest matching index; or lo - 1 if none
+     */
+    private static int lastIndexAtMost(long[] values, int lo, int hi, long target) {
+        int result = lo - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= target) {
+                result = mid;
+                lo = mid + 1;
             }
             else {
-                remaining_tm -= time_in_currentShift;
-                currentShiftIdx++;
-                if (currentShiftIdx == shifts.size()) {
-                    return calcEndBefore(cal, shifts.get(shifts.size() - 1).getEnd(), tm);
-                }
-                currentStart = shifts.get(currentShiftIdx).getStart();
+                hi = mid - 1;
             }
         }
-        return new DateRange(validStart, validEnd);
+        return result;
+    }
+
+    /**
+     * Binary search for the smallest index i in [lo, hi] of a non-decreasing
+     * array such that values[i] is greater than or equal to the target
+     * @param values long[] of non-decreasing values
+     * @param lo int value representing the lowest index to search
+     * @param hi int value representing the highest index to search
+     * @param target long value that we are searching for
+     * @return int value of the smallest matching index; or hi + 1 if none
+     */
+    private static int firstIndexAtLeast(long[] values, int lo, int hi, long target) {
+        int result = hi + 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] >= target) {
+                result = mid;
+                hi = mid - 1;
+            }
+            else {
+                lo = mid + 1;
+            }
+        }
+        return result;
     }
 
     /**
      * Calculates the earliest date on or before a given input date when
      * we have a working shift for the specified input calendar
      * @param cal A Calendar object with specified working shifts
-     * @param dt LocalDateTime representing a date/time
-     * @return LocalDateTime value representing the earliest date/time that
+     * @param dt long value representing a date/time in epoch minutes
+     * @return long value representing the earliest date/time that
      *          falls on or before dt, and lies in a working shift
      */
-     private static LocalDateTime calcValidDateOnOrBefore(Calendar cal, LocalDateTime dt) {
+     private static long calcValidDateOnOrBefore(Calendar cal, long dt) {
 
-        LocalDateTime date = dt;
+        long date = dt;
 
-        List<CalendarShift> shifts = cal.getShifts();
-        int shiftIndex = getShiftIndex(shifts, date);
+        int shiftIndex = getShiftIndex(cal, date);
 
-        if (date.isEqual(shifts.get(shiftIndex).getStart())) {
+        if (date == cal.getShiftStart(shiftIndex)) {
             shiftIndex--;
             if (shiftIndex < 0) {
                 shiftIndex = 0;
             }
-            date = shifts.get(shiftIndex).getEnd();
+            date = cal.getShiftEnd(shiftIndex);
         }
 
-        int workingIndex = getPrevWorkingShiftIndex(shifts, shiftIndex);
+        int workingIndex = cal.prevWorkingShift(shiftIndex);
         if (workingIndex < 0) {
             workingIndex = 0;
         }
@@ -171,7 +302,7 @@ class CalendarUtils {
             return date;
         }
         else {
-            return shifts.get(workingIndex).getEnd();
+            return cal.getShiftEnd(workingIndex);
         }
     }
 
@@ -179,27 +310,26 @@ class CalendarUtils {
      * Calculates the earliest date on or after a given input date when
      * we have a working shift for the specified input calendar
      * @param cal A Calendar object with specified working shifts
-     * @param dt LocalDateTime representing a date/time
-     * @return LocalDateTime value representing the earliest date/time that
+     * @param dt long value representing a date/time in epoch minutes
+     * @return long value representing the earliest date/time that
      *          falls on or after dt, and lies in a working shift
      */
-     private static LocalDateTime calcValidDateOnOrAfter(Calendar cal, LocalDateTime dt) {
+     private static long calcValidDateOnOrAfter(Calendar cal, long dt) {
 
-        LocalDateTime date = dt;
+        long date = dt;
 
-        List<CalendarShift> shifts = cal.getShifts();
-        int shiftIndex = getShiftIndex(shifts, date);
+        int shiftIndex = getShiftIndex(cal, date);
 
-        if (date.isEqual(shifts.get(shiftIndex).getEnd())) {
+        if (date == cal.getShiftEnd(shiftIndex)) {
             shiftIndex++;
-            if (shiftIndex == shifts.size()) {
-                shiftIndex = shifts.size() - 1;
+            if (shiftIndex == cal.getShiftCount()) {
+                shiftIndex = cal.getShiftCount() - 1;
             }
-            date = shifts.get(shiftIndex).getStart();
+            date = cal.getShiftStart(shiftIndex);
         }
 
-        int workingIndex = getNextWorkingShiftIndex(shifts, shiftIndex);
-        if (workingIndex == shifts.size()) {
+        int workingIndex = cal.nextWorkingShift(shiftIndex);
+        if (workingIndex == cal.getShiftCount()) {
             workingIndex--;
         }
 
@@ -207,97 +337,49 @@ class CalendarUtils {
             return date;
         }
         else {
-            return shifts.get(workingIndex).getStart();
+            return cal.getShiftStart(workingIndex);
         }
     }
 
    /**
-     * Given a List of CalendarShift objects, identifies the index of the shift
-     * that contains an input date. Assumes that there will always be a valid
-     * shift that will contain the input date
-     * @param shifts a list of CalendarShift objects
-     * @param dt LocalDateTime representing a date/time
+     * Identifies the index of the shift of a calendar that contains an
+     * input date. Dates before the first shift (on or after the end of the
+     * last shift) map to the first (last) shift
+     * @param cal A Calendar object with specified shifts
+     * @param dt long value representing a date/time in epoch minutes
      * @return int value that represents the index in the list of shifts that
      *          identifies the shift within which the specified date falls
      */
-    private static int getShiftIndex(List<CalendarShift> shifts, LocalDateTime dt) {
+    private static int getShiftIndex(Calendar cal, long dt) {
 
-        int min = 0;
-        int max = shifts.size();
-        int avg = (min + max)/2;
-        boolean found = false;
+        int max = cal.getShiftCount();
 
         // Ensure dt is between the start of the first shift and end of the last shift
-        // Else return the corresponding bounding date
-        if (dt.isBefore(shifts.get(0).getStart())) {
+        // Else return the corresponding bounding index
+        if (dt < cal.getShiftStart(0)) {
             return 0;
         }
-        if (dt.isAfter(shifts.get(max-1).getEnd())) {
+        if (dt >= cal.getShiftEnd(max-1)) {
             return max - 1;
         }
 
-        // If dt is within the shifts, then perform binary search
-        while (!found) {
-            CalendarShift avgShift = shifts.get(avg);
-
-            JobShop.LOG("Min: " + min + "; Max: " + max + "; Avg: " +
-                        avg + "; Shift Start: " + avgShift.getStart() +
-                        "; Shift End: " + avgShift.getEnd(),
-                        DEBUG_LEVELS.MAXIMAL);
-
-            if (dt.isBefore(avgShift.getStart())) {
-                max = avg;
-                avg = (min+max)/2;
-            }
-            else if (dt.isEqual(avgShift.getEnd()) || dt.isAfter(avgShift.getEnd())) {
-                min = avg;
-                avg = (min + max)/2;
+        // Binary search for the last shift that starts on or before dt
+        int lo = 0;
+        int hi = max - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (cal.getShiftStart(mid) <= dt) {
+                lo = mid;
             }
             else {
-                found = true;
+                hi = mid - 1;
             }
         }
 
-        JobShop.LOG("Date: " + dt + " is in shift index: " + avg, DEBUG_LEVELS.MAXIMAL);
-
-        return avg;
-    }
-
-   /**
-     * Given a List of CalendarShift objects, and an index, identifies the index
-     * of the nearest working shift that is lesser than or equal to the input index value
-     * @param shifts a list of CalendarShift objects
-     * @param index integer value of a shift index that we should start searching from
-     * @return int value that represents the index in the list of shifts that
-     *          is a working shift that is lesser than or equal to the input index value
-     */
-    private static int getPrevWorkingShiftIndex(List<CalendarShift> shifts, int index) {
-        int idx = index;
-        while (!shifts.get(idx).isWorking()) {
-            idx--;
-            if (idx < 0) {
-                return idx;
-            }
+        if (JobShop.isLoggable(DEBUG_LEVELS.MAXIMAL)) {
+            JobShop.LOG("Shift index for date: " + lo, DEBUG_LEVELS.MAXIMAL);
         }
-        return idx;
-    }
 
-   /**
-     * Given a List of CalendarShift objects, and an index, identifies the index
-     * of the nearest working shift that is greater than or equal to the input index value
-     * @param shifts a list of CalendarShift objects
-     * @param index integer value of a shift index that we should start searching from
-     * @return int value that represents the index in the list of shifts that
-     *          is a working shift that is greater than or equal to the input index value
-     */
-    private static int getNextWorkingShiftIndex(List<CalendarShift> shifts, int index) {
-        int idx = index;
-        while (!shifts.get(idx).isWorking()) {
-            idx++;
-            if (idx == shifts.size()) {
-                return idx;
-            }
-        }
-        return idx;
+        return lo;
     }
 }
@@ -0,0 +1,367 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * A streaming reader for the comma separated FLATFILE input files.  The
+ * file is read through a fixed size NIO buffer one record at a time; each
+ * record is tokenized on the comma byte into (start, end) slices of a
+ * reusable line buffer, with leading and trailing white space trimmed
+ * from the record and from every field the same way as String.trim().
+ * No objects are created for a record until a field (or the record
+ * itself) is requested; a requested field is materialized once per
+ * record and integer fields may be parsed without creating a String.
+ *
+ * Lines are terminated by "\n", "\r" or "\r\n".  Blank lines are skipped.
+ * The input encoding must be a single byte superset of ASCII (such as
+ * the ISO-8859-1 encoding used for all the input files).
+ */
+class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private boolean eof;
+    private boolean skipLF;
+
+    private byte[] line;
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+    private String lineStr;
+
+    private int fieldCount;
+    private int[] fieldStart;
+    private int[] fieldEnd;
+    private String[] fields;
+
+    /**
+     * Constructor for a CsvReader
+     * @param path Path of the input file
+     * @param charset Charset of the input file
+     * @throws IOException if the file cannot be opened
+     */
+    CsvReader(Path path, Charset charset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.flip();
+        this.charset = charset;
+        this.eof = false;
+        this.skipLF = false;
+        this.line = new byte[256];
+        this.lineNumber = 0;
+        this.fieldStart = new int[16];
+        this.fieldEnd = new int[16];
+        this.fields = new String[16];
+    }
+
+    /**
+     * Advances the reader to the next (non blank) record of the file
+     * @return boolean value true if a record was read; false at the end
+     *         of the file
+     * @throws IOException if the file cannot be read
+     */
+    boolean next() throws IOException {
+        while (readLine()) {
+            trimLine();
+            if (this.lineStart < this.lineEnd) {
+                tokenize();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the current record is a comment; i.e., if its first
+     * (non white space) character is '#'
+     * @return boolean value true if the record is a comment
+     */
+    boolean isComment() {
+        return this.line[this.lineStart] == '#';
+    }
+
+    /**
+     * Returns the current record with leading and trailing white space
+     * removed
+     * @return String representing the current record
+     */
+    String line() {
+        if (this.lineStr == null) {
+            this.lineStr = new String(this.line, this.lineStart,
+                                      this.lineEnd - this.lineStart, this.charset);
+        }
+        return this.lineStr;
+    }
+
+    /**
+     * Returns the (1 based) line number of the current record
+     * @return int value representing the line number of the record
+     */
+    int getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Returns the number of fields in the current record
+     * @return int value representing the number of fields
+     */
+    int fieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * Returns a field of the current record
+     * @param i int value representing the (0 based) index of the field
+     * @return String value of the field with white space trimmed
+     * @throws ArrayIndexOutOfBoundsException if the record does not have
+     *         the field
+     */
+    String get(int i) {
+        checkIndex(i);
+        String s = this.fields[i];
+        if (s == null) {
+            s = new String(this.line, this.fieldStart[i],
+                           this.fieldEnd[i] - this.fieldStart[i], this.charset);
+            this.fields[i] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Checks if a field of the current record is empty
+     * @param i int value representing the (0 based) index of the field
+     * @return boolean value true if the field is empty
+     */
+    boolean isEmpty(int i) {
+        checkIndex(i);
+        return this.fieldStart[i] == this.fieldEnd[i];
+    }
+
+    /**
+     * Parses a field of the current record as an int
+     * @param i int value representing the (0 based) index of the field
+     * @return int value of the field
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    int getInt(int i) {
+        long v = getLong(i);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+        }
+        return (int) v;
+    }
+
+    /**
+     * Parses a field of the current record as a long.  Fields with up to
+     * 18 digits are parsed directly from the line buffer; longer fields
+     * are handed over to Long.parseLong
+     * @param i int value representing the (0 based) index of the field
+     * @return long value of the field
+     * @throws NumberFormatException if the field is not a valid long
+     */
+    long getLong(int i) {
+        checkIndex(i);
+        int st = this.fieldStart[i];
+        int en = this.fieldEnd[i];
+        boolean negative = false;
+        if (st < en && (this.line[st] == '-' || this.line[st] == '+')) {
+            negative = (this.line[st] == '-');
+            st++;
+        }
+        if (st == en || en - st > 18) {
+            return Long.parseLong(get(i));
+        }
+        long v = 0;
+        for (int k = st; k < en; k++) {
+            int d = this.line[k] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+            }
+            v = v * 10 + d;
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * Parses a field of the current record as a date/time value (see
+     * DateTimeCodec) directly from the line buffer
+     * @param i int value representing the (0 based) index of the field
+     * @return LocalDateTime value of the field
+     * @throws java.time.DateTimeException if the field is not a valid
+     *         date/time value
+     */
+    LocalDateTime getDateTime(int i) {
+        checkIndex(i);
+        return DateTimeCodec.parse(this.line, this.fieldStart[i],
+                                   this.fieldEnd[i] - this.fieldStart[i]);
+    }
+
+    /**
+     * Parses a field of the current record as a double
+     * @param i int value representing the (0 based) index of the field
+     * @return double value of the field
+     * @throws NumberFormatException if the field is not a valid double
+     */
+    double getDouble(int i) {
+        return Double.parseDouble(get(i));
+    }
+
+    /**
+     * Closes the underlying file
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= this.fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+    }
+
+    /**
+     * Reads the bytes of the next line (without the terminator) into the
+     * line buffer
+     * @return boolean value false if the end of the file was reached
+     *         before any data (or terminator) was found
+     * @throws IOException if the file cannot be read
+     */
+    private boolean readLine() throws IOException {
+        int len = 0;
+        boolean found = false;
+        while (true) {
+            if (!this.buffer.hasRemaining()) {
+                if (!fill()) {
+                    break;
+                }
+            }
+            byte b = this.buffer.get();
+            if (this.skipLF) {
+                this.skipLF = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            if (b == '\n' || b == '\r') {
+                this.skipLF = (b == '\r');
+                found = true;
+                break;
+            }
+            if (len == this.line.length) {
+                this.line = Arrays.copyOf(this.line, len * 2);
+            }
+            this.line[len++] = b;
+        }
+        if (!found && len == 0) {
+            return false;
+        }
+        this.lineNumber++;
+        this.lineStart = 0;
+        this.lineEnd = len;
+        this.lineStr = null;
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (this.eof) {
+            return false;
+        }
+        this.buffer.clear();
+        int n;
+        do {
+            n = this.channel.read(this.buffer);
+        } while (n == 0);
+        this.buffer.flip();
+        if (n < 0) {
+            this.eof = true;
+            return false;
+        }
+        return true;
+    }
+
+    private void trimLine() {
+        while (this.lineStart < this.lineEnd && isSpace(this.line[this.lineStart])) {
+            this.lineStart++;
+        }
+        while (this.lineEnd > this.lineStart && isSpace(this.line[this.lineEnd - 1])) {
+            this.lineEnd--;
+        }
+    }
+
+    /**
+     * Splits the current line on the comma byte into trimmed field slices
+     */
+    private void tokenize() {
+        int n = 0;
+        int st = this.lineStart;
+        for (int k = this.lineStart; k <= this.lineEnd; k++) {
+            if (k == this.lineEnd || this.line[k] == ',') {
+                if (n == this.fieldStart.length) {
+                    this.fieldStart = Arrays.copyOf(this.fieldStart, n * 2);
+                    this.fieldEnd = Arrays.copyOf(this.fieldEnd, n * 2);
+                    this.fields = Arrays.copyOf(this.fields, n * 2);
+                }
+                int fs = st;
+                int fe = k;
+                while (fs < fe && isSpace(this.line[fs])) {
+                    fs++;
+                }
+                while (fe > fs && isSpace(this.line[fe - 1])) {
+                    fe--;
+                }
+                this.fieldStart[n] = fs;
+                this.fieldEnd[n] = fe;
+                this.fields[n] = null;
+                n++;
+                st = k + 1;
+            }
+        }
+        this.fieldCount = n;
+    }
+
+    /**
+     * Same definition of white space as String.trim()
+     */
+    private static boolean isSpace(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs the loading of the input tables as a small dependency graph.  Each
+ * table is a stage that may only start once all the stages it depends on
+ * (the tables holding the objects it refers to) are complete; independent
+ * stages run concurrently on a fixed size thread pool.
+ *
+ * Stages must be added in a dependency respecting (canonical) order.  With
+ * a single thread, the stages are simply run in that order on the calling
+ * thread.  In either case, the start of each stage is announced to a
+ * listener in the canonical order, so that the progress messages written
+ * by the application do not depend on the thread scheduling.
+ */
+class DataLoader {
+
+    private final int threads;
+    private final Consumer<String> listener;
+    private final List<Stage> stages;
+    private final Map<String, Stage> stageMap;
+    private int announced;
+    private long elapsed;
+
+    /**
+     * Constructor for a DataLoader
+     * @param threads int value representing the number of threads used to
+     *                run the stages
+     * @param listener Consumer that is passed the name of each (executed)
+     *                 stage when it starts, in the order the stages were added
+     */
+    DataLoader(int threads, Consumer<String> listener) {
+        this.threads = Math.max(1, threads);
+        this.listener = listener;
+        this.stages = new ArrayList<Stage>();
+        this.stageMap = new HashMap<String, Stage>();
+        this.announced = 0;
+        this.elapsed = 0;
+    }
+
+    /**
+     * Adds a stage to the graph
+     * @param name String representing the unique name of the stage
+     * @param action Runnable that loads the table
+     * @param deps names of the stages that must complete before this stage
+     */
+    void add(String name, Runnable action, String... deps) {
+        add(name, null, action, deps);
+    }
+
+    /**
+     * Adds a stage that is only executed if a condition holds once all its
+     * dependencies are complete.  A stage that is not executed is not
+     * announced, but still counts as complete for the stages depending on it
+     * @param name String representing the unique name of the stage
+     * @param condition BooleanSupplier that decides if the stage is executed
+     * @param action Runnable that loads the table
+     * @param deps names of the stages that must complete before this stage
+     */
+    void add(String name, BooleanSupplier condition, Runnable action, String... deps) {
+        if (this.stageMap.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate load stage: " + name);
+        }
+        List<Stage> parents = new ArrayList<Stage>();
+        for (String d : deps) {
+            Stage p = this.stageMap.get(d);
+            if (p == null) {
+                throw new IllegalArgumentException("Load stage " + name +
+                                                   " depends on unknown stage " + d);
+            }
+            parents.add(p);
+        }
+        Stage s = new Stage(name, condition, action, parents);
+        this.stages.add(s);
+        this.stageMap.put(name, s);
+    }
+
+    /**
+     * Runs all the stages and waits for them to complete.  If any stage
+     * fails, the stages depending on it are not run and the failure is
+     * rethrown once all the other stages are complete
+     */
+    void run() {
+        long t0 = System.nanoTime();
+        try {
+            if (this.threads == 1) {
+                for (Stage s : this.stages) {
+                    execute(s);
+                }
+            }
+            else {
+                runParallel();
+            }
+        }
+        finally {
+            this.elapsed = System.nanoTime() - t0;
+        }
+    }
+
+    private void runParallel() {
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                                   Math.min(this.threads, this.stages.size()),
+                                   r -> {
+                                       Thread t = new Thread(r, "jobshop-loader-" +
+                                                                counter.incrementAndGet());
+                                       t.setDaemon(true);
+                                       return t;
+                                   });
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+            for (Stage s : this.stages) {
+                CompletableFuture<?>[] parents = new CompletableFuture<?>[s.parents.size()];
+                for (int i = 0; i < parents.length; i++) {
+                    parents[i] = s.parents.get(i).future;
+                }
+                s.future = CompletableFuture.allOf(parents)
+                                            .thenRunAsync(() -> execute(s), pool);
+                futures.add(s.future);
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+        catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private void execute(Stage s) {
+        boolean active = (s.condition == null) || s.condition.getAsBoolean();
+        started(s, active);
+        if (active) {
+            long t0 = System.nanoTime();
+            s.action.run();
+            s.nanos = System.nanoTime() - t0;
+        }
+    }
+
+    /**
+     * Marks a stage as started and announces all the started stages that
+     * are not preceded (in the canonical order) by a stage that has not
+     * started yet
+     */
+    private synchronized void started(Stage s, boolean active) {
+        s.started = true;
+        s.active = active;
+        while (this.announced < this.stages.size() &&
+               this.stages.get(this.announced).started) {
+            Stage a = this.stages.get(this.announced++);
+            if (a.active) {
+                this.listener.accept(a.name);
+            }
+        }
+    }
+
+    /**
+     * Returns the load time of each (executed) stage and the elapsed time
+     * of the whole load
+     * @return String representing the load timings for log purposes
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage s : this.stages) {
+            if (s.active) {
+                sb.append(s.name).append(": ").append(s.nanos / 1000000).append(" ms; ");
+            }
+        }
+        return sb.append("total: ").append(this.elapsed / 1000000).append(" ms (")
+                 .append(this.threads).append(this.threads == 1 ? " thread)" : " threads)")
+                 .toString();
+    }
+
+    /**
+     * A single stage (table) of the load
+     */
+    private static class Stage {
+
+        private final String name;
+        private final BooleanSupplier condition;
+        private final Runnable action;
+        private final List<Stage> parents;
+        private CompletableFuture<Void> future;
+        private boolean started;
+        private boolean active;
+        private long nanos;
+
+        Stage(String name, BooleanSupplier condition, Runnable action, List<Stage> parents) {
+            this.name = name;
+            this.condition = condition;
+            this.action = action;
+            this.parents = parents;
+        }
+    }
+}
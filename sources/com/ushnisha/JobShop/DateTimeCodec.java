@@ -0,0 +1,253 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+
+/**
+ * A utility class to parse and format the date/time values read from and
+ * written to the input and output files and database tables.  The fixed
+ * "yyyy-MM-dd HH:mm:ss" layout used by all the data files is parsed and
+ * formatted directly from/into character and byte buffers; any other
+ * layout accepted by the input files (i.e., ISO-8601 date/times) is
+ * handed over to a DateTimeFormatter.
+ */
+class DateTimeCodec {
+
+    /** Formatter for the date/time layout used by the data files */
+    static final DateTimeFormatter SQLITE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Formatter for all the date/time layouts accepted in the input */
+    static final DateTimeFormatter INPUT_FORMAT = new DateTimeFormatterBuilder()
+                                                  .appendOptional(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                                                  .appendOptional(SQLITE_FORMAT)
+                                                  .toFormatter();
+
+    private static final int LENGTH = 19;
+
+    /**
+     * Parses a date/time value
+     * @param s CharSequence representing the date/time value
+     * @return LocalDateTime value that was parsed
+     * @throws DateTimeException if the value cannot be parsed
+     */
+    static LocalDateTime parse(CharSequence s) {
+        if (s.length() == LENGTH &&
+            s.charAt(4) == '-' && s.charAt(7) == '-' &&
+            (s.charAt(10) == ' ' || s.charAt(10) == 'T') &&
+            s.charAt(13) == ':' && s.charAt(16) == ':') {
+
+            int year = digits(s.charAt(0), s.charAt(1), s.charAt(2), s.charAt(3));
+            int month = digits(s.charAt(5), s.charAt(6));
+            int day = digits(s.charAt(8), s.charAt(9));
+            int hour = digits(s.charAt(11), s.charAt(12));
+            int minute = digits(s.charAt(14), s.charAt(15));
+            int second = digits(s.charAt(17), s.charAt(18));
+            LocalDateTime dt = of(year, month, day, hour, minute, second);
+            if (dt != null) {
+                return dt;
+            }
+        }
+        return LocalDateTime.parse(s, INPUT_FORMAT);
+    }
+
+    /**
+     * Parses a date/time value from a byte buffer holding ISO-8859-1 (or
+     * any ASCII compatible) characters
+     * @param b byte[] holding the date/time value
+     * @param off int value representing the offset of the value in b
+     * @param len int value representing the length of the value
+     * @return LocalDateTime value that was parsed
+     * @throws DateTimeException if the value cannot be parsed
+     */
+    static LocalDateTime parse(byte[] b, int off, int len) {
+        if (len == LENGTH &&
+            b[off + 4] == '-' && b[off + 7] == '-' &&
+            (b[off + 10] == ' ' || b[off + 10] == 'T') &&
+            b[off + 13] == ':' && b[off + 16] == ':') {
+
+            int year = digits((char) b[off], (char) b[off + 1], (char) b[off + 2], (char) b[off + 3]);
+            int month = digits((char) b[off + 5], (char) b[off + 6]);
+            int day = digits((char) b[off + 8], (char) b[off + 9]);
+            int hour = digits((char) b[off + 11], (char) b[off + 12]);
+            int minute = digits((char) b[off + 14], (char) b[off + 15]);
+            int second = digits((char) b[off + 17], (char) b[off + 18]);
+            LocalDateTime dt = of(year, month, day, hour, minute, second);
+            if (dt != null) {
+                return dt;
+            }
+        }
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = off; i < off + len; i++) {
+            sb.append((char) (b[i] & 0xFF));
+        }
+        return LocalDateTime.parse(sb, INPUT_FORMAT);
+    }
+
+    /**
+     * Formats a date/time value in the "yyyy-MM-dd HH:mm:ss" layout
+     * @param dt LocalDateTime value that must be formatted
+     * @return String representing the formatted value
+     */
+    static String format(LocalDateTime dt) {
+        return format(new StringBuilder(LENGTH), dt).toString();
+    }
+
+    /**
+     * Appends a date/time value in the "yyyy-MM-dd HH:mm:ss" layout to a
+     * StringBuilder
+     * @param sb StringBuilder to which the value is appended
+     * @param dt LocalDateTime value that must be formatted
+     * @return StringBuilder that was passed in
+     */
+    static StringBuilder format(StringBuilder sb, LocalDateTime dt) {
+        int year = dt.getYear();
+        if (year < 1 || year > 9999) {
+            return sb.append(SQLITE_FORMAT.format(dt));
+        }
+        append4(sb, year).append('-');
+        append2(sb, dt.getMonthValue()).append('-');
+        append2(sb, dt.getDayOfMonth()).append(' ');
+        append2(sb, dt.getHour()).append(':');
+        append2(sb, dt.getMinute()).append(':');
+        return append2(sb, dt.getSecond());
+    }
+
+    /**
+     * Appends a date/time value to a StringBuilder in exactly the same
+     * (ISO-8601) layout as LocalDateTime.toString(); a null value is
+     * appended as "null"
+     * @param sb StringBuilder to which the value is appended
+     * @param dt LocalDateTime value that must be formatted
+     * @return StringBuilder that was passed in
+     */
+    static StringBuilder appendISO(StringBuilder sb, LocalDateTime dt) {
+        if (dt == null) {
+            return sb.append("null");
+        }
+        int year = dt.getYear();
+        if (year < 0 || year > 9999) {
+            return sb.append(dt);
+        }
+        append4(sb, year).append('-');
+        append2(sb, dt.getMonthValue()).append('-');
+        append2(sb, dt.getDayOfMonth()).append('T');
+        append2(sb, dt.getHour()).append(':');
+        append2(sb, dt.getMinute());
+
+        int second = dt.getSecond();
+        int nano = dt.getNano();
+        if (second > 0 || nano > 0) {
+            sb.append(':');
+            append2(sb, second);
+            if (nano > 0) {
+                sb.append('.');
+                if (nano % 1000_000 == 0) {
+                    appendDigits(sb, nano / 1000_000, 3);
+                }
+                else if (nano % 1000 == 0) {
+                    appendDigits(sb, nano / 1000, 6);
+                }
+                else {
+                    appendDigits(sb, nano, 9);
+                }
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Creates a LocalDateTime if all the fields are valid.  Values that
+     * are not handled here are resolved by the INPUT_FORMAT formatter
+     * (which may, for example, adjust an invalid day-of-month)
+     * @return LocalDateTime value; null if any of the fields are invalid
+     */
+    private static LocalDateTime of(int year, int month, int day,
+                                    int hour, int minute, int second) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 ||
+            hour < 0 || hour > 23 || minute < 0 || minute > 59 ||
+            second < 0 || second > 59) {
+            return null;
+        }
+        if (day > 28 && day > monthLength(year, month)) {
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second);
+    }
+
+    private static int monthLength(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    private static int digits(char c1, char c2) {
+        int d1 = c1 - '0';
+        int d2 = c2 - '0';
+        if (d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) {
+            return -1;
+        }
+        return d1 * 10 + d2;
+    }
+
+    private static int digits(char c1, char c2, char c3, char c4) {
+        int d1 = digits(c1, c2);
+        int d2 = digits(c3, c4);
+        if (d1 < 0 || d2 < 0) {
+            return -1;
+        }
+        return d1 * 100 + d2;
+    }
+
+    private static StringBuilder append2(StringBuilder sb, int v) {
+        return sb.append((char) ('0' + v / 10)).append((char) ('0' + v % 10));
+    }
+
+    private static StringBuilder append4(StringBuilder sb, int v) {
+        append2(sb, v / 100);
+        return append2(sb, v % 100);
+    }
+
+    private static void appendDigits(StringBuilder sb, int v, int n) {
+        for (int div = pow10(n - 1); div > 0; div /= 10) {
+            sb.append((char) ('0' + (v / div) % 10));
+        }
+    }
+
+    private static int pow10(int n) {
+        int p = 1;
+        for (int i = 0; i < n; i++) {
+            p *= 10;
+        }
+        return p;
+    }
+}
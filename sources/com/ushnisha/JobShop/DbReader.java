@@ -0,0 +1,322 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reads the input tables of the DATABASE input mode.  Queries are run on
+ * a small pool of connections (so that independent tables can be read
+ * concurrently) as forward-only, read-only statements with a fixed fetch
+ * size.  The connections are used outside of auto-commit mode since some
+ * drivers (for example, PostgreSQL) only stream the rows of a query with
+ * a fetch size inside a transaction; otherwise the whole result set is
+ * read into memory before the first row is returned.
+ *
+ * The columns of a row are accessed by their (1-based) position in the
+ * column list of the query.  The number of rows and the time taken to
+ * read each table are recorded and reported by toString().
+ */
+class DbReader implements Closeable {
+
+    static final int DEFAULT_FETCH_SIZE = 1000;
+    static final int DEFAULT_CONNECTIONS = 4;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int fetchSize;
+    private final int maxConnections;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> connections;
+    private final List<String> timings;
+
+    /**
+     * Constructor for a DbReader.  Connections are opened when required
+     * @param url String representing the JDBC connection string
+     * @param username String representing the database user
+     * @param password String representing the password of the user
+     * @param connections int value representing the maximum number of
+     *                    connections (and concurrent queries)
+     * @param fetchSize int value representing the number of rows fetched
+     *                  from the database at a time
+     */
+    DbReader(String url, String username, String password, int connections, int fetchSize) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.fetchSize = fetchSize;
+        this.maxConnections = Math.max(1, connections);
+        this.idle = new LinkedBlockingQueue<Connection>();
+        this.connections = new ArrayList<Connection>();
+        this.timings = new ArrayList<String>();
+    }
+
+    /**
+     * Selects columns from all the rows of a table
+     * @param table String representing the name of the table
+     * @param columns String representing the comma separated list of columns
+     * @return Cursor over the rows of the table
+     * @throws SQLException if the query fails
+     */
+    Cursor select(String table, String columns) throws SQLException {
+        return select(table, columns, null);
+    }
+
+    /**
+     * Selects columns from the rows of a plan specific table
+     * @param table String representing the name of the table
+     * @param columns String representing the comma separated list of columns
+     * @param planid String representing the plan whose rows are selected;
+     *               all the rows are selected if null
+     * @return Cursor over the selected rows of the table
+     * @throws SQLException if the query fails
+     */
+    Cursor select(String table, String columns, String planid) throws SQLException {
+
+        String query = "select " + columns + " from " + table;
+        if (planid != null) {
+            query += " where planid = ?";
+        }
+
+        Connection conn = acquire();
+        try {
+            PreparedStatement ps = conn.prepareStatement(query,
+                                                         ResultSet.TYPE_FORWARD_ONLY,
+                                                         ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(this.fetchSize);
+            if (planid != null) {
+                ps.setString(1, planid);
+            }
+            return new Cursor(table, conn, ps, ps.executeQuery());
+        }
+        catch (SQLException e) {
+            release(conn);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes an idle connection from the pool, opening a new connection if
+     * all of them are in use and the pool is not yet full
+     * @return Connection to run a query on
+     * @throws SQLException if a new connection cannot be opened
+     */
+    private Connection acquire() throws SQLException {
+
+        Connection conn = this.idle.poll();
+        if (conn != null) {
+            return conn;
+        }
+
+        synchronized (this.connections) {
+            if (this.connections.size() < this.maxConnections) {
+                conn = DriverManager.getConnection(this.url, this.username, this.password);
+                conn.setAutoCommit(false);
+                this.connections.add(conn);
+                return conn;
+            }
+        }
+
+        try {
+            return this.idle.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection");
+        }
+    }
+
+    /**
+     * Ends the (read-only) transaction of a connection and returns it to
+     * the pool
+     * @param conn Connection that is no longer in use
+     */
+    private void release(Connection conn) {
+        try {
+            conn.rollback();
+        }
+        catch (SQLException e) {
+            JobShop.LOG("Unable to end read transaction: " + e.getMessage());
+        }
+        this.idle.offer(conn);
+    }
+
+    /**
+     * Closes all the connections of the pool
+     */
+    @Override
+    public void close() {
+        synchronized (this.connections) {
+            for (Connection conn : this.connections) {
+                try {
+                    conn.close();
+                }
+                catch (SQLException e) {
+                    JobShop.LOG(e.getMessage());
+                }
+            }
+            this.connections.clear();
+            this.idle.clear();
+        }
+    }
+
+    /**
+     * Returns the statistics of the tables read so far
+     * @return String representation of the rows and time per table
+     */
+    @Override
+    public String toString() {
+        synchronized (this.timings) {
+            return String.join("; ", this.timings) + " (" +
+                   this.connections.size() + " connections; fetch size " +
+                   this.fetchSize + ")";
+        }
+    }
+
+    /**
+     * A forward-only cursor over the rows of a query.  Closing the cursor
+     * returns its connection to the pool
+     */
+    class Cursor implements AutoCloseable {
+
+        private final String table;
+        private final Connection conn;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private final long start;
+        private long rows;
+
+        private Cursor(String table, Connection conn, PreparedStatement ps, ResultSet rs) {
+            this.table = table;
+            this.conn = conn;
+            this.ps = ps;
+            this.rs = rs;
+            this.start = System.nanoTime();
+            this.rows = 0;
+        }
+
+        /**
+         * Moves to the next row
+         * @return boolean value true if there is a next row
+         * @throws SQLException if the row cannot be read
+         */
+        boolean next() throws SQLException {
+            if (this.rs.next()) {
+                this.rows++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns a String column of the row
+         * @param i int value representing the position of the column
+         * @return String value of the column
+         * @throws SQLException if the column cannot be read
+         */
+        String getString(int i) throws SQLException {
+            return this.rs.getString(i);
+        }
+
+        /**
+         * Returns an int column of the row
+         * @param i int value representing the position of the column
+         * @return int value of the column
+         * @throws SQLException if the column cannot be read
+         */
+        int getInt(int i) throws SQLException {
+            return this.rs.getInt(i);
+        }
+
+        /**
+         * Returns a long column of the row
+         * @param i int value representing the position of the column
+         * @return long value of the column
+         * @throws SQLException if the column cannot be read
+         */
+        long getLong(int i) throws SQLException {
+            return this.rs.getLong(i);
+        }
+
+        /**
+         * Returns a double column of the row
+         * @param i int value representing the position of the column
+         * @return double value of the column
+         * @throws SQLException if the column cannot be read
+         */
+        double getDouble(int i) throws SQLException {
+            return this.rs.getDouble(i);
+        }
+
+        /**
+         * Returns a timestamp column of the row
+         * @param i int value representing the position of the column
+         * @return LocalDateTime value of the column; null if it is null
+         * @throws SQLException if the column cannot be read
+         */
+        LocalDateTime getDateTime(int i) throws SQLException {
+            Timestamp ts = this.rs.getTimestamp(i);
+            return (ts == null) ? null : ts.toLocalDateTime();
+        }
+
+        /**
+         * Closes the query, records its statistics and returns the
+         * connection to the pool
+         * @throws SQLException if the query cannot be closed
+         */
+        @Override
+        public void close() throws SQLException {
+            try {
+                this.rs.close();
+                this.ps.close();
+            }
+            finally {
+                release(this.conn);
+
+                long nanos = System.nanoTime() - this.start;
+                long ms = nanos / 1000000;
+                long rate = this.rows * 1000000000L / Math.max(1, nanos);
+                synchronized (timings) {
+                    timings.add(this.table + ": " + this.rows + " rows in " +
+                                ms + " ms (" + rate + " rows/s)");
+                }
+            }
+        }
+    }
+}
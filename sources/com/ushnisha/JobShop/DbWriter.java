@@ -0,0 +1,839 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Writes the plan output of the DATABASE mode in bulk, within explicit
+ * transactions.  All the changes made through a DbWriter (typically the
+ * deletion of the previous output of a plan, followed by the insertion of
+ * the new output) become visible together when commit() is called; the
+ * changes made after the last commit are rolled back when the writer is
+ * closed.
+ *
+ * Rows are buffered and flushed in chunks of a fixed number of rows.  For
+ * the SQLite and MySQL dialects a chunk is written with a single multi-row
+ * INSERT statement; for other databases a chunk is written as a JDBC
+ * batch.  The binding of timestamps is resolved once for the dialect
+ * (SQLite stores timestamps as text).
+ *
+ * For PostgreSQL, rows may instead be streamed with COPY ... FROM STDIN
+ * in the text format: each row is formatted as soon as it is added and
+ * the formatted rows are sent to the server whenever a small buffer
+ * fills up.  The COPY API of the PostgreSQL JDBC driver is accessed by
+ * reflection so that the driver is only required at run time; if it is
+ * not available, the rows are written with INSERT statements.
+ *
+ * For SQLite, MySQL and PostgreSQL the output may also be written to
+ * staging tables (created with the structure of the output tables) that
+ * are then swapped with the output tables by renaming them in a single
+ * transaction (or, for MySQL, a single RENAME TABLE statement).
+ */
+class DbWriter implements AutoCloseable {
+
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // Upper bound on the number of parameters of a single statement; the
+    // (default) limit of older SQLite versions
+    private static final int MAX_PARAMETERS = 999;
+
+    // Number of characters of formatted rows sent to the server at a time
+    // when using COPY
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final SqlNull NULL_VARCHAR = new SqlNull(Types.VARCHAR);
+    private static final SqlNull NULL_INTEGER = new SqlNull(Types.INTEGER);
+    private static final SqlNull NULL_TIMESTAMP = new SqlNull(Types.TIMESTAMP);
+
+    private final Connection connection;
+    private final boolean autoCommit;
+    private final String dialect;
+    private final boolean multiRowInsert;
+    private final boolean timestampsAsText;
+    private final int chunkSize;
+    private final Object copyManager;
+
+    /**
+     * Constructor for a DbWriter.  Starts a transaction on the connection
+     * @param connection Connection to write to
+     * @param url String representing the JDBC connection string; used to
+     *            determine the dialect of the database
+     * @param chunkSize int value representing the number of rows written
+     *                  to the database at a time
+     * @param copy boolean value true if rows must be written with COPY
+     *             when the database is PostgreSQL
+     * @throws SQLException if the transaction cannot be started
+     */
+    DbWriter(Connection connection, String url, int chunkSize, boolean copy) throws SQLException {
+        this.connection = connection;
+        this.autoCommit = connection.getAutoCommit();
+        if (url.contains("sqlite")) {
+            this.dialect = "sqlite";
+        }
+        else if (url.contains("mysql")) {
+            this.dialect = "mysql";
+        }
+        else if (url.contains("postgresql")) {
+            this.dialect = "postgresql";
+        }
+        else {
+            this.dialect = "";
+        }
+        this.multiRowInsert = this.dialect.equals("sqlite") || this.dialect.equals("mysql");
+        this.timestampsAsText = this.dialect.equals("sqlite");
+        this.chunkSize = Math.max(1, chunkSize);
+        this.copyManager = (copy && this.dialect.equals("postgresql")) ?
+                           getCopyManager(connection) : null;
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Returns the CopyManager of a PostgreSQL connection
+     * @param connection Connection to the PostgreSQL database
+     * @return Object that is the org.postgresql.copy.CopyManager of the
+     *         connection; null if the COPY API is not available
+     */
+    private static Object getCopyManager(Connection connection) {
+        try {
+            Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+            return pgConnection.getMethod("getCopyAPI")
+                               .invoke(connection.unwrap(pgConnection));
+        }
+        catch (ReflectiveOperationException | SQLException e) {
+            JobShop.LOG("PostgreSQL COPY is not available (" + e + "); Using INSERT...");
+            return null;
+        }
+    }
+
+    /**
+     * Invokes a method of the PostgreSQL COPY API
+     * @param target Object on which the method is invoked
+     * @param method Method to invoke
+     * @param args Object[] of the arguments of the method
+     * @return Object returned by the method
+     * @throws SQLException thrown by the method or if it cannot be invoked
+     */
+    private static Object invokeCopy(Object target, Method method, Object... args)
+        throws SQLException {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Deletes all the rows of a table that belong to a set of plans
+     * @param table String representing the name of the table
+     * @param planids Collection of String representing the planids
+     * @throws SQLException if the rows cannot be deleted
+     */
+    void deletePlans(String table, Collection<String> planids) throws SQLException {
+        try (PreparedStatement ps = this.connection.prepareStatement(
+                 "delete from " + table + " where planid = ?")) {
+            for (String planid : planids) {
+                ps.setString(1, planid);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Deletes all the rows of a table
+     * @param table String representing the name of the table
+     * @throws SQLException if the rows cannot be deleted
+     */
+    void deleteAll(String table) throws SQLException {
+        execute("delete from " + table);
+    }
+
+    /**
+     * Copies all the rows of a table, except those of a set of plans, to
+     * another table of the same structure
+     * @param from String representing the name of the table copied from
+     * @param to String representing the name of the table copied to
+     * @param planids Collection of String representing the planids of the
+     *                rows that are not copied
+     * @throws SQLException if the rows cannot be copied
+     */
+    void copyOtherPlans(String from, String to, Collection<String> planids)
+        throws SQLException {
+
+        StringBuilder sql = new StringBuilder("insert into " + to + " select * from " + from);
+        if (!planids.isEmpty()) {
+            sql.append(" where planid not in (");
+            for (int i = 0; i < planids.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+        }
+        try (PreparedStatement ps = this.connection.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (String planid : planids) {
+                ps.setString(i++, planid);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns true if staging tables can be swapped with the output tables
+     * for the dialect of the database
+     * @return boolean value true if swapTables() is supported
+     */
+    boolean supportsTableSwap() {
+        return !this.dialect.isEmpty();
+    }
+
+    /**
+     * Checks if a table exists
+     * @param table String representing the name of the table
+     * @return boolean value true if the table exists
+     * @throws SQLException if the database metadata cannot be read
+     */
+    boolean tableExists(String table) throws SQLException {
+        try (ResultSet rs = this.connection.getMetaData()
+                                .getTables(null, null, table, new String[] { "TABLE" })) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Creates a table with the structure (columns, defaults, keys and
+     * indexes) of another table
+     * @param table String representing the name of the new table
+     * @param like String representing the name of the existing table
+     * @throws SQLException if the table cannot be created
+     */
+    void createTableLike(String table, String like) throws SQLException {
+
+        if (this.dialect.equals("mysql")) {
+            execute("create table " + table + " like " + like);
+        }
+        else if (this.dialect.equals("postgresql")) {
+            execute("create table " + table + " (like " + like + " including all)");
+        }
+        else if (this.dialect.equals("sqlite")) {
+            String ddl = null;
+            try (PreparedStatement ps = this.connection.prepareStatement(
+                     "select sql from sqlite_master where type = 'table' and name = ?")) {
+                ps.setString(1, like);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        ddl = rs.getString(1);
+                    }
+                }
+            }
+            if (ddl == null) {
+                throw new SQLException("Table not found: " + like);
+            }
+            execute(ddl.replaceFirst("(?i)^\\s*create\\s+table\\s+[\"`\\[]?" + like + "[\"`\\]]?",
+                                     "create table " + table));
+        }
+        else {
+            throw new SQLException("Unable to create table " + table + " for this database");
+        }
+    }
+
+    /**
+     * Creates an index on a column of a table unless the table already
+     * has an index that starts with that column
+     * @param table String representing the name of the table
+     * @param column String representing the name of the column
+     * @throws SQLException if the index cannot be created
+     */
+    void createIndexIfMissing(String table, String column) throws SQLException {
+        try (ResultSet rs = this.connection.getMetaData()
+                                .getIndexInfo(null, null, table, false, true)) {
+            while (rs.next()) {
+                if (rs.getShort("ORDINAL_POSITION") == 1 &&
+                    column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return;
+                }
+            }
+        }
+        // Index names must be unique in the schema for some databases and
+        // the index is renamed along with its table
+        execute("create index " + table + "_" + column + "_" +
+                Long.toString(System.currentTimeMillis(), 36) +
+                " on " + table + " (" + column + ")");
+    }
+
+    /**
+     * Swaps the names of pairs of tables.  Once the swap is committed, the
+     * readers of a table see the rows that were in the other table
+     * @param tables String[] of pairs of table names
+     * @throws SQLException if the tables cannot be renamed
+     */
+    void swapTables(String... tables) throws SQLException {
+
+        if (this.dialect.equals("mysql")) {
+            // A single RENAME TABLE statement is atomic
+            StringBuilder sql = new StringBuilder("rename table ");
+            for (int i = 0; i < tables.length; i += 2) {
+                String tmp = tables[i] + "_swap";
+                sql.append(i == 0 ? "" : ", ")
+                   .append(tables[i]).append(" to ").append(tmp).append(", ")
+                   .append(tables[i + 1]).append(" to ").append(tables[i]).append(", ")
+                   .append(tmp).append(" to ").append(tables[i + 1]);
+            }
+            execute(sql.toString());
+        }
+        else if (supportsTableSwap()) {
+            // SQLite and PostgreSQL support renaming tables in a transaction
+            for (int i = 0; i < tables.length; i += 2) {
+                String tmp = tables[i] + "_swap";
+                execute("alter table " + tables[i] + " rename to " + tmp);
+                execute("alter table " + tables[i + 1] + " rename to " + tables[i]);
+                execute("alter table " + tmp + " rename to " + tables[i + 1]);
+            }
+        }
+        else {
+            throw new SQLException("Unable to swap tables for this database");
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = this.connection.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Starts a batch of a parameterized statement (typically an update
+     * or a delete) that is executed for a number of rows
+     * @param sql String representing the statement
+     * @return Batch to which the rows are added
+     * @throws SQLException if the statement cannot be prepared
+     */
+    Batch batch(String sql) throws SQLException {
+        return new Batch(sql);
+    }
+
+    /**
+     * Prepares a query restricted to the rows of a set of plans
+     * @param query String representing the query (without a where clause)
+     * @param planids Collection of String representing the planids
+     * @return PreparedStatement of the query with the planids bound
+     * @throws SQLException if the query cannot be prepared
+     */
+    PreparedStatement prepareForPlans(String query, Collection<String> planids)
+        throws SQLException {
+
+        StringBuilder sql = new StringBuilder(query).append(" where planid in (");
+        for (int i = 0; i < planids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        PreparedStatement ps = this.connection.prepareStatement(sql.toString(),
+                                                                ResultSet.TYPE_FORWARD_ONLY,
+                                                                ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(this.chunkSize);
+        int i = 1;
+        for (String planid : planids) {
+            ps.setString(i++, planid);
+        }
+        return ps;
+    }
+
+    /**
+     * Reads a timestamp column written by this writer
+     * @param rs ResultSet positioned on a row
+     * @param i int value representing the position of the column
+     * @return LocalDateTime value of the column; null if it is null
+     * @throws SQLException if the column cannot be read
+     */
+    LocalDateTime getDateTime(ResultSet rs, int i) throws SQLException {
+        if (this.timestampsAsText) {
+            String v = rs.getString(i);
+            return (v == null) ? null : DateTimeCodec.parse(v.length() > 19 ? v.substring(0, 19) : v);
+        }
+        Timestamp ts = rs.getTimestamp(i);
+        return (ts == null) ? null : ts.toLocalDateTime();
+    }
+
+    /**
+     * Starts the insertion of rows into a table
+     * @param table String representing the name of the table
+     * @param columns String[] representing the columns of the rows
+     * @return Insert to which the rows are added
+     */
+    Insert insert(String table, String... columns) {
+        return new Insert(table, columns);
+    }
+
+    /**
+     * Commits all the changes made through this writer
+     * @throws SQLException if the transaction cannot be committed
+     */
+    void commit() throws SQLException {
+        this.connection.commit();
+    }
+
+    /**
+     * Rolls back the changes that were not committed and restores the
+     * auto-commit mode of the connection
+     * @throws SQLException if the transaction cannot be ended
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            this.connection.rollback();
+        }
+        finally {
+            this.connection.setAutoCommit(this.autoCommit);
+        }
+    }
+
+    /**
+     * The rows to be inserted into a table.  The columns of the current
+     * row are set (by their 1-based position) and the row is then added
+     * with addRow(); full chunks are written as rows are added and the
+     * last (partial) chunk is written by close()
+     */
+    class Insert extends Row implements AutoCloseable {
+
+        private final String table;
+        private final String[] columns;
+        private final int rowsPerChunk;
+        private final Object[] values;
+        private PreparedStatement chunkStmt;
+        private StringBuilder copyBuffer;
+        private Object copyIn;
+        private Method writeToCopy;
+        private int rows;
+        private long written;
+        private final long start;
+
+        private Insert(String table, String[] columns) {
+            this.table = table;
+            this.columns = columns;
+            if (copyManager != null) {
+                this.rowsPerChunk = 1;
+            }
+            else if (multiRowInsert) {
+                this.rowsPerChunk = Math.max(1, Math.min(chunkSize, MAX_PARAMETERS / columns.length));
+            }
+            else {
+                this.rowsPerChunk = chunkSize;
+            }
+            this.values = new Object[this.rowsPerChunk * columns.length];
+            this.chunkStmt = null;
+            this.copyBuffer = null;
+            this.copyIn = null;
+            this.writeToCopy = null;
+            this.rows = 0;
+            this.written = 0;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        void set(int i, Object v) {
+            this.values[this.rows * this.columns.length + i - 1] = v;
+        }
+
+        /**
+         * Adds the current row; writes the chunk if it is full
+         * @throws SQLException if the chunk cannot be written
+         */
+        void addRow() throws SQLException {
+            this.rows++;
+            if (this.rows == this.rowsPerChunk) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes the buffered rows to the database
+         */
+        private void flush() throws SQLException {
+            if (this.rows == 0) {
+                return;
+            }
+            int ncols = this.columns.length;
+            if (copyManager != null) {
+                for (int k = 0; k < this.rows * ncols; k++) {
+                    appendCopyValue(k % ncols == 0, this.values[k]);
+                }
+                this.copyBuffer.append('\n');
+                if (this.copyBuffer.length() >= COPY_BUFFER_SIZE) {
+                    writeCopy();
+                }
+            }
+            else if (multiRowInsert) {
+                PreparedStatement ps;
+                if (this.rows == this.rowsPerChunk) {
+                    if (this.chunkStmt == null) {
+                        this.chunkStmt = connection.prepareStatement(sql(this.rows));
+                    }
+                    ps = this.chunkStmt;
+                }
+                else {
+                    ps = connection.prepareStatement(sql(this.rows));
+                }
+                try {
+                    for (int k = 0; k < this.rows * ncols; k++) {
+                        bind(ps, k + 1, this.values[k]);
+                    }
+                    ps.executeUpdate();
+                }
+                finally {
+                    if (ps != this.chunkStmt) {
+                        ps.close();
+                    }
+                }
+            }
+            else {
+                if (this.chunkStmt == null) {
+                    this.chunkStmt = connection.prepareStatement(sql(1));
+                }
+                for (int r = 0; r < this.rows; r++) {
+                    for (int c = 0; c < ncols; c++) {
+                        bind(this.chunkStmt, c + 1, this.values[r * ncols + c]);
+                    }
+                    this.chunkStmt.addBatch();
+                }
+                this.chunkStmt.executeBatch();
+            }
+            this.written += this.rows;
+            this.rows = 0;
+            Arrays.fill(this.values, null);
+        }
+
+        /**
+         * Appends a column value to the current row in the COPY text
+         * format, starting the COPY if required
+         * @param first boolean value true for the first column of a row
+         * @param v Object value of the column
+         * @throws SQLException if the COPY cannot be started
+         */
+        private void appendCopyValue(boolean first, Object v) throws SQLException {
+            if (this.copyIn == null) {
+                startCopy();
+            }
+            StringBuilder sb = this.copyBuffer;
+            if (!first) {
+                sb.append('\t');
+            }
+            if (v instanceof SqlNull) {
+                sb.append("\\N");
+            }
+            else if (v instanceof Timestamp) {
+                DateTimeCodec.format(sb, ((Timestamp) v).toLocalDateTime());
+            }
+            else if (v instanceof String) {
+                String str = (String) v;
+                for (int i = 0; i < str.length(); i++) {
+                    char c = str.charAt(i);
+                    switch (c) {
+                        case '\\': sb.append("\\\\"); break;
+                        case '\t': sb.append("\\t"); break;
+                        case '\n': sb.append("\\n"); break;
+                        case '\r': sb.append("\\r"); break;
+                        default: sb.append(c);
+                    }
+                }
+            }
+            else {
+                sb.append(v);
+            }
+        }
+
+        private void startCopy() throws SQLException {
+            try {
+                Method copyInMethod = copyManager.getClass().getMethod("copyIn", String.class);
+                this.copyIn = invokeCopy(copyManager, copyInMethod,
+                                         "copy " + this.table + " (" +
+                                         String.join(", ", this.columns) +
+                                         ") from stdin");
+                this.writeToCopy = Class.forName("org.postgresql.copy.CopyIn")
+                                        .getMethod("writeToCopy", byte[].class,
+                                                   int.class, int.class);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new SQLException(e);
+            }
+            this.copyBuffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+        }
+
+        /**
+         * Sends the formatted rows to the server
+         * @throws SQLException if the rows cannot be sent
+         */
+        private void writeCopy() throws SQLException {
+            byte[] b = this.copyBuffer.toString().getBytes(StandardCharsets.UTF_8);
+            invokeCopy(this.copyIn, this.writeToCopy, b, 0, b.length);
+            this.copyBuffer.setLength(0);
+        }
+
+        /**
+         * Ends the COPY once all the rows are sent
+         * @throws SQLException if the COPY fails
+         */
+        private void endCopy() throws SQLException {
+            if (this.copyIn == null) {
+                return;
+            }
+            try {
+                Class<?> copyInClass = Class.forName("org.postgresql.copy.CopyIn");
+                if (this.copyBuffer.length() > 0) {
+                    writeCopy();
+                }
+                invokeCopy(this.copyIn, copyInClass.getMethod("endCopy"));
+            }
+            catch (ReflectiveOperationException e) {
+                throw new SQLException(e);
+            }
+            finally {
+                this.copyIn = null;
+            }
+        }
+
+        /**
+         * Cancels a COPY that could not be completed so that the
+         * transaction can be rolled back
+         */
+        private void cancelCopy() {
+            if (this.copyIn == null) {
+                return;
+            }
+            try {
+                invokeCopy(this.copyIn, Class.forName("org.postgresql.copy.CopyIn")
+                                             .getMethod("cancelCopy"));
+            }
+            catch (ReflectiveOperationException | SQLException e) {
+                JobShop.LOG("Unable to cancel COPY into " + this.table + ": " + e.getMessage());
+            }
+            finally {
+                this.copyIn = null;
+            }
+        }
+
+        private String sql(int nrows) {
+            StringBuilder sb = new StringBuilder(64 + nrows * this.columns.length * 3);
+            sb.append("insert into ").append(this.table).append(" (")
+              .append(String.join(", ", this.columns)).append(") values ");
+            for (int r = 0; r < nrows; r++) {
+                sb.append(r == 0 ? "(" : ", (");
+                for (int c = 0; c < this.columns.length; c++) {
+                    sb.append(c == 0 ? "?" : ", ?");
+                }
+                sb.append(')');
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Writes the remaining rows and logs the number of rows written
+         * @throws SQLException if the rows cannot be written
+         */
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+                endCopy();
+            }
+            finally {
+                cancelCopy();
+                if (this.chunkStmt != null) {
+                    this.chunkStmt.close();
+                }
+            }
+            long nanos = System.nanoTime() - this.start;
+            JobShop.LOG("Wrote " + this.written + " rows to " + this.table + " in " +
+                        (nanos / 1000000) + " ms (" +
+                        (this.written * 1000000000L / Math.max(1, nanos)) + " rows/s)");
+        }
+    }
+
+    private static void bind(PreparedStatement ps, int i, Object v) throws SQLException {
+        if (v instanceof SqlNull) {
+            ps.setNull(i, ((SqlNull) v).type);
+        }
+        else if (v instanceof String) {
+            ps.setString(i, (String) v);
+        }
+        else if (v instanceof Integer) {
+            ps.setInt(i, (Integer) v);
+        }
+        else if (v instanceof Long) {
+            ps.setLong(i, (Long) v);
+        }
+        else {
+            ps.setTimestamp(i, (Timestamp) v);
+        }
+    }
+
+    /**
+     * The columns of the current row of an Insert or a Batch, set by their
+     * (1-based) position.  Null values are represented by their SQL type
+     * and timestamps are converted as required by the dialect
+     */
+    abstract class Row {
+
+        /**
+         * Sets a text column of the current row
+         * @param i int value representing the position of the column
+         * @param v String value of the column; may be null
+         * @throws SQLException if the value cannot be set
+         */
+        void setString(int i, String v) throws SQLException {
+            set(i, (v == null) ? NULL_VARCHAR : v);
+        }
+
+        /**
+         * Sets an integer column of the current row
+         * @param i int value representing the position of the column
+         * @param v Integer value of the column; may be null
+         * @throws SQLException if the value cannot be set
+         */
+        void setInt(int i, Integer v) throws SQLException {
+            set(i, (v == null) ? NULL_INTEGER : v);
+        }
+
+        /**
+         * Sets a long integer column of the current row
+         * @param i int value representing the position of the column
+         * @param v long value of the column
+         * @throws SQLException if the value cannot be set
+         */
+        void setLong(int i, long v) throws SQLException {
+            set(i, Long.valueOf(v));
+        }
+
+        /**
+         * Sets a timestamp column of the current row
+         * @param i int value representing the position of the column
+         * @param v LocalDateTime value of the column; may be null
+         * @throws SQLException if the value cannot be set
+         */
+        void setDateTime(int i, LocalDateTime v) throws SQLException {
+            if (v == null) {
+                set(i, timestampsAsText ? NULL_VARCHAR : NULL_TIMESTAMP);
+            }
+            else {
+                set(i, timestampsAsText ? DateTimeCodec.format(v) : Timestamp.valueOf(v));
+            }
+        }
+
+        abstract void set(int i, Object v) throws SQLException;
+    }
+
+    /**
+     * A parameterized statement that is executed, as a JDBC batch, for
+     * each row added to it.  The batch is executed each time a chunk of
+     * rows is added and when it is closed
+     */
+    class Batch extends Row implements AutoCloseable {
+
+        private final PreparedStatement ps;
+        private int pending;
+        private long rows;
+
+        private Batch(String sql) throws SQLException {
+            this.ps = connection.prepareStatement(sql);
+            this.pending = 0;
+            this.rows = 0;
+        }
+
+        @Override
+        void set(int i, Object v) throws SQLException {
+            bind(this.ps, i, v);
+        }
+
+        /**
+         * Adds the current row; executes the batch once a chunk of rows
+         * is added
+         * @throws SQLException if the batch cannot be executed
+         */
+        void addRow() throws SQLException {
+            this.ps.addBatch();
+            this.rows++;
+            if (++this.pending == chunkSize) {
+                this.ps.executeBatch();
+                this.pending = 0;
+            }
+        }
+
+        /**
+         * Returns the number of rows added to the batch
+         * @return long value representing the number of rows
+         */
+        long getRows() {
+            return this.rows;
+        }
+
+        /**
+         * Executes the remaining rows and closes the statement
+         * @throws SQLException if the batch cannot be executed
+         */
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (this.pending > 0) {
+                    this.ps.executeBatch();
+                }
+            }
+            finally {
+                this.ps.close();
+            }
+        }
+    }
+
+    /**
+     * A null column value of a given SQL type
+     */
+    private static final class SqlNull {
+
+        private final int type;
+
+        SqlNull(int type) {
+            this.type = type;
+        }
+    }
+}
@@ -175,11 +175,32 @@ class Demand implements Partitionable {
      * Ask the demand to go plan itself and then compute its planned date/quantity
      */
     void plan() {
+        PlanningContext ctx = new PlanningContext(this.plan);
+        commit(ctx, request(ctx));
+    }
+
+    /**
+     * Ask the delivery task to plan this demand; the TaskPlans of the
+     * returned Promise are only recorded in the PlanningContext
+     * @param ctx PlanningContext in which the demand is planned
+     * @return Promise of the delivery task for this demand
+     */
+    Promise request(PlanningContext ctx) {
 
         JobShop.LOG("Planning for demand: " + this.id, DEBUG_LEVELS.DETAILED);
 
         Request req = new Request(this, this.dueqty, this.duedate, this.plan);
-        Promise promise = this.sku.getDeliveryTask().request(req);
+        return this.sku.getDeliveryTask().request(req, ctx);
+    }
+
+    /**
+     * Commit the PlanningContext in which this demand was planned and
+     * compute its planned date/quantity
+     * @param ctx PlanningContext in which the demand was planned
+     * @param promise Promise returned by request(ctx)
+     */
+    void commit(PlanningContext ctx, Promise promise) {
+        ctx.commit();
         this.delivery_taskplans = promise.getTaskPlans();
         this.updatePlanData();
     }
@@ -256,10 +277,21 @@ class Demand implements Partitionable {
      * @return String that represents the demand (for output purposes)
      */
     String dmdplanString() {
-        return this.plan.getID() + "," + this.sku + "," + this.id +
-               "," + this.priority + "," + this.dueqty +
-               "," + this.duedate + "," + this.planqty +
-               "," + this.plandate;
+        return appendDmdplanString(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the csv output representation of the demand (see
+     * dmdplanString) to a StringBuilder
+     * @param sb StringBuilder to which the representation is appended
+     * @return StringBuilder that was passed in
+     */
+    StringBuilder appendDmdplanString(StringBuilder sb) {
+        sb.append(this.plan.getID()).append(',').append(this.sku)
+          .append(',').append(this.id).append(',').append(this.priority)
+          .append(',').append(this.dueqty).append(',');
+        DateTimeCodec.appendISO(sb, this.duedate).append(',').append(this.planqty).append(',');
+        return DateTimeCodec.appendISO(sb, this.plandate);
     }
 
     /**
@@ -267,9 +299,21 @@ class Demand implements Partitionable {
      * @return String that represents the demand (for output/log purposes)
      */
     public String toString() {
-        return this.sku + "-" + this.id + 
-               "; Priority: " + this.priority +
-               "; Due: " + this.dueqty + " on " + this.duedate + 
-               "; Planned: " + this.planqty + " on " + this.plandate;
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the string representation of the demand (see toString) to
+     * a StringBuilder
+     * @param sb StringBuilder to which the representation is appended
+     * @return StringBuilder that was passed in
+     */
+    StringBuilder appendTo(StringBuilder sb) {
+        sb.append(this.sku).append('-').append(this.id)
+          .append("; Priority: ").append(this.priority)
+          .append("; Due: ").append(this.dueqty).append(" on ");
+        DateTimeCodec.appendISO(sb, this.duedate)
+          .append("; Planned: ").append(this.planqty).append(" on ");
+        return DateTimeCodec.appendISO(sb, this.plandate);
     }
 }
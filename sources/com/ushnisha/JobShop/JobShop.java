@@ -25,6 +25,7 @@
 
 package com.ushnisha.JobShop;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -34,9 +35,12 @@ import java.nio.charset.Charset;
 import java.nio.file.StandardOpenOption;
 
 
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
+import java.time.LocalTime;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 
 import java.util.Arrays;
 import java.util.List;
@@ -46,14 +50,19 @@ import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.stream.Collectors;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-import java.sql.Timestamp;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.PreparedStatement;
 
 /**
@@ -66,16 +75,8 @@ public class JobShop {
 
     private static Path logDir;
     private static Path logFile;
-    private static Path goodFile;
-    private static Path badFile;
     private static Path testplanoutFile = null;
-
-    private static DateTimeFormatter sqliteDFS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-    private static DateTimeFormatter dfs = new DateTimeFormatterBuilder()
-                                           .appendOptional(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                                           .appendOptional(sqliteDFS)
-                                           .toFormatter();
+    private static LogSink logSink = null;
 
     private Map<String,Plan> plans;
     private Map<String,Calendar> calendars;
@@ -90,7 +91,10 @@ public class JobShop {
     private Map<String,String> options;
     private String datadir;
     private Connection connection;
-    private Statement statement;
+    private DbReader dbReader;
+    private ModelSnapshot snapshot;
+    private boolean snapshotRestored;
+    private String planScope;
 
     private static boolean cleandata = false;
     static final Charset charset = Charset.forName("ISO-8859-1");
@@ -130,9 +134,7 @@ public class JobShop {
 			pls = jshop.getPlanIDs();
 		}
 
-        for (String p : pls) {
-            jshop.generatePlan(p);
-        }
+        jshop.generatePlans(pls);
 
         jshop.print(pls);
         if (jshop.options.containsKey("export_json") &&
@@ -140,7 +142,26 @@ public class JobShop {
             jshop.exportJSON(pls);
         }
 
+        jshop.logCalendarCacheStatistics();
+
         JobShop.LOG("Done!\n", true);
+        JobShop.LOG("Log sink: " + getLogSink());
+        getLogSink().close();
+    }
+
+    /**
+     * Utility function that logs the statistics of the lead time
+     * calculation caches of the calendars
+     */
+    private void logCalendarCacheStatistics() {
+        List<String> scals = this.calendars.keySet()
+                               .stream()
+                               .sorted()
+                               .collect(Collectors.toList());
+        for (String c : scals) {
+            JobShop.LOG("Calendar cache: " + c + ": " +
+                        this.calendars.get(c).getCache());
+        }
     }
 
     /**
@@ -176,6 +197,34 @@ public class JobShop {
         JobShop.LOG(message, false, debug_level);
     }
 
+    /**
+     * Utility function that logs error/warning/info messages whose text
+     * is expensive to build.  The message is only constructed if the
+     * current debug level is greater than or equal to debug_level, so a
+     * disabled message costs no more than the level check.  Message will
+     * be logged only to log file and not to standard output
+     * @param message Supplier<String> that builds the string to be logged
+     * @param debug_level DEBUG_LEVELS Current debug level setting must
+     *                    be greater than or equal to this value to log
+     *                    this message
+     */
+    static void LOG(Supplier<String> message, DEBUG_LEVELS debug_level) {
+        if (isLoggable(debug_level)) {
+            JobShop.LOG(message.get(), false, debug_level);
+        }
+    }
+
+    /**
+     * Utility function that checks if messages of a given debug level
+     * will be logged
+     * @param debug_level DEBUG_LEVELS of the messages
+     * @return boolean value that is true if the current debug level setting
+     *         is greater than or equal to debug_level
+     */
+    static boolean isLoggable(DEBUG_LEVELS debug_level) {
+        return DEBUG.ordinal() >= debug_level.ordinal();
+    }
+
     /**
      * Utility function that logs error/warning/info messages
      * @param message String The string that must be logged
@@ -193,8 +242,10 @@ public class JobShop {
                 System.out.println(message);
             }
 
-            JobShop.LOGDATA(JobShop.logFile,
-                            LocalDateTime.now().toString() + " : " + message);
+            if (JobShop.logFile != null) {
+                getLogSink().log(JobShop.logFile,
+                                 LocalDateTime.now().toString() + " : " + message);
+            }
         }
     }
 
@@ -219,22 +270,55 @@ public class JobShop {
             return;
         }
 
-        StandardOpenOption app = StandardOpenOption.TRUNCATE_EXISTING;
-        if (append) {
-            app = StandardOpenOption.APPEND;
-        }
+        getLogSink().write(currentPath, datarec, append);
+    }
 
-        try {
-            Files.write(currentPath,
-                        Arrays.asList(datarec),
-                        charset,
-                        StandardOpenOption.WRITE,
-                        StandardOpenOption.CREATE,
-                        app);
-        }
-        catch (IOException e) {
-            System.err.println("Unable to write data to file: " + currentPath.toString());
+    /**
+     * Return the sink through which all the log and data files are written.
+     * A sink with default settings is created if the options have not
+     * been processed yet
+     * @return LogSink used to write log and data files
+     */
+    private static synchronized LogSink getLogSink() {
+        if (JobShop.logSink == null) {
+            JobShop.logSink = new LogSink(LogSink.DEFAULT_QUEUE_SIZE,
+                                          LogSink.DEFAULT_FLUSH_BYTES,
+                                          LogSink.DEFAULT_FLUSH_MILLIS,
+                                          false, charset);
+        }
+        return JobShop.logSink;
+    }
+
+    /**
+     * Opens a buffered writer for one of the plan output files
+     * @param path Path of the output file; may be null
+     * @param append boolean value if we should append to the file or overwrite
+     * @return BufferedWriter for the file; null if path is null
+     * @throws IOException if the file cannot be opened
+     */
+    private static BufferedWriter openOutputFile(Path path, boolean append) throws IOException {
+        if (path == null) {
+            return null;
+        }
+        return Files.newBufferedWriter(path, charset,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.CREATE,
+                                       append ? StandardOpenOption.APPEND :
+                                                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes a record (followed by a line separator) to a plan output file
+     * @param w BufferedWriter of the output file; the record is skipped if null
+     * @param rec CharSequence representing the record
+     * @throws IOException if the record cannot be written
+     */
+    private static void writeOutputRecord(BufferedWriter w, CharSequence rec) throws IOException {
+        if (w == null) {
+            return;
         }
+        w.append(rec);
+        w.newLine();
     }
 
     /**
@@ -251,25 +335,34 @@ public class JobShop {
             System.exit(101);
         }
 
-        this.plans = new HashMap<String,Plan>();
-        this.calendars = new HashMap<String,Calendar>();
-        this.skus = new HashMap<String,SKU>();
-        this.demands = new HashMap<String,Demand>();
-        this.tasks = new HashMap<String,Task>();
+        this.plans = Collections.synchronizedMap(new HashMap<String,Plan>());
+        this.calendars = Collections.synchronizedMap(new HashMap<String,Calendar>());
+        this.skus = Collections.synchronizedMap(new HashMap<String,SKU>());
+        this.demands = Collections.synchronizedMap(new HashMap<String,Demand>());
+        this.tasks = Collections.synchronizedMap(new HashMap<String,Task>());
         this.taskplans = new HashMap<Task,TaskPlan>();
-        this.workcenters = new HashMap<String,Workcenter>();
-        this.relworkorders = new HashMap<String,ReleasedWorkOrder>();
-        this.components = new HashSet<Partitionable>();
+        this.workcenters = Collections.synchronizedMap(new HashMap<String,Workcenter>());
+        this.relworkorders = Collections.synchronizedMap(new HashMap<String,ReleasedWorkOrder>());
+        this.components = Collections.synchronizedSet(new HashSet<Partitionable>());
 
         this.options = new HashMap<String, String>();
         this.datadir = "";
         this.connection = null;
-        this.statement = null;
+        this.dbReader = null;
+        this.snapshot = null;
+        this.snapshotRestored = false;
+        this.planScope = null;
 
         this.processOptions(optionFile);
         this.loadData();
         this.performStaticDataValidation();
-        this.runStaticAnalysis();
+        if (this.snapshotRestored) {
+            this.restoreStaticAnalysis();
+        }
+        else {
+            this.runStaticAnalysis();
+            this.saveSnapshot();
+        }
         this.runDynamicAnalysis();
     }
 
@@ -461,18 +554,39 @@ public class JobShop {
             JobShop.logFile = Paths.get(cwd + "/jobshop.log");
         }
 
+        // Setup the asynchronous sink through which the log file and all
+        // the other output files are written
+        //
+        int logQueueSize = LogSink.DEFAULT_QUEUE_SIZE;
+        int logFlushBytes = LogSink.DEFAULT_FLUSH_BYTES;
+        long logFlushMillis = LogSink.DEFAULT_FLUSH_MILLIS;
         try {
-            Files.write(JobShop.logFile,
-                        Arrays.asList(LocalDateTime.now().toString() + " : " +
-                                      "Starting JobShop Minimal Solver"),
-                        StandardOpenOption.WRITE,
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING);
+            if (this.options.containsKey("log_queue_size")) {
+                logQueueSize = Integer.parseInt(this.options.get("log_queue_size"));
+            }
+            if (this.options.containsKey("log_flush_bytes")) {
+                logFlushBytes = Integer.parseInt(this.options.get("log_flush_bytes"));
+            }
+            if (this.options.containsKey("log_flush_millis")) {
+                logFlushMillis = Long.parseLong(this.options.get("log_flush_millis"));
+            }
         }
-        catch (IOException e) {
-            System.err.println("Unable to write to log file: " + e);
+        catch (NumberFormatException e) {
+            System.err.println("Illegal value for logging option: " + e.getMessage() + "; Using defaults...");
+        }
+        boolean logDropOnOverflow = this.options.containsKey("log_drop_on_overflow") &&
+                                    Boolean.parseBoolean(this.options.get("log_drop_on_overflow"));
+        synchronized (JobShop.class) {
+            if (JobShop.logSink == null) {
+                JobShop.logSink = new LogSink(logQueueSize, logFlushBytes, logFlushMillis,
+                                              logDropOnOverflow, charset);
+            }
         }
 
+        JobShop.LOGDATA(JobShop.logFile,
+                        LocalDateTime.now().toString() + " : " +
+                        "Starting JobShop Minimal Solver", false);
+
         // Check to make sure input_mode is specified
         if (this.options.containsKey("input_mode")) {
             String mode = this.options.get("input_mode");
@@ -501,7 +615,6 @@ public class JobShop {
                                     this.options.get("db_connection_string"),
                                     this.options.get("db_username"),
                                     this.options.get("db_password"));
-                    this.statement = connection.createStatement();
                 }
                 catch (SQLException e) {
                     JobShop.LOG(e.getMessage());
@@ -557,6 +670,14 @@ public class JobShop {
             }
         }
 
+        // When a default_plan is specified only that plan is generated; so
+        // the plan specific data (plan parameters, demands and released
+        // workorders) of the other plans is not loaded or analyzed.  All
+        // the records are still loaded when cleaning data
+        if (this.options.containsKey("default_plan") && !cleandata) {
+            this.planScope = this.options.get("default_plan");
+        }
+
         // Setup the user specified debug level for logging information
         // from various locations in the program
         //
@@ -569,6 +690,17 @@ public class JobShop {
             }
         }
 
+        // Setup the size of the (per calendar) cache of lead time calculations
+        //
+        if (this.options.containsKey("calendar_cache_size")) {
+            try {
+                CalendarCache.setDefaultCapacity(Integer.parseInt(this.options.get("calendar_cache_size")));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option calendar_cache_size: " + this.options.get("calendar_cache_size") + "; Defaulting to " + CalendarCache.DEFAULT_CAPACITY + "...");
+            }
+        }
+
         JobShop.LOG("\nA Minimal JobShop Planner", true);
         JobShop.LOGDATA(testplanoutFile, "\nA Minimal JobShop Planner", false);
 
@@ -581,61 +713,255 @@ public class JobShop {
      */
     private void loadData() {
 
-        readPlans();
-        readPlanParams();
-        readSKUs();
-        readCalendars();
-        readCalendarShifts();
-        readWorkcenters();
-        readTasks();
-        readDemands();
-        readTaskPrecedences();
-        readTaskWorkcenterAssociations();
-        readReleasedWorkOrders();
+        // Tables are loaded concurrently once the tables they refer to are
+        // loaded
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (this.options.containsKey("load_threads")) {
+            try {
+                threads = Integer.parseInt(this.options.get("load_threads"));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option load_threads: " + this.options.get("load_threads") + "; Defaulting to " + threads + "...");
+            }
+        }
+        if (this.options.get("input_mode").equals("DATABASE")) {
+            this.dbReader = createDbReader(threads);
+        }
+
+        this.snapshot = getModelSnapshot();
+        if (this.snapshot != null && this.snapshot.isCurrent() &&
+            !Boolean.parseBoolean(this.options.get("snapshot_refresh"))) {
+
+            // The static model is restored from the snapshot; only the
+            // volatile tables are loaded from the input
+            DataLoader loader = new DataLoader(threads, this::logReading);
+            loader.add("plan", this::readPlans);
+            loader.add("planparam", this::readPlanParams, "plan");
+            loader.add("model snapshot", this::restoreSnapshot, "plan");
+            loader.add("demand", this::readDemands, "plan", "model snapshot");
+            loader.add("released workorder", this::readReleasedWorkOrders,
+                       "plan", "model snapshot", "demand");
+            loader.run();
+
+            JobShop.LOG("Load timings: " + loader);
+            closeDbReader();
+            return;
+        }
+
+        DataLoader loader = new DataLoader(threads, this::logReading);
+        loader.add("plan", this::readPlans);
+        loader.add("planparam", this::readPlanParams, "plan");
+        loader.add("sku", this::readSKUs);
+        loader.add("calendar", this::readCalendars);
+        loader.add("calendarshift", this::readCalendarShifts, "calendar");
+        loader.add("calendarpattern", this::hasPatternCalendars,
+                   this::readCalendarPatterns, "calendarshift");
+        loader.add("calendarexception", this::hasPatternCalendars,
+                   () -> {
+                       readCalendarExceptions();
+                       initCalendarPatterns();
+                   }, "calendarpattern", "plan");
+        loader.add("workcenter", this::readWorkcenters, "calendar");
+        loader.add("task", this::readTasks, "sku");
+        loader.add("demand", this::readDemands, "plan", "sku");
+        loader.add("task precedence", this::readTaskPrecedences, "task");
+        loader.add("task workcenter association", this::readTaskWorkcenterAssociations,
+                   "task", "workcenter");
+        loader.add("released workorder", this::readReleasedWorkOrders,
+                   "plan", "task", "workcenter", "demand");
+        loader.run();
+
+        JobShop.LOG("Load timings: " + loader);
+        closeDbReader();
     }
 
     /**
-     * Utility function to create the Plan objects
+     * Utility function that creates the reader of the DATABASE input mode.
+     * Up to db_connections (default 4, but no more than the load threads)
+     * tables are read concurrently, fetching db_fetch_size (default 1000)
+     * rows at a time
+     * @param threads int value representing the number of load threads
+     * @return DbReader for the input database
      */
-    private void readPlans() {
+    private DbReader createDbReader(int threads) {
+
+        int connections = DbReader.DEFAULT_CONNECTIONS;
+        if (this.options.containsKey("db_connections")) {
+            try {
+                connections = Integer.parseInt(this.options.get("db_connections"));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option db_connections: " + this.options.get("db_connections") + "; Defaulting to " + connections + "...");
+            }
+        }
+
+        int fetchSize = DbReader.DEFAULT_FETCH_SIZE;
+        if (this.options.containsKey("db_fetch_size")) {
+            try {
+                fetchSize = Integer.parseInt(this.options.get("db_fetch_size"));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option db_fetch_size: " + this.options.get("db_fetch_size") + "; Defaulting to " + fetchSize + "...");
+            }
+        }
+
+        return new DbReader(this.options.get("db_connection_string"),
+                            this.options.get("db_username"),
+                            this.options.get("db_password"),
+                            Math.min(connections, Math.max(1, threads)), fetchSize);
+    }
+
+    /**
+     * Utility function that logs the statistics of the DATABASE reader
+     * and closes its connections once all the input is loaded
+     */
+    private void closeDbReader() {
+        if (this.dbReader != null) {
+            JobShop.LOG("Database read statistics: " + this.dbReader);
+            this.dbReader.close();
+            this.dbReader = null;
+        }
+    }
+
+    /**
+     * Utility function that returns the binary snapshot of the static model
+     * (option snapshot_file).  The snapshot is only used for FLATFILE input
+     * and is validated against the master data files of the dataset.  It is
+     * not used when cleaning data since every input record must be checked
+     * @return ModelSnapshot of the dataset; null if no snapshot may be used
+     */
+    private ModelSnapshot getModelSnapshot() {
+
+        if (!this.options.containsKey("snapshot_file") || cleandata) {
+            return null;
+        }
+        if (!this.options.get("input_mode").equals("FLATFILE")) {
+            JobShop.LOG("Option snapshot_file is only supported for FLATFILE input; Ignoring...");
+            return null;
+        }
+
+        List<Path> sources = new ArrayList<Path>();
+        for (String table : new String[] { "sku", "calendar", "calendarshift",
+                                           "calendarpattern", "calendarexception",
+                                           "workcenter", "task", "taskprecedence",
+                                           "taskworkcenterassn" }) {
+            sources.add(Paths.get(this.datadir + "/" + table + ".csv"));
+        }
+        return new ModelSnapshot(Paths.get(this.options.get("snapshot_file")), sources);
+    }
+
+    /**
+     * Utility function that restores the static model from the snapshot.
+     * If the snapshot cannot be read, the master data is loaded from the
+     * input files instead
+     */
+    private void restoreSnapshot() {
+
+        try {
+            this.snapshot.restore(this.calendars, this.skus, this.workcenters,
+                                  this.tasks, this.components);
+            this.snapshotRestored = true;
+        }
+        catch (IOException e) {
+            JobShop.LOG("Unable to restore model snapshot: " + e.getMessage() +
+                        "; Reading the model data...");
+            this.calendars.clear();
+            this.skus.clear();
+            this.workcenters.clear();
+            this.tasks.clear();
+            this.components.clear();
+
+            DataLoader loader = new DataLoader(1, this::logReading);
+            loader.add("sku", this::readSKUs);
+            loader.add("calendar", this::readCalendars);
+            loader.add("calendarshift", this::readCalendarShifts, "calendar");
+            loader.add("calendarpattern", this::hasPatternCalendars,
+                       this::readCalendarPatterns, "calendarshift");
+            loader.add("calendarexception", this::hasPatternCalendars,
+                       this::readCalendarExceptions, "calendarpattern");
+            loader.add("workcenter", this::readWorkcenters, "calendar");
+            loader.add("task", this::readTasks, "sku");
+            loader.add("task precedence", this::readTaskPrecedences, "task");
+            loader.add("task workcenter association", this::readTaskWorkcenterAssociations,
+                       "task", "workcenter");
+            loader.run();
+        }
+        initCalendarPatterns();
+    }
+
+    /**
+     * Utility function that writes the static model to the snapshot, if
+     * one is configured, after the static analysis
+     */
+    private void saveSnapshot() {
 
+        if (this.snapshot == null) {
+            return;
+        }
+        try {
+            this.snapshot.save(this.calendars, this.skus, this.workcenters, this.tasks);
+            JobShop.LOG("Wrote model snapshot " + this.snapshot.getFile());
+        }
+        catch (IOException e) {
+            JobShop.LOG("Unable to write model snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Utility function that checks if the data of a plan must be loaded
+     * (see option default_plan)
+     * @param planid String representing the ID of the plan
+     * @return boolean value true if the data of the plan must be loaded
+     */
+    private boolean inPlanScope(String planid) {
+        return this.planScope == null || this.planScope.equals(planid);
+    }
+
+    /**
+     * Utility function that logs the start of the loading of a table
+     * @param table String representing the name of the table
+     */
+    private void logReading(String table) {
         if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading plan data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading plan data...");
-		}
+            JobShop.LOG("Reading " + table + " data...", true);
+            JobShop.LOGDATA(testplanoutFile, "Reading " + table + " data...");
+        }
+    }
+
+    /**
+     * Utility function to create the Plan objects
+     */
+    private void readPlans() {
 
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/plan.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/plan.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/plan.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
 
-                    if (plans.containsKey(parts[0])) {
-                        JobShop.LOG("Plan already exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if (plans.containsKey(csv.get(0))) {
+                        JobShop.LOG("Plan already exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
-                    Plan plan = new Plan(parts[0], LocalDateTime.parse(parts[1], dfs), LocalDateTime.parse(parts[2], dfs));
-                    plans.put(parts[0], plan);
+                    Plan plan = new Plan(csv.get(0), csv.getDateTime(1), csv.getDateTime(2));
+                    plans.put(csv.get(0), plan);
                 }
 
             } catch (IOException e) {
@@ -643,14 +969,14 @@ public class JobShop {
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from plan");
+            try (DbReader.Cursor rs = this.dbReader.select("plan",
+                                                           "planid, planstart, planend")) {
                 while (rs.next()) {
-                    String planid = rs.getString("planid");
-                    Timestamp pstart = rs.getTimestamp("planstart");
-                    Timestamp pend = rs.getTimestamp("planend");
+                    String planid = rs.getString(1);
+                    LocalDateTime pstart = rs.getDateTime(2);
+                    LocalDateTime pend = rs.getDateTime(3);
 
-                    Plan plan = new Plan(planid, pstart.toLocalDateTime(), pend.toLocalDateTime());
+                    Plan plan = new Plan(planid, pstart, pend);
                     plans.put(planid, plan);
                 }
             }
@@ -667,45 +993,39 @@ public class JobShop {
      */
     private void readPlanParams() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading planparam data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading planparam data...");
-		}
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/planparameter.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/planparameter.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/planparameter.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (cleandata) LOGDATA(goodFile, p);
-                    if (p.charAt(0) == '#') {
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (cleandata) LOGDATA(goodFile, csv.line());
+                    if (csv.isComment() || !inPlanScope(csv.get(0))) {
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
-                    Plan plan = plans.get(parts[0]);
-                    plan.setParam(parts[1], parts[2]);
+                    Plan plan = plans.get(csv.get(0));
+                    plan.setParam(csv.get(1), csv.get(2));
                 }
             } catch (IOException e) {
                 JobShop.LOG(e.getMessage());
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from planparameter");
+            try (DbReader.Cursor rs = this.dbReader.select("planparameter",
+                                                           "planid, paramname, paramvalue",
+                                                           this.planScope)) {
                 while (rs.next()) {
-                    String planid = rs.getString("planid");
-                    String parname = rs.getString("paramname");
-                    String parval = rs.getString("paramvalue");
+                    String planid = rs.getString(1);
+                    String parname = rs.getString(2);
+                    String parval = rs.getString(3);
 
                     Plan plan = plans.get(planid);
                     plan.setParam(parname, parval);
@@ -724,43 +1044,35 @@ public class JobShop {
      */
     private void readSKUs() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) { 
-            JobShop.LOG("Reading sku data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading sku data...");
-		}
-
         String mode = this.options.get("input_mode");
-        List<String> lines = new ArrayList<String>();
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/sku.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/sku.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/sku.bad");
             }
 
-            try {
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
 
-                    if (skus.containsKey(parts[0])) {
-                        JobShop.LOG("SKU already exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if (skus.containsKey(csv.get(0))) {
+                        JobShop.LOG("SKU already exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
-                    SKU s = new SKU(parts[0],parts[1]);
-                    skus.put(parts[0], s);
+                    SKU s = new SKU(csv.get(0),csv.get(1));
+                    skus.put(csv.get(0), s);
                     components.add(s);
                 }
             } catch (IOException e) {
@@ -768,11 +1080,11 @@ public class JobShop {
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from sku");
+            try (DbReader.Cursor rs = this.dbReader.select("sku",
+                                                           "skuid, description")) {
                 while (rs.next()) {
-                    String skuid = rs.getString("skuid");
-                    String desc = rs.getString("description");
+                    String skuid = rs.getString(1);
+                    String desc = rs.getString(2);
 
                     SKU s = new SKU(skuid, desc);
                     skus.put(skuid, s);
@@ -791,54 +1103,46 @@ public class JobShop {
      */
     private void readCalendars() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading calendar data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading calendar data...");
-		}
-
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/calendar.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/calendar.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/calendar.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
 
-                    if (calendars.containsKey(parts[0])) {
-                        JobShop.LOG("Calendar already exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if (calendars.containsKey(csv.get(0))) {
+                        JobShop.LOG("Calendar already exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
-                    Calendar cal = new Calendar(parts[0], parts[1]);
-                    calendars.put(parts[0], cal);
+                    Calendar cal = new Calendar(csv.get(0), csv.get(1));
+                    calendars.put(csv.get(0), cal);
                 }
             } catch (IOException e) {
                 JobShop.LOG(e.getMessage());
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from calendar");
+            try (DbReader.Cursor rs = this.dbReader.select("calendar",
+                                                           "calendarid, calendartype")) {
                 while (rs.next()) {
-                    String calid = rs.getString("calendarid");
-                    String caltype = rs.getString("calendartype");
+                    String calid = rs.getString(1);
+                    String caltype = rs.getString(2);
 
                     Calendar cal = new Calendar(calid, caltype);
                     calendars.put(calid, cal);
@@ -856,68 +1160,63 @@ public class JobShop {
      */
     private void readCalendarShifts() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading calendarshift data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading calendarshift data...");
-		}
-
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/calendarshift.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/calendarshift.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/calendarshift.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
-                    Calendar cal = calendars.get(parts[0]);
+                    Calendar cal = calendars.get(csv.get(0));
 
                     if (cal == null) {
-                        JobShop.LOG("Unable to find calendar: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Unable to find calendar: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
-                    if (cleandata) LOGDATA(goodFile, p);
-
-                    CalendarShift cshift = new CalendarShift(cal,
-                                                             Integer.parseInt(parts[1]),
-                                                             LocalDateTime.parse(parts[2], dfs),
-                                                             LocalDateTime.parse(parts[3], dfs),
-                                                             Integer.parseInt(parts[4]),
-                                                             Double.parseDouble(parts[5]));
-                    cal.addShift(cshift);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
+
+                    LocalDateTime sstart = csv.getDateTime(2);
+                    LocalDateTime send = csv.getDateTime(3);
+                    warnIfSeconds("calendarshift", csv.line(), sstart, send);
+
+                    cal.addShift(csv.getInt(1),
+                                 sstart,
+                                 send,
+                                 csv.getInt(4),
+                                 csv.getDouble(5));
                 }
             } catch (IOException e) {
                 JobShop.LOG(e.getMessage());
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from calendarshift");
+            try (DbReader.Cursor rs = this.dbReader.select("calendarshift",
+                                                           "calendarid, shiftid, shiftstart, shiftend," +
+                                                           " shiftnumber, value")) {
                 while (rs.next()) {
-                    String calid = rs.getString("calendarid");
-                    int shiftid = rs.getInt("shiftid");
-                    Timestamp sstart = rs.getTimestamp("shiftstart");
-                    Timestamp send = rs.getTimestamp("shiftend");
-                    int snum = rs.getInt("shiftnumber");
-                    double val = rs.getDouble("value");
+                    String calid = rs.getString(1);
+                    int shiftid = rs.getInt(2);
+                    LocalDateTime sstart = rs.getDateTime(3);
+                    LocalDateTime send = rs.getDateTime(4);
+                    int snum = rs.getInt(5);
+                    double val = rs.getDouble(6);
 
                     Calendar cal = calendars.get(calid);
 
-                    CalendarShift cshift = new CalendarShift(cal, shiftid, sstart.toLocalDateTime(),
-                                                             send.toLocalDateTime(), snum, val);
-                    cal.addShift(cshift);
+                    warnIfSeconds("calendarshift", calid + ", " + shiftid, sstart, send);
+                    cal.addShift(shiftid, sstart,
+                                 send, snum, val);
                 }
             }
             catch (SQLException e) {
@@ -928,73 +1227,92 @@ public class JobShop {
     }
 
     /**
-     * Utility function to create the Workcenter objects
+     * Utility function to read the weekly shift templates of the
+     * PATTERN_CALENDAR calendars.  The data is only read if the model has
+     * at least one such calendar
      */
-    private void readWorkcenters() {
+    private void readCalendarPatterns() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading workcenter data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading workcenter data...");
+        if (!hasPatternCalendars()) {
+            return;
         }
 
+
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
-            Path path = Paths.get(this.datadir + "/workcenter.csv");
+            Path path = Paths.get(this.datadir + "/calendarpattern.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
-                goodFile = Paths.get(JobShop.logDir.toString() + "/workcenter.good");
-                badFile = Paths.get(JobShop.logDir.toString() + "/workcenter.bad");
+                goodFile = Paths.get(JobShop.logDir.toString() + "/calendarpattern.good");
+                badFile = Paths.get(JobShop.logDir.toString() + "/calendarpattern.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
-                    Calendar cal = calendars.get(parts[1]);
+                    Calendar cal = calendars.get(csv.get(0));
 
-                    if (cal == null) {
-                        JobShop.LOG("Unable to find calendar: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if (cal == null || !cal.getType().equals("PATTERN_CALENDAR")) {
+                        JobShop.LOG("Unable to find pattern calendar: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (workcenters.containsKey(parts[0])) {
-                        JobShop.LOG("Workcenter already exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    try {
+                        LocalTime sstart = LocalTime.parse(csv.get(2));
+                        LocalTime send = LocalTime.parse(csv.get(3));
+                        warnIfSeconds("calendarpattern", csv.line(), sstart, send);
+                        addTemplateShift(cal, csv.getInt(1),
+                                         sstart,
+                                         send,
+                                         csv.getInt(4),
+                                         csv.getDouble(5));
+                    }
+                    catch (DateTimeException | NumberFormatException e) {
+                        JobShop.LOG("Invalid calendar pattern: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
-
-                    if (cleandata) LOGDATA(goodFile, p);
-
-                    Workcenter ws = new Workcenter(parts[0], cal, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
-                    workcenters.put(parts[0], ws);
-                    components.add(ws);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
                 }
             } catch (IOException e) {
                 JobShop.LOG(e.getMessage());
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from workcenter");
+            try (DbReader.Cursor rs = this.dbReader.select("calendarpattern",
+                                                           "calendarid, dayofweek, starttime, endtime," +
+                                                           " shiftnumber, value")) {
                 while (rs.next()) {
-                    String wrkid = rs.getString("workcenterid");
-                    String calid = rs.getString("efficiency_calendar");
-                    int max_setups_per_shift = rs.getInt("max_setups_per_shift");
-                    int criticality_idx = rs.getInt("criticality_index");
+                    String calid = rs.getString(1);
+                    int dow = rs.getInt(2);
+                    String sstart = rs.getString(3);
+                    String send = rs.getString(4);
+                    int snum = rs.getInt(5);
+                    double val = rs.getDouble(6);
 
                     Calendar cal = calendars.get(calid);
-                    Workcenter ws = new Workcenter(wrkid, cal, max_setups_per_shift, criticality_idx);
-                    workcenters.put(wrkid, ws);
-                    components.add(ws);
+                    if (cal == null || !cal.getType().equals("PATTERN_CALENDAR")) {
+                        JobShop.LOG("Unable to find pattern calendar: " + calid);
+                        continue;
+                    }
+
+                    try {
+                        LocalTime tstart = LocalTime.parse(sstart);
+                        LocalTime tend = LocalTime.parse(send);
+                        warnIfSeconds("calendarpattern", calid + ", " + dow + ", " + sstart, tstart, tend);
+                        addTemplateShift(cal, dow, tstart, tend, snum, val);
+                    }
+                    catch (DateTimeException e) {
+                        JobShop.LOG("Invalid calendar pattern for: " + calid +
+                                    "; " + e.getMessage());
+                    }
                 }
             }
             catch (SQLException e) {
@@ -1005,92 +1323,115 @@ public class JobShop {
     }
 
     /**
-     * Utility function to create the Task objects
+     * Utility function to add a shift to the weekly template of a calendar
+     * @param cal Calendar whose template must be updated
+     * @param dow int value representing the day of the week (1 is Monday)
+     * @param st LocalTime representing the start time of the shift
+     * @param en LocalTime representing the end time of the shift
+     * @param snum int value representing the shift number
+     * @param val double value representing the efficiency of the shift
      */
-    private void readTasks() {
+    private void addTemplateShift(Calendar cal, int dow, LocalTime st,
+                                  LocalTime en, int snum, double val) {
+        if (cal.getPattern() == null) {
+            cal.setPattern(new CalendarPattern());
+        }
+        cal.getPattern().addTemplateShift(DayOfWeek.of(dow), st, en, snum, val);
+    }
+
+    /**
+     * Utility function that logs a warning if any of the date/times (or
+     * times) of a calendar record have seconds.  The calendars are minute
+     * granular, and the seconds are truncated when the record is loaded
+     * @param table String representing the table of the record
+     * @param record String identifying the record in the log
+     * @param dts date/times (or times) of the record
+     */
+    private static void warnIfSeconds(String table, String record, TemporalAccessor... dts) {
+        for (TemporalAccessor dt : dts) {
+            if (dt.get(ChronoField.SECOND_OF_MINUTE) != 0 ||
+                dt.get(ChronoField.NANO_OF_SECOND) != 0) {
+                JobShop.LOG("Warning! Seconds are truncated to the minute in " + table +
+                            ": " + record);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Utility function to read the exceptions (holidays and efficiency
+     * overrides) of the PATTERN_CALENDAR calendars.  The data is only read
+     * if the model has at least one such calendar
+     */
+    private void readCalendarExceptions() {
+
+        if (!hasPatternCalendars()) {
+            return;
+        }
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading task data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading task data...");
-		}
 
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
-            Path path = Paths.get(this.datadir + "/task.csv");
+            Path path = Paths.get(this.datadir + "/calendarexception.csv");
 
-            if (cleandata) {
-                goodFile = Paths.get(JobShop.logDir.toString() + "/task.good");
-                badFile = Paths.get(JobShop.logDir.toString() + "/task.bad");
+            if (!Files.exists(path)) {
+                return;
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
+            Path goodFile = null;
+            Path badFile = null;
+            if (cleandata) {
+                goodFile = Paths.get(JobShop.logDir.toString() + "/calendarexception.good");
+                badFile = Paths.get(JobShop.logDir.toString() + "/calendarexception.bad");
+            }
 
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
-                        continue;
-                    }
-                    String[] parts = getParts(p, ",");
-                    SKU sku = skus.get(parts[1]);
-                    if (sku == null) {
-                        JobShop.LOG("Unable to find SKU: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
+                    Calendar cal = calendars.get(csv.get(0));
 
-                    String taskNum = parts[1] + "-" + parts[0];
-                    if (tasks.containsKey(taskNum)) {
-                        JobShop.LOG("Task already exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if (cal == null || cal.getPattern() == null) {
+                        JobShop.LOG("Unable to find pattern calendar: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
-                    if (cleandata) LOGDATA(goodFile, p);
-
-                    Task task = new Task(parts[0], sku,
-                                         Long.parseLong(parts[2]),
-                                         Long.parseLong(parts[3]),
-                                         Long.parseLong(parts[4]),
-                                         Long.parseLong(parts[5]));
-                    tasks.put(taskNum, task);
-                    components.add(task);
+                    LocalDateTime estart = csv.getDateTime(1);
+                    LocalDateTime eend = csv.getDateTime(2);
+                    warnIfSeconds("calendarexception", csv.line(), estart, eend);
 
-                    if (parts[6].equals("Y") || parts[6].equals("y") || parts[6].equals("1") ||
-                        parts[6].equals("T") || parts[6].equals("t")) {
-                        sku.setDeliveryTask(task);
-                    }
+                    cal.getPattern().addException(estart,
+                                                  eend,
+                                                  csv.getDouble(3));
                 }
             } catch (IOException e) {
                 JobShop.LOG(e.getMessage());
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from task");
+            try (DbReader.Cursor rs = this.dbReader.select("calendarexception",
+                                                           "calendarid, exceptionstart, exceptionend," +
+                                                           " value")) {
                 while (rs.next()) {
-                    String taskid = rs.getString("taskid");
-                    String skuid = rs.getString("skuid");
-                    long setup_time = rs.getLong("setup_time");
-                    long per_unit_time = rs.getLong("per_unit_time");
-                    long min_ls = rs.getLong("min_lot_size");
-                    long max_ls = rs.getLong("max_lot_size");
-                    String isdel = rs.getString("is_delivery_task");
-
-                    SKU sku = skus.get(skuid);
-                    String taskNum = skuid + "-" + taskid;
-                    Task task = new Task(taskid, sku, setup_time, per_unit_time, min_ls, max_ls);
-                    tasks.put(taskNum, task);
-                    components.add(task);
+                    String calid = rs.getString(1);
+                    LocalDateTime estart = rs.getDateTime(2);
+                    LocalDateTime eend = rs.getDateTime(3);
+                    double val = rs.getDouble(4);
 
-                    if (isdel.equals("Y") || isdel.equals("y") || isdel.equals("1") ||
-                        isdel.equals("T") || isdel.equals("t")) {
-                        sku.setDeliveryTask(task);
+                    Calendar cal = calendars.get(calid);
+                    if (cal == null || cal.getPattern() == null) {
+                        JobShop.LOG("Unable to find pattern calendar: " + calid);
+                        continue;
                     }
 
+                    warnIfSeconds("calendarexception", calid + ", " + estart, estart, eend);
+                    cal.getPattern().addException(estart,
+                                                  eend, val);
                 }
             }
             catch (SQLException e) {
@@ -1101,65 +1442,274 @@ public class JobShop {
     }
 
     /**
-     * Utility function to create the Demand objects
+     * Utility function to set the period over which the shifts of the
+     * PATTERN_CALENDAR calendars may be generated.  This covers all the
+     * plans in the model, plus a number of weeks (option
+     * pattern_calendar_extension_weeks; default 52) for lead times that
+     * extend beyond the end of the plans
      */
-    private void readDemands() {
-
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading demand data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading demand data...");
-		}
+    private void initCalendarPatterns() {
 
-        String mode = this.options.get("input_mode");
+        if (!hasPatternCalendars() || plans.isEmpty()) {
+            return;
+        }
 
-        if (mode.equals("FLATFILE")) {
-            Path path = Paths.get(this.datadir + "/demand.csv");
+        int extraWeeks = CalendarPattern.DEFAULT_EXTENSION_WEEKS;
+        if (this.options.containsKey("pattern_calendar_extension_weeks")) {
+            extraWeeks = Integer.parseInt(this.options.get("pattern_calendar_extension_weeks"));
+        }
 
-            if (cleandata) {
-                goodFile = Paths.get(JobShop.logDir.toString() + "/demand.good");
-                badFile = Paths.get(JobShop.logDir.toString() + "/demand.bad");
+        LocalDateTime hstart = null;
+        LocalDateTime hend = null;
+        for (Plan pln : plans.values()) {
+            if (hstart == null || pln.getStart().isBefore(hstart)) {
+                hstart = pln.getStart();
             }
+            if (hend == null || pln.getEnd().isAfter(hend)) {
+                hend = pln.getEnd();
+            }
+        }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
+        for (Calendar cal : calendars.values()) {
+            if (!cal.getType().equals("PATTERN_CALENDAR")) {
+                continue;
+            }
+            if (cal.getPattern() == null || !cal.getPattern().hasShifts()) {
+                JobShop.LOG("Pattern calendar has no template shifts: " + cal.getName());
+                cal.setPattern(new CalendarPattern());
+            }
+            cal.getPattern().setHorizon(hstart, hend, extraWeeks);
+        }
+    }
 
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
-                        continue;
-                    }
-                    String[] parts = getParts(p, ",");
+    /**
+     * Utility function that checks if the model has any PATTERN_CALENDAR
+     * @return boolean value that is true if there is a pattern calendar
+     */
+    private boolean hasPatternCalendars() {
+        for (Calendar cal : calendars.values()) {
+            if (cal.getType().equals("PATTERN_CALENDAR")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Utility function to create the Workcenter objects
+     */
+    private void readWorkcenters() {
+
+        String mode = this.options.get("input_mode");
+
+        if (mode.equals("FLATFILE")) {
+            Path path = Paths.get(this.datadir + "/workcenter.csv");
+
+            Path goodFile = null;
+            Path badFile = null;
+            if (cleandata) {
+                goodFile = Paths.get(JobShop.logDir.toString() + "/workcenter.good");
+                badFile = Paths.get(JobShop.logDir.toString() + "/workcenter.bad");
+            }
+
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
+                        continue;
+                    }
+                    Calendar cal = calendars.get(csv.get(1));
+
+                    if (cal == null) {
+                        JobShop.LOG("Unable to find calendar: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
+                        continue;
+                    }
+
+                    if (workcenters.containsKey(csv.get(0))) {
+                        JobShop.LOG("Workcenter already exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
+                        continue;
+                    }
+
+                    if (cleandata) LOGDATA(goodFile, csv.line());
+
+                    Workcenter ws = new Workcenter(csv.get(0), cal, csv.getInt(2), csv.getInt(3));
+                    workcenters.put(csv.get(0), ws);
+                    components.add(ws);
+                }
+            } catch (IOException e) {
+                JobShop.LOG(e.getMessage());
+            }
+        }
+        else if (mode.equals("DATABASE")) {
+            try (DbReader.Cursor rs = this.dbReader.select("workcenter",
+                                                           "workcenterid, efficiency_calendar," +
+                                                           " max_setups_per_shift, criticality_index")) {
+                while (rs.next()) {
+                    String wrkid = rs.getString(1);
+                    String calid = rs.getString(2);
+                    int max_setups_per_shift = rs.getInt(3);
+                    int criticality_idx = rs.getInt(4);
+
+                    Calendar cal = calendars.get(calid);
+                    Workcenter ws = new Workcenter(wrkid, cal, max_setups_per_shift, criticality_idx);
+                    workcenters.put(wrkid, ws);
+                    components.add(ws);
+                }
+            }
+            catch (SQLException e) {
+                JobShop.LOG(e.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Utility function to create the Task objects
+     */
+    private void readTasks() {
+
+        String mode = this.options.get("input_mode");
+
+        if (mode.equals("FLATFILE")) {
+            Path path = Paths.get(this.datadir + "/task.csv");
+
+            Path goodFile = null;
+            Path badFile = null;
+            if (cleandata) {
+                goodFile = Paths.get(JobShop.logDir.toString() + "/task.good");
+                badFile = Paths.get(JobShop.logDir.toString() + "/task.bad");
+            }
+
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
+                        continue;
+                    }
+                    SKU sku = skus.get(csv.get(1));
+                    if (sku == null) {
+                        JobShop.LOG("Unable to find SKU: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
+                        continue;
+                    }
+
+                    String taskNum = csv.get(1) + "-" + csv.get(0);
+                    if (tasks.containsKey(taskNum)) {
+                        JobShop.LOG("Task already exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
+                        continue;
+                    }
+
+                    if (cleandata) LOGDATA(goodFile, csv.line());
+
+                    Task task = new Task(csv.get(0), sku,
+                                         csv.getLong(2),
+                                         csv.getLong(3),
+                                         csv.getLong(4),
+                                         csv.getLong(5));
+                    tasks.put(taskNum, task);
+                    components.add(task);
+
+                    if (csv.get(6).equals("Y") || csv.get(6).equals("y") || csv.get(6).equals("1") ||
+                        csv.get(6).equals("T") || csv.get(6).equals("t")) {
+                        sku.setDeliveryTask(task);
+                    }
+                }
+            } catch (IOException e) {
+                JobShop.LOG(e.getMessage());
+            }
+        }
+        else if (mode.equals("DATABASE")) {
+            try (DbReader.Cursor rs = this.dbReader.select("task",
+                                                           "taskid, skuid, setup_time, per_unit_time," +
+                                                           " min_lot_size, max_lot_size, is_delivery_task")) {
+                while (rs.next()) {
+                    String taskid = rs.getString(1);
+                    String skuid = rs.getString(2);
+                    long setup_time = rs.getLong(3);
+                    long per_unit_time = rs.getLong(4);
+                    long min_ls = rs.getLong(5);
+                    long max_ls = rs.getLong(6);
+                    String isdel = rs.getString(7);
+
+                    SKU sku = skus.get(skuid);
+                    String taskNum = skuid + "-" + taskid;
+                    Task task = new Task(taskid, sku, setup_time, per_unit_time, min_ls, max_ls);
+                    tasks.put(taskNum, task);
+                    components.add(task);
+
+                    if (isdel.equals("Y") || isdel.equals("y") || isdel.equals("1") ||
+                        isdel.equals("T") || isdel.equals("t")) {
+                        sku.setDeliveryTask(task);
+                    }
+
+                }
+            }
+            catch (SQLException e) {
+                JobShop.LOG(e.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Utility function to create the Demand objects
+     */
+    private void readDemands() {
+
+        String mode = this.options.get("input_mode");
+
+        if (mode.equals("FLATFILE")) {
+            Path path = Paths.get(this.datadir + "/demand.csv");
+
+            Path goodFile = null;
+            Path badFile = null;
+            if (cleandata) {
+                goodFile = Paths.get(JobShop.logDir.toString() + "/demand.good");
+                badFile = Paths.get(JobShop.logDir.toString() + "/demand.bad");
+            }
+
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
+                        continue;
+                    }
+
+                    if (!inPlanScope(csv.get(0))) {
+                        continue;
+                    }
 
-                    String dmdKey = parts[0] + "-" + parts[1];
+                    String dmdKey = csv.get(0) + "-" + csv.get(1);
 
-                    Plan plan = plans.get(parts[0]);
+                    Plan plan = plans.get(csv.get(0));
                     if (plan == null) {
-                        JobShop.LOG("Unable to find plan: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Unable to find plan: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    SKU sku = skus.get(parts[3]);
+                    SKU sku = skus.get(csv.get(3));
                     if (sku == null) {
-                        JobShop.LOG("Unable to find SKU: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Unable to find SKU: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
                     if (demands.containsKey(dmdKey)) {
-                        JobShop.LOG("Demand already exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Demand already exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
-                    Demand dmd = new Demand(parts[1], parts[2], sku,
-                                            LocalDateTime.parse(parts[4], dfs),
-                                            Long.parseLong(parts[5]),
-                                            Long.parseLong(parts[6]), plan);
+                    Demand dmd = new Demand(csv.get(1), csv.get(2), sku,
+                                            csv.getDateTime(4),
+                                            csv.getLong(5),
+                                            csv.getLong(6), plan);
                     demands.put(dmdKey, dmd);
                     components.add(dmd);
                 }
@@ -1168,22 +1718,24 @@ public class JobShop {
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from demand");
+            try (DbReader.Cursor rs = this.dbReader.select("demand",
+                                                           "planid, demandid, customerid, skuid," +
+                                                           " duedate, duequantity, priority",
+                                                           this.planScope)) {
                 while (rs.next()) {
-                    String planid = rs.getString("planid");
-                    String demid = rs.getString("demandid");
-                    String custid = rs.getString("customerid");
-                    String skuid = rs.getString("skuid");
-                    Timestamp due = rs.getTimestamp("duedate");
-                    long dueqty = rs.getLong("duequantity");
-                    long pri = rs.getLong("priority");
+                    String planid = rs.getString(1);
+                    String demid = rs.getString(2);
+                    String custid = rs.getString(3);
+                    String skuid = rs.getString(4);
+                    LocalDateTime due = rs.getDateTime(5);
+                    long dueqty = rs.getLong(6);
+                    long pri = rs.getLong(7);
 
                     Plan plan = plans.get(planid);
                     SKU sku = skus.get(skuid);
                     String dmdKey = planid + "-" + demid;
 
-                    Demand dmd = new Demand(demid, custid, sku, due.toLocalDateTime(),
+                    Demand dmd = new Demand(demid, custid, sku, due,
                                             dueqty, pri, plan);
                     demands.put(dmdKey, dmd);
                     components.add(dmd);
@@ -1201,58 +1753,50 @@ public class JobShop {
      */
     private void readTaskPrecedences() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading task precedence data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading task precedence data...");
-		}
-
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/taskprecedence.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/taskprecedence.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/taskprecedence.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
-                    Task succ = tasks.get(parts[1] + "-" + parts[0]);
-                    Task pred = tasks.get(parts[1] + "-" + parts[2]);
+                    Task succ = tasks.get(csv.get(1) + "-" + csv.get(0));
+                    Task pred = tasks.get(csv.get(1) + "-" + csv.get(2));
 
                     if (succ == null) {
-                        JobShop.LOG("Successor task does not exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Successor task does not exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
                     if (pred == null) {
-                        JobShop.LOG("Predecessor task does not exists: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Predecessor task does not exists: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
                     if(succ.getPredecessor() != null) {
-                        JobShop.LOG("Successor task already has a predecessor: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Successor task already has a predecessor: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
                     if(pred.getSuccessor() != null) {
-                        JobShop.LOG("Predecessor task already has a successor: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Predecessor task already has a successor: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
                     succ.setPredecessor(pred);
                     pred.setSuccessor(succ);
@@ -1262,12 +1806,12 @@ public class JobShop {
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from taskprecedence");
+            try (DbReader.Cursor rs = this.dbReader.select("taskprecedence",
+                                                           "taskid, skuid, predecessor")) {
                 while (rs.next()) {
-                    String taskid = rs.getString("taskid");
-                    String skuid = rs.getString("skuid");
-                    String predecessor = rs.getString("predecessor");
+                    String taskid = rs.getString(1);
+                    String skuid = rs.getString(2);
+                    String predecessor = rs.getString(3);
 
                     Task succ = tasks.get(skuid + "-" + taskid);
                     Task pred = tasks.get(skuid + "-" + predecessor);
@@ -1288,49 +1832,41 @@ public class JobShop {
      */
     private void readTaskWorkcenterAssociations() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading task workcenter association data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading task workcenter association data...");
-		}
-
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/taskworkcenterassn.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/taskworkcenterassn.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/taskworkcenterassn.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
-
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
-                    Task t = tasks.get(parts[1] + "-" + parts[0]);
-                    Workcenter w = workcenters.get(parts[2]);
-                    Integer priority = new Integer(parts[3]);
+                    Task t = tasks.get(csv.get(1) + "-" + csv.get(0));
+                    Workcenter w = workcenters.get(csv.get(2));
+                    Integer priority = csv.getInt(3);
 
                     if(t == null) {
-                        JobShop.LOG("Task does not exist in task workcenter association: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Task does not exist in task workcenter association: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
                     if(w== null) {
-                        JobShop.LOG("Workcenter does not exist in task workcenter association: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Workcenter does not exist in task workcenter association: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
                     t.addWorkcenter(w, priority);
                     w.addTask(t);
@@ -1340,13 +1876,13 @@ public class JobShop {
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from taskworkcenterassn");
+            try (DbReader.Cursor rs = this.dbReader.select("taskworkcenterassn",
+                                                           "taskid, skuid, workcenterid, priority")) {
                 while (rs.next()) {
-                    String taskid = rs.getString("taskid");
-                    String skuid = rs.getString("skuid");
-                    String wrkid = rs.getString("workcenterid");
-                    Integer pri = Integer.valueOf(rs.getInt("priority"));
+                    String taskid = rs.getString(1);
+                    String skuid = rs.getString(2);
+                    String wrkid = rs.getString(3);
+                    Integer pri = Integer.valueOf(rs.getInt(4));
 
                     Task t = tasks.get(skuid + "-" + taskid);
                     Workcenter w = workcenters.get(wrkid);
@@ -1367,64 +1903,60 @@ public class JobShop {
      */
     private void readReleasedWorkOrders() {
 
-        if (DEBUG.ordinal() >= DEBUG_LEVELS.MINIMAL.ordinal()) {
-            JobShop.LOG("Reading released workorder data...", true);
-            JobShop.LOGDATA(testplanoutFile, "Reading released workorder data...");
-		}
-
         String mode = this.options.get("input_mode");
 
         if (mode.equals("FLATFILE")) {
             Path path = Paths.get(this.datadir + "/relworkorder.csv");
 
+            Path goodFile = null;
+            Path badFile = null;
             if (cleandata) {
                 goodFile = Paths.get(JobShop.logDir.toString() + "/relworkorder.good");
                 badFile = Paths.get(JobShop.logDir.toString() + "/relworkorder.bad");
             }
 
-            try {
-                List<String> lines = new ArrayList<String>();
-                lines = Files.readAllLines(path, charset);
+            try (CsvReader csv = new CsvReader(path, charset)) {
+                while (csv.next()) {
+                    if (csv.isComment()) {
+                        if (cleandata) LOGDATA(goodFile, csv.line());
+                        continue;
+                    }
 
-                for (int n = 0; n < lines.size(); n++) {
-                    String p = lines.get(n).trim();
-                    if (p.charAt(0) == '#') {
-                        if (cleandata) LOGDATA(goodFile, p);
+                    if (!inPlanScope(csv.get(0))) {
                         continue;
                     }
-                    String[] parts = getParts(p, ",");
 
-                    String dmdKey = parts[0] + "-" + parts[9];
+                    String dmdKey = csv.get(0) + "-" + csv.get(9);
 
-                    Plan pln = plans.get(parts[0]);
-                    String woid = parts[1];
-                    Integer lotid = Integer.valueOf(parts[2]);
-                    Task t = tasks.get(parts[3] + "-" + parts[4]);
-                    Workcenter w = workcenters.get(parts[8]);
+                    Plan pln = plans.get(csv.get(0));
+                    String woid = csv.get(1);
+                    Integer lotid = csv.getInt(2);
+                    Task t = tasks.get(csv.get(3) + "-" + csv.get(4));
+                    Workcenter w = workcenters.get(csv.get(8));
                     Demand d = demands.get(dmdKey);
-                    long quantity = Long.parseLong(parts[7]);
-                    LocalDateTime st = LocalDateTime.parse(parts[5], dfs);
-                    LocalDateTime en = LocalDateTime.parse(parts[6], dfs);
+                    long quantity = csv.getLong(7);
+                    LocalDateTime st = csv.getDateTime(5);
+                    LocalDateTime en = csv.getDateTime(6);
 
                     if(t == null) {
-                        JobShop.LOG("Task does not exist in released workorder: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                        JobShop.LOG("Task does not exist in released workorder: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if(parts[8].length() > 0 && w == null) {
-                        JobShop.LOG("Workcenter does not exist in released workorder: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if(!csv.isEmpty(8) && w == null) {
+                        JobShop.LOG("Workcenter does not exist in released workorder: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if(parts[9].length() > 0 && d == null) {
-                        JobShop.LOG("Demand does not exist in released workorder: " + p);
-                        if (cleandata) LOGDATA(badFile, p);
+                    if(!csv.isEmpty(9) && d == null) {
+                        JobShop.LOG("Demand does not exist in released workorder: " + csv.line());
+                        if (cleandata) LOGDATA(badFile, csv.line());
                         continue;
                     }
 
-                    if (cleandata) LOGDATA(goodFile, p);
+                    if (cleandata) LOGDATA(goodFile, csv.line());
 
                     ReleasedWorkOrder rwo = new ReleasedWorkOrder(woid,
                                                  lotid, t, pln, w,
@@ -1440,19 +1972,22 @@ public class JobShop {
             }
         }
         else if (mode.equals("DATABASE")) {
-            try {
-                ResultSet rs = statement.executeQuery("select * from relworkorder");
+            try (DbReader.Cursor rs = this.dbReader.select("relworkorder",
+                                                           "planid, workorderid, lotid, taskid, skuid," +
+                                                           " workcenterid, startdate, enddate, quantity," +
+                                                           " demandid",
+                                                           this.planScope)) {
                 while (rs.next()) {
-                    String planid = rs.getString("planid");
-                    String woid = rs.getString("workorderid");
-                    Integer lotid = Integer.valueOf(rs.getInt("lotid"));
-                    String taskid = rs.getString("taskid");
-                    String skuid = rs.getString("skuid");
-                    String wrkid = rs.getString("workcenterid");
-                    Timestamp st = rs.getTimestamp("startdate");
-                    Timestamp en = rs.getTimestamp("enddate");
-                    long qty = rs.getLong("quantity");
-                    String dmdid = rs.getString("demandid");
+                    String planid = rs.getString(1);
+                    String woid = rs.getString(2);
+                    Integer lotid = Integer.valueOf(rs.getInt(3));
+                    String taskid = rs.getString(4);
+                    String skuid = rs.getString(5);
+                    String wrkid = rs.getString(6);
+                    LocalDateTime st = rs.getDateTime(7);
+                    LocalDateTime en = rs.getDateTime(8);
+                    long qty = rs.getLong(9);
+                    String dmdid = rs.getString(10);
 
                     String dmdKey = planid + "-" + dmdid;
 
@@ -1463,8 +1998,8 @@ public class JobShop {
 
                     ReleasedWorkOrder rwo = new ReleasedWorkOrder(woid,
                                                  lotid, t, pln, w,
-                                                 st.toLocalDateTime(),
-                                                 en.toLocalDateTime(),
+                                                 st,
+                                                 en,
                                                  qty, d);
 
                     String wo_uniq_id = woid + "-" + lotid.toString();
@@ -1480,10 +2015,82 @@ public class JobShop {
 
     }
 
+    /**
+     * Generates the plans for the given plans, one plan at a time.  If
+     * option concurrent_plans is true, the plans are generated concurrently
+     * instead; each plan keeps its TaskPlans and workcenter loads in its
+     * own overlay and the shared model is only read while planning.  The
+     * calendars are fully generated first, so that the planning threads
+     * do not wait on each other to extend them
+     * @param planids List of String representing ids of the plans for
+     *                which we are generating the jobshop plans
+     */
+    public void generatePlans(List<String> planids) {
+
+        if (planids.size() < 2 ||
+            !Boolean.parseBoolean(this.options.get("concurrent_plans"))) {
+            for (String p : planids) {
+                generatePlan(p);
+            }
+            return;
+        }
+
+        for (Calendar cal : this.calendars.values()) {
+            cal.materialize();
+        }
+
+        long t0 = System.nanoTime();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(planids.size(),
+                                   r -> {
+                                       Thread t = new Thread(r, "jobshop-plan-" +
+                                                                counter.incrementAndGet());
+                                       t.setDaemon(true);
+                                       return t;
+                                   });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (String p : planids) {
+                futures.add(pool.submit(() -> generatePlan(p)));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating plans", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        JobShop.LOG("Generated " + planids.size() + " plans concurrently in " +
+                    (System.nanoTime() - t0) / 1000000 + " ms");
+    }
+
     /**
      * Generates a plan for the given plan; we plan one demand at a time
      * in the order of ascending priority (lower value of priority means
-     * a more important demand)
+     * a more important demand).  If option plan_threads is greater than 1,
+     * the demands of the independent partitions of the model are planned
+     * in parallel; the demands of each partition are still planned in the
+     * order of ascending priority, so the plan is the same.  If option
+     * speculative_window is greater than 1, the requests of the next
+     * demands are evaluated concurrently and committed in priority order
+     * (see SpeculativePlanner); again, the plan is the same.  Plans that
+     * are not RESOURCE_CONSTRAINED are planned with plan_threads threads
+     * by an UncapacitatedPlanner instead
      * @param planid String representing id of plan for which we
      *                      are generating the jobshop plan
      */
@@ -1501,10 +2108,137 @@ public class JobShop {
                                    .sorted(Comparator.comparing(Demand::getPriority))
                                    .collect(Collectors.toList());
 
-        // Plan the demands one by one
+        int threads = getPlanThreads();
+        int window = getSpeculativeWindow();
+        if (threads <= 1 && window <= 1) {
+            // Plan the demands one by one
+            for (Demand dem : demands) {
+                dem.plan();
+            }
+            return;
+        }
+
+        for (Calendar cal : this.calendars.values()) {
+            cal.materialize();
+        }
+
+        if (threads > 1 && !Boolean.parseBoolean(plan.getParam("RESOURCE_CONSTRAINED"))) {
+            generateUncapacitatedPlan(plan, demands, threads);
+            return;
+        }
+
+        SpeculativePlanner speculator = null;
+        if (window > 1) {
+            speculator = new SpeculativePlanner(window,
+                             Math.min(window, Runtime.getRuntime().availableProcessors()));
+        }
+        try {
+            if (threads > 1) {
+                generatePartitionedPlan(plan, demands, threads, speculator);
+            }
+            else {
+                speculator.plan(demands);
+            }
+        }
+        finally {
+            if (speculator != null) {
+                speculator.close();
+                JobShop.LOG("Speculative planning: " + plan.getID() + ": " + speculator);
+            }
+        }
+    }
+
+    /**
+     * Plans the demands of a plan that is not resource constrained on a
+     * pool of threads (see UncapacitatedPlanner); only the demands that
+     * share ReleasedWorkOrders are planned in priority order
+     * @param plan Plan for which we are generating the jobshop plan
+     * @param demands List of Demands of the plan in priority order
+     * @param threads int value representing the number of threads
+     */
+    private void generateUncapacitatedPlan(Plan plan, List<Demand> demands, int threads) {
+
+        Set<Task> shared = this.relworkorders.values().stream()
+                               .filter(w -> w.getPlan() == plan)
+                               .filter(w -> w.getDemand() == null)
+                               .map(ReleasedWorkOrder::getTask)
+                               .collect(Collectors.toSet());
+
+        UncapacitatedPlanner planner = new UncapacitatedPlanner(threads, shared);
+        for (Demand dem : demands) {
+            planner.add(dem);
+        }
+        planner.run();
+
+        JobShop.LOG("Uncapacitated planning: " + plan.getID() + ": " + planner);
+    }
+
+    /**
+     * Plans the demands of a plan partition by partition on a pool of
+     * threads.  The calendars are the only (mutable) objects shared by
+     * the partitions; they must be fully generated before planning starts
+     * so that they are only read by the planning threads
+     * @param plan Plan for which we are generating the jobshop plan
+     * @param demands List of Demands of the plan in priority order
+     * @param threads int value representing the number of threads
+     * @param speculator SpeculativePlanner used to plan the demands of
+     *                   each partition; null to plan them one by one
+     */
+    private void generatePartitionedPlan(Plan plan, List<Demand> demands, int threads,
+                                         SpeculativePlanner speculator) {
+
+        // The routing of a demand consists of the tasks of its SKU
+        Map<SKU, Integer> routingLengths = new HashMap<SKU, Integer>();
+        for (Task t : this.tasks.values()) {
+            routingLengths.merge(t.getSKU(), 1, Integer::sum);
+        }
+
+        PartitionPlanner planner = (speculator == null)
+                                   ? new PartitionPlanner(threads)
+                                   : new PartitionPlanner(threads, speculator::plan);
         for (Demand dem : demands) {
-            dem.plan();
+            planner.add(dem, routingLengths.getOrDefault(dem.getSKU(), 1));
+        }
+        planner.run();
+
+        JobShop.LOG("Plan timings: " + plan.getID() + ": " + planner);
+    }
+
+    /**
+     * Returns the number of threads used to plan the partitions of the
+     * model (option plan_threads); 1 if the demands are planned sequentially
+     * @return int value representing the number of planning threads
+     */
+    private int getPlanThreads() {
+        int threads = 1;
+        if (this.options.containsKey("plan_threads")) {
+            try {
+                threads = Integer.parseInt(this.options.get("plan_threads"));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option plan_threads: " + this.options.get("plan_threads") + "; Defaulting to " + threads + "...");
+            }
+        }
+        return Math.max(1, threads);
+    }
+
+    /**
+     * Returns the number of demands that are evaluated ahead of the demand
+     * being committed when planning speculatively (option
+     * speculative_window); 1 if the demands are planned sequentially
+     * @return int value representing the speculative planning window
+     */
+    private int getSpeculativeWindow() {
+        int window = 1;
+        if (this.options.containsKey("speculative_window")) {
+            try {
+                window = Integer.parseInt(this.options.get("speculative_window"));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option speculative_window: " + this.options.get("speculative_window") + "; Defaulting to " + window + "...");
+            }
         }
+        return Math.max(1, window);
     }
 
     /**
@@ -1565,171 +2299,250 @@ public class JobShop {
                                 .sorted(Comparator.comparing(Workcenter::getName))
                                 .collect(Collectors.toList());
 
-        JobShop.LOGDATA(testplanoutFile, "\nPlans:");
-        for (Plan p : plns) {
-            JobShop.LOGDATA(testplanoutFile, p.toString());
-        }
+        // The output files are written through buffered writers that are
+        // kept open for the duration of the print; the (TESTPLAN) output
+        // file is first released by the log sink so that all the records
+        // logged earlier to it are written before the plan output
+        getLogSink().release(testplanoutFile);
 
-        JobShop.LOGDATA(testplanoutFile, "\nDemands:");
-        String dmdHeaderStr = "#planid,skuid,demandid,priority,duequantity,duedate,planquantity,plandate";
-        JobShop.LOGDATA(dmdplanout, dmdHeaderStr, false);
-        for (Demand dmd : sdmds) {
-            String outStr = dmd.dmdplanString();
-            JobShop.LOGDATA(testplanoutFile, dmd.toString());
-            JobShop.LOGDATA(dmdplanout, outStr);
-        }
+        try (BufferedWriter testw = openOutputFile(testplanoutFile, true);
+             BufferedWriter dmdw = openOutputFile(dmdplanout, false);
+             BufferedWriter tpw = openOutputFile(taskplanout, false);
+             BufferedWriter utilw = openOutputFile(wrkutilout, false)) {
 
-        JobShop.LOGDATA(testplanoutFile, "\nTaskPlans:");
-        String tpHeaderStr = "#planid,skuid,taskid,startdate,enddate,quantity,demandid,workcenterid,relworkorderid,lotid";
-        JobShop.LOGDATA(taskplanout, tpHeaderStr, false);
-        for (Task task : stasks) {
-            List<TaskPlan> tps = task.getTaskPlans().stream()
-                                    .filter(tp -> plns.contains(tp.getPlan()))
-                                    .sorted(Comparator.comparing(TaskPlan::getPlanID)
-                                                      .thenComparing(TaskPlan::getStart))
-                                    .collect(Collectors.toList());
-            for (TaskPlan tp : tps) {
-                String outStr = tp.taskplanString();
-                JobShop.LOGDATA(testplanoutFile, tp.toString());
-                JobShop.LOGDATA(taskplanout, outStr);
+            StringBuilder sb = new StringBuilder(256);
+
+            writeOutputRecord(testw, "\nPlans:");
+            for (Plan p : plns) {
+                writeOutputRecord(testw, p.toString());
             }
-        }
 
-        JobShop.LOGDATA(testplanoutFile, "\nWorkcenterPlans:");
-        for (Workcenter wrk : sworks) {
-            List<TaskPlan> tps = wrk.getTaskPlans().stream()
-                                    .filter(tp -> plns.contains(tp.getPlan()))
-                                    .sorted(Comparator.comparing(TaskPlan::getPlanID)
-                                                      .thenComparing(TaskPlan::getStart))
-                                    .collect(Collectors.toList());
-            JobShop.LOGDATA(testplanoutFile, wrk.getName());
-            for (TaskPlan tp : tps) {
-                JobShop.LOGDATA(testplanoutFile, " - " + tp.toString());
-            }
-        }
-
-        String wrkUtilHdrStr = "#planid,workcenterid,shiftid,shiftstart,shiftend,utilization";
-        JobShop.LOGDATA(wrkutilout, wrkUtilHdrStr, false);
-        for (Workcenter wrk : sworks) {
-            for (Plan pln : this.plans.values()) {
-                DateRange horizon = new DateRange(pln.getStart(), pln.getEnd());
-                for (CalendarShift cs : wrk.getCalendar().getShifts()) {
-                    DateRange dr = new DateRange(cs.getStart(), cs.getEnd());
-                    if (horizon.contains(cs.getStart()) && horizon.contains(cs.getEnd())) {
-                        String outStr = wrk.wrkUtilString(pln, dr);
-                        Double util = wrk.calculateUtilization(pln, dr);
-                        JobShop.LOGDATA(wrkutilout, outStr);
+            writeOutputRecord(testw, "\nDemands:");
+            String dmdHeaderStr = "#planid,skuid,demandid,priority,duequantity,duedate,planquantity,plandate";
+            writeOutputRecord(dmdw, dmdHeaderStr);
+            for (Demand dmd : sdmds) {
+                if (testw != null) {
+                    sb.setLength(0);
+                    writeOutputRecord(testw, dmd.appendTo(sb));
+                }
+                sb.setLength(0);
+                writeOutputRecord(dmdw, dmd.appendDmdplanString(sb));
+            }
+
+            writeOutputRecord(testw, "\nTaskPlans:");
+            String tpHeaderStr = "#planid,skuid,taskid,startdate,enddate,quantity,demandid,workcenterid,relworkorderid,lotid";
+            writeOutputRecord(tpw, tpHeaderStr);
+            for (Task task : stasks) {
+                List<TaskPlan> tps = plns.stream()
+                                        .flatMap(p -> task.getTaskPlans(p).stream())
+                                        .sorted(Comparator.comparing(TaskPlan::getPlanID)
+                                                          .thenComparing(TaskPlan::getStart))
+                                        .collect(Collectors.toList());
+                for (TaskPlan tp : tps) {
+                    if (testw != null) {
+                        sb.setLength(0);
+                        writeOutputRecord(testw, tp.appendTo(sb));
+                    }
+                    sb.setLength(0);
+                    writeOutputRecord(tpw, tp.appendTaskplanString(sb));
+                }
+            }
+
+            if (testw != null) {
+                writeOutputRecord(testw, "\nWorkcenterPlans:");
+                for (Workcenter wrk : sworks) {
+                    List<TaskPlan> tps = plns.stream()
+                                            .flatMap(p -> wrk.getTaskPlans(p).stream())
+                                            .sorted(Comparator.comparing(TaskPlan::getPlanID)
+                                                              .thenComparing(TaskPlan::getStart))
+                                            .collect(Collectors.toList());
+                    writeOutputRecord(testw, wrk.getName());
+                    for (TaskPlan tp : tps) {
+                        sb.setLength(0);
+                        writeOutputRecord(testw, tp.appendTo(sb.append(" - ")));
+                    }
+                }
+            }
+
+            String wrkUtilHdrStr = "#planid,workcenterid,shiftid,shiftstart,shiftend,utilization";
+            writeOutputRecord(utilw, wrkUtilHdrStr);
+            for (Workcenter wrk : sworks) {
+                for (Plan pln : this.plans.values()) {
+                    DateRange horizon = new DateRange(pln.getStart(), pln.getEnd());
+                    for (CalendarShift cs : wrk.getCalendar().getShifts()) {
+                        DateRange dr = new DateRange(cs.getStart(), cs.getEnd());
+                        if (horizon.contains(dr.getStart()) && horizon.contains(dr.getEnd())) {
+                            sb.setLength(0);
+                            writeOutputRecord(utilw, wrk.appendWrkUtilString(sb, pln, dr));
+                        }
                     }
                 }
             }
         }
+        catch (IOException e) {
+            System.err.println("Unable to write plan output: " + e.getMessage());
+        }
 
         // If input mode is DATABASE, we also write to database tables
         if (inmode.equals("DATABASE")) {
+            writePlansToDatabase(plns, sdmds, stasks);
+        }
+    }
 
-            String deltpStmt = "delete from taskplan where planid = ?";
-
-            String deldpStmt = "delete from demandplan where planid = ?";
-
-            String tpStmt = "insert into taskplan " +
-                          "(planid, demandid, skuid, taskid, startdate," +
-                          " enddate, quantity, workcenterid, workorderid, lotid) values " +
-                          "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * A utility function to write the TaskPlans and DemandPlans of plans to
+     * the taskplan and demandplan tables, replacing the previous output of
+     * the plans atomically.  By default (option db_publish_mode DIRECT),
+     * the rows of the plans are deleted from and inserted into the tables
+     * in a single transaction.  With db_publish_mode STAGING, the output is
+     * written to staging tables that are then swapped with the output
+     * tables so that readers never wait for the output to be written.  With
+     * db_publish_mode DELTA, only the rows that differ from the output that
+     * is already stored are written
+     * @param plns List of Plans that are written
+     * @param sdmds List of Demands of the plans
+     * @param stasks List of Tasks in taskid order
+     */
+    private void writePlansToDatabase(List<Plan> plns, List<Demand> sdmds, List<Task> stasks) {
 
-            String dpStmt = "insert into demandplan " +
-                          "(planid, demandid, plandate, planquantity) values " +
-                          "(?, ?, ?, ?)";
+        int chunkSize = DbWriter.DEFAULT_CHUNK_SIZE;
+        if (this.options.containsKey("db_write_chunk_size")) {
             try {
-                // First delete all existing records in the TaskPlan table (for current planid)
-                PreparedStatement deltppStmt = this.connection.prepareStatement(deltpStmt);
-                for (Plan p : plns) {
-                    deltppStmt.setString(1, p.getID());
-                    deltppStmt.addBatch();
-                }
-                deltppStmt.executeBatch();
-
-                // Then delete all existing records in the DemandPlan table (for current planid)
-                PreparedStatement deldppStmt = this.connection.prepareStatement(deldpStmt);
-                for (Plan p : plns) {
-                    deldppStmt.setString(1, p.getID());
-                    deldppStmt.addBatch();
-                }
-                deldppStmt.executeBatch();
+                chunkSize = Integer.parseInt(this.options.get("db_write_chunk_size"));
+            }
+            catch (NumberFormatException e) {
+                JobShop.LOG("Illegal value for option db_write_chunk_size: " + this.options.get("db_write_chunk_size") + "; Defaulting to " + chunkSize + "...");
+            }
+        }
 
-                // Now insert new records into the TaskPlan table (from current run)
-                PreparedStatement tppStmt = this.connection.prepareStatement(tpStmt);
+        List<String> planids = plns.stream()
+                                   .map(Plan::getID)
+                                   .collect(Collectors.toList());
 
-                for (Task task : stasks) {
-                    List<TaskPlan> tps = task.getTaskPlans().stream()
-                                            .filter(tp -> plns.contains(tp.getPlan()))
-                                            .sorted(Comparator.comparing(TaskPlan::getPlanID))
-                                            .sorted(Comparator.comparing(TaskPlan::getStart))
-                                            .collect(Collectors.toList());
-                    for (TaskPlan tp : tps) {
-                        tppStmt.setString(1, tp.getPlan().getID());
-                        if (tp.getDemand() != null) {
-                            tppStmt.setString(2, tp.getDemand().getID());
-                        }
-                        else {
-                            tppStmt.setNull(2, java.sql.Types.VARCHAR);
-                        }
-                        tppStmt.setString(3, tp.getTask().getSKU().getName());
-                        tppStmt.setString(4, tp.getTask().getTaskID());
-                        tppStmt.setTimestamp(5, Timestamp.valueOf(tp.getStart()));
-                        tppStmt.setTimestamp(6, Timestamp.valueOf(tp.getEnd()));
-                        tppStmt.setInt(7, Long.valueOf(tp.getQuantity()).intValue());
-                        if (tp.getWorkcenter() != null) {
-                            tppStmt.setString(8, tp.getWorkcenter().getName());
-                        }
-                        else {
-                            tppStmt.setNull(8, java.sql.Types.VARCHAR);
-                        }
+        // Rows may be streamed to PostgreSQL with COPY (option db_output_copy)
+        boolean copy = Boolean.parseBoolean(this.options.get("db_output_copy"));
 
-                        if (tp.getReleasedWorkOrder() != null) {
-                            tppStmt.setString(9, tp.getReleasedWorkOrder().getID());
-                            tppStmt.setInt(10, tp.getReleasedWorkOrder().getLotID(tp).intValue());
-                        }
-                        else {
-                            tppStmt.setNull(9, java.sql.Types.VARCHAR);
-                            tppStmt.setNull(10, java.sql.Types.INTEGER);
-                        }
+        try (DbWriter dbw = new DbWriter(this.connection,
+                                         this.options.get("db_connection_string"),
+                                         chunkSize, copy)) {
 
-                        // Customization for SQLITE (which cannot handle TimeStamps)
-                        if (this.options.get("db_connection_string").contains("sqlite")) {
-                            tppStmt.setString(5, tp.getStart().format(sqliteDFS));
-                            tppStmt.setString(6, tp.getEnd().format(sqliteDFS));
-                        }
+            String publishMode = this.options.getOrDefault("db_publish_mode", "DIRECT");
+            if (publishMode.equals("STAGING") && !dbw.supportsTableSwap()) {
+                JobShop.LOG("db_publish_mode STAGING is not supported for this database; Using DIRECT...");
+                publishMode = "DIRECT";
+            }
 
-                        tppStmt.addBatch();
-                    }
+            if (publishMode.equals("DELTA")) {
+                PlanDelta delta = new PlanDelta(dbw, planids);
+                delta.publish(getTaskPlans(plns, stasks), sdmds);
+                dbw.commit();
+                JobShop.LOG("Plan delta written to database: " + delta);
+            }
+            else if (publishMode.equals("STAGING")) {
+                String tpStaging = "_taskplan_publish";
+                String dpStaging = "_demandplan_publish";
+                if (!dbw.tableExists(tpStaging)) {
+                    dbw.createTableLike(tpStaging, "taskplan");
+                }
+                if (!dbw.tableExists(dpStaging)) {
+                    dbw.createTableLike(dpStaging, "demandplan");
                 }
 
-                tppStmt.executeBatch();
-                JobShop.LOG("\nTaskplans written to database...", true, DEBUG_LEVELS.MINIMAL);
-
-                // Now insert new records into the DemandPlan table (from current run)
-                PreparedStatement dppStmt = this.connection.prepareStatement(dpStmt);
-
-                for (Demand dmd : sdmds) {
-                    dppStmt.setString(1, dmd.getPlan().getID());
-                    dppStmt.setString(2, dmd.getID());
-                    dppStmt.setTimestamp(3, Timestamp.valueOf(dmd.getPlanDate()));
-                    dppStmt.setInt(4, Long.valueOf(dmd.getPlanQuantity()).intValue());
+                // Fill the staging tables with the output of the other
+                // plans and of the current run
+                dbw.deleteAll(tpStaging);
+                dbw.deleteAll(dpStaging);
+                dbw.copyOtherPlans("taskplan", tpStaging, planids);
+                dbw.copyOtherPlans("demandplan", dpStaging, planids);
+                insertPlanRows(dbw, tpStaging, dpStaging, plns, sdmds, stasks);
+                dbw.createIndexIfMissing(tpStaging, "planid");
+                dbw.commit();
 
-                    // Customization for SQLITE (which cannot handle TimeStamps)
-                    if (this.options.get("db_connection_string").contains("sqlite")) {
-                        dppStmt.setString(3, dmd.getPlanDate().format(sqliteDFS));
-                    }
+                // Then publish them
+                dbw.swapTables("taskplan", tpStaging, "demandplan", dpStaging);
+                dbw.commit();
+            }
+            else {
+                // First delete all existing records in the TaskPlan and
+                // DemandPlan tables (for current planids)
+                dbw.deletePlans("taskplan", planids);
+                dbw.deletePlans("demandplan", planids);
+                insertPlanRows(dbw, "taskplan", "demandplan", plns, sdmds, stasks);
+                dbw.commit();
+            }
 
-                    dppStmt.addBatch();
-                }
+            JobShop.LOG("\nTaskplans written to database...", true, DEBUG_LEVELS.MINIMAL);
+            JobShop.LOG("\nDemandPlans written to database...", true, DEBUG_LEVELS.MINIMAL);
+        }
+        catch (SQLException e) {
+            JobShop.LOG(e.getMessage());
+        }
+    }
 
-                dppStmt.executeBatch();
-                JobShop.LOG("\nDemandPlans written to database...", true, DEBUG_LEVELS.MINIMAL);
+    /**
+     * A utility function that returns the TaskPlans of plans in the order
+     * of the tasks, and then of their plan and start
+     * @param plns List of Plans whose TaskPlans are returned
+     * @param stasks List of Tasks in taskid order
+     * @return List of TaskPlans of the plans
+     */
+    private List<TaskPlan> getTaskPlans(List<Plan> plns, List<Task> stasks) {
+        List<TaskPlan> tps = new ArrayList<TaskPlan>();
+        for (Task task : stasks) {
+            plns.stream()
+                .flatMap(p -> task.getTaskPlans(p).stream())
+                .sorted(Comparator.comparing(TaskPlan::getPlanID)
+                                  .thenComparing(TaskPlan::getStart))
+                .forEachOrdered(tps::add);
+        }
+        return tps;
+    }
 
-            }
-            catch (SQLException e) {
-                JobShop.LOG(e.getMessage());
+    /**
+     * A utility function to insert the TaskPlans and DemandPlans of plans
+     * into (output or staging) tables
+     * @param dbw DbWriter used to insert the rows
+     * @param tpTable String representing the name of the taskplan table
+     * @param dpTable String representing the name of the demandplan table
+     * @param plns List of Plans that are written
+     * @param sdmds List of Demands of the plans
+     * @param stasks List of Tasks in taskid order
+     * @throws SQLException if the rows cannot be inserted
+     */
+    private void insertPlanRows(DbWriter dbw, String tpTable, String dpTable,
+                                List<Plan> plns, List<Demand> sdmds, List<Task> stasks)
+        throws SQLException {
+
+        // Insert new records into the TaskPlan table (from current run)
+        try (DbWriter.Insert ins = dbw.insert(tpTable, "planid", "demandid",
+                                              "skuid", "taskid", "startdate",
+                                              "enddate", "quantity", "workcenterid",
+                                              "workorderid", "lotid")) {
+            for (TaskPlan tp : getTaskPlans(plns, stasks)) {
+                ReleasedWorkOrder rwo = tp.getReleasedWorkOrder();
+                ins.setString(1, tp.getPlan().getID());
+                ins.setString(2, (tp.getDemand() != null) ? tp.getDemand().getID() : null);
+                ins.setString(3, tp.getTask().getSKU().getName());
+                ins.setString(4, tp.getTask().getTaskID());
+                ins.setDateTime(5, tp.getStart());
+                ins.setDateTime(6, tp.getEnd());
+                ins.setInt(7, Long.valueOf(tp.getQuantity()).intValue());
+                ins.setString(8, (tp.getWorkcenter() != null) ? tp.getWorkcenter().getName() : null);
+                ins.setString(9, (rwo != null) ? rwo.getID() : null);
+                ins.setInt(10, (rwo != null) ? rwo.getLotID(tp) : null);
+                ins.addRow();
+            }
+        }
+
+        // Insert new records into the DemandPlan table (from current run)
+        try (DbWriter.Insert ins = dbw.insert(dpTable, "planid", "demandid",
+                                              "plandate", "planquantity")) {
+            for (Demand dmd : sdmds) {
+                ins.setString(1, dmd.getPlan().getID());
+                ins.setString(2, dmd.getID());
+                ins.setDateTime(3, dmd.getPlanDate());
+                ins.setInt(4, Long.valueOf(dmd.getPlanQuantity()).intValue());
+                ins.addRow();
             }
         }
     }
@@ -1751,7 +2564,9 @@ public class JobShop {
     /**
      * A utility function to print out data about the different objects
      * in the JobShop model in a JSON format.  This can be used to
-     * visualize the plan results in a web browser (poor man's UI)
+     * visualize the plan results in a web browser (poor man's UI).
+     * The records are streamed to the export file as they are generated;
+     * if the option export_json_gzip is true, the file is gzip compressed
      * @param plnids A List of String representing the ids's of the plans
      *            for which we want to generate the JSON output
      */
@@ -1770,167 +2585,134 @@ public class JobShop {
                                          .map(Plan::getID)
                                          .collect(Collectors.toList()));
 
+        boolean gzip = this.options.containsKey("export_json_gzip") &&
+                       Boolean.parseBoolean(this.options.get("export_json_gzip"));
+
         Path exportFile = Paths.get(this.options.get("logdir") +
                                     "/jobshop_export_" +
                                     plnStr + "_" +
                                     LocalDateTime.now().toString() +
-                                    ".json");
-        JobShop.LOGDATA(exportFile, "{");
-        boolean firstRecord = true;
-        String outStr = "";
-
-        // Export Plans
-        outStr = "\"plans\" : [\n";
-        firstRecord = true;
-        for (Plan p : plns) {
-            if (firstRecord) {
-                firstRecord = false;
-            }
-            else {
-                outStr += ",\n";
-            }
-            outStr += "\t{ \"planid\" : \"" + p.getID() +
-                      "\", \"startdate\" : \"" + sqliteDFS.format(p.getStart()) +
-                      "\", \"enddate\" : \"" + sqliteDFS.format(p.getEnd()) +
-                      "\"}";
-        }
-        outStr += "],\n";
-        JobShop.LOGDATA(exportFile, outStr);
-
-        // Export Demands
-        List<Demand> sdmds = this.demands.values()
-                                .stream()
-                                .filter(dmd -> plns.contains(dmd.getPlan()))
-                                .sorted(Comparator.comparing(Demand::getPriority))
-                                .collect(Collectors.toList());
-
-        outStr = "\"demands\" : [\n";
-        firstRecord = true;
-        for (Demand dmd : sdmds) {
-            if (firstRecord) {
-                firstRecord = false;
-            }
-            else {
-                outStr += ",\n";
-            }
-            outStr += "\t{ \"demandid\" : \"" + dmd.getID() +
-                      "\", \"customerid\" : \"" + dmd.getCustomerID() +
-                      "\", \"planid\" : \"" + dmd.getPlan().getID() +
-                      "\", \"skuid\" : \"" + dmd.getSKU() +
-                      "\", \"priority\" : \"" + dmd.getPriority() +
-                      "\", \"quantity\" : \"" + dmd.getDueQuantity() +
-                      "\", \"duedate\" : \"" + sqliteDFS.format(dmd.getDueDate()) +
-                      "\", \"plandate\" : \"" + sqliteDFS.format(dmd.getPlanDate()) +
-                      "\"}";
-        }
-        outStr += "],\n";
-        JobShop.LOGDATA(exportFile, outStr);
-
-        // Export Workcenters
-        List<String> sworks = this.workcenters.keySet()
-                                .stream()
-                                .sorted()
-                                .collect(Collectors.toList());
-
-        outStr = "\"workcenters\" : [\n";
-        firstRecord = true;
-        for (String w : sworks) {
-            if (firstRecord) {
-                firstRecord = false;
-            }
-            else {
-                outStr += ",\n";
-            }
-            outStr += "\t\"" + w + "\"";
-        }
-        outStr += "],\n";
-        JobShop.LOGDATA(exportFile, outStr);
+                                    (gzip ? ".json.gz" : ".json"));
+
+        try (JsonWriter json = new JsonWriter(exportFile, gzip)) {
+
+            // Export Plans
+            json.beginArray("plans");
+            for (Plan p : plns) {
+                json.beginRecord();
+                json.field("planid", p.getID());
+                json.dateField("startdate", p.getStart());
+                json.dateField("enddate", p.getEnd());
+                json.endRecord();
+            }
+            json.endArray();
+
+            // Export Demands
+            List<Demand> sdmds = this.demands.values()
+                                    .stream()
+                                    .filter(dmd -> plns.contains(dmd.getPlan()))
+                                    .sorted(Comparator.comparing(Demand::getPriority))
+                                    .collect(Collectors.toList());
 
-        // Export CalendarShifts
-        // We simply pick the first calendar and export its shifts
-        // since we don't care about shift availability for UI reporting
-        List<String> scals = this.calendars.keySet()
-                               .stream()
-                               .sorted()
-                               .collect(Collectors.toList());
+            json.beginArray("demands");
+            for (Demand dmd : sdmds) {
+                json.beginRecord();
+                json.field("demandid", dmd.getID());
+                json.field("customerid", dmd.getCustomerID());
+                json.field("planid", dmd.getPlan().getID());
+                json.field("skuid", dmd.getSKU());
+                json.field("priority", dmd.getPriority());
+                json.field("quantity", dmd.getDueQuantity());
+                json.dateField("duedate", dmd.getDueDate());
+                json.dateField("plandate", dmd.getPlanDate());
+                json.endRecord();
+            }
+            json.endArray();
+
+            // Export Workcenters
+            List<String> sworks = this.workcenters.keySet()
+                                    .stream()
+                                    .sorted()
+                                    .collect(Collectors.toList());
 
-        outStr = "\"shifts\" : [\n";
-        firstRecord = true;
-        for (CalendarShift cshift : this.calendars.get(scals.get(0)).getShifts()) {
-            if (firstRecord) {
-                firstRecord = false;
+            json.beginArray("workcenters");
+            for (String w : sworks) {
+                json.element(w);
             }
-            else {
-                outStr += ",\n";
-            }
-            outStr += "\t{ \"shiftno\" : \"" + cshift.getPriority() +
-                      "\", \"shiftstart\" : \"" + sqliteDFS.format(cshift.getStart()) +
-                      "\", \"shiftend\" : \"" + sqliteDFS.format(cshift.getEnd()) +
-                      "\", \"value\" : \"" + cshift.getValue() +
-                      "\"}";
-        }
-        outStr += "],\n";
-        JobShop.LOGDATA(exportFile, outStr);
-
-        // Export TaskPlans
-        List<String> stasks = this.tasks.keySet()
-                                .stream()
-                                .sorted()
-                                .collect(Collectors.toList());
+            json.endArray();
 
-        outStr = "\"taskplans\" : [\n";
-        firstRecord = true;
+            // Export CalendarShifts
+            // We simply pick the first calendar and export its shifts
+            // since we don't care about shift availability for UI reporting
+            List<String> scals = this.calendars.keySet()
+                                   .stream()
+                                   .sorted()
+                                   .collect(Collectors.toList());
 
-        for (String t : stasks) {
-            Task task = this.tasks.get(t);
-            List<TaskPlan> tps = task.getTaskPlans().stream()
-                                    .filter(tp -> plns.contains(tp.getPlan()))
-                                    .sorted(Comparator.comparing(TaskPlan::getStart))
+            json.beginArray("shifts");
+            for (CalendarShift cshift : this.calendars.get(scals.get(0)).getShifts()) {
+                json.beginRecord();
+                json.field("shiftno", cshift.getPriority());
+                json.dateField("shiftstart", cshift.getStart());
+                json.dateField("shiftend", cshift.getEnd());
+                json.field("value", cshift.getValue());
+                json.endRecord();
+            }
+            json.endArray();
+
+            // Export TaskPlans
+            List<String> stasks = this.tasks.keySet()
+                                    .stream()
+                                    .sorted()
                                     .collect(Collectors.toList());
-            for (TaskPlan tp : tps) {
-                if (firstRecord) {
-                    firstRecord = false;
-                }
-                else {
-                    outStr += ",\n";
-                }
-                outStr += "\t{ \"skuid\" : \"" + task.getSKU() +
-                          "\", \"tasknum\" : \"" + task.getTaskID() +
-                          "\", \"quantity\" : \"" + tp.getQuantity() +
-                          "\", \"startdate\" : \"" + sqliteDFS.format(tp.getStart()) +
-                          "\", \"enddate\" : \"" + sqliteDFS.format(tp.getEnd()) +
-                          "\", \"demandid\" : \"" + tp.getDemandID() +
-                          "\", \"demandpriority\" : \"" + tp.getDemand().getPriority() +
-                          "\", \"planid\" : \"" + tp.getPlan().getID() +
-                          "\", \"EPST\" : \"" + task.getEPST(tp.getDemand()) +
-                          "\", \"LPST\" : \"" + task.getLPST(tp.getDemand()) +
-                          "\", \"Level\" : \"" + task.getLevel();
-
-                if (tp.getWorkcenter() != null) {
-                    outStr += "\", \"workcenterid\" : \"" + tp.getWorkcenter().getName();
-                }
-                else {
-                    outStr += "\", \"workcenterid\" : \"null";
-                }
 
-                if (tp.getReleasedWorkOrder() != null) {
-                    outStr += "\", \"rwo\" : \"" + tp.getReleasedWorkOrder().getID() +
-                              "\", \"rwo_quantity\" : \"" + tp.getReleasedWorkOrder().getQuantity() +
-                              "\", \"lotid\" : \"" + tp.getReleasedWorkOrder().getLotID(tp);
-                }
-                else {
-                    outStr += "\", \"rwo\" : \"null" +
-                              "\", \"rwo_quantity\" : \"null" +
-                              "\", \"lotid\" : \"null";
+            json.beginArray("taskplans");
+            for (String t : stasks) {
+                Task task = this.tasks.get(t);
+                List<TaskPlan> tps = plns.stream()
+                                        .flatMap(p -> task.getTaskPlans(p).stream())
+                                        .sorted(Comparator.comparing(TaskPlan::getStart))
+                                        .collect(Collectors.toList());
+                for (TaskPlan tp : tps) {
+                    json.beginRecord();
+                    json.field("skuid", task.getSKU());
+                    json.field("tasknum", task.getTaskID());
+                    json.field("quantity", tp.getQuantity());
+                    json.dateField("startdate", tp.getStart());
+                    json.dateField("enddate", tp.getEnd());
+                    json.field("demandid", tp.getDemandID());
+                    json.field("demandpriority", tp.getDemand().getPriority());
+                    json.field("planid", tp.getPlan().getID());
+                    json.field("EPST", task.getEPST(tp.getDemand()));
+                    json.field("LPST", task.getLPST(tp.getDemand()));
+                    json.field("Level", task.getLevel());
+
+                    if (tp.getWorkcenter() != null) {
+                        json.field("workcenterid", tp.getWorkcenter().getName());
+                    }
+                    else {
+                        json.field("workcenterid", null);
+                    }
+
+                    ReleasedWorkOrder rwo = tp.getReleasedWorkOrder();
+                    if (rwo != null) {
+                        json.field("rwo", rwo.getID());
+                        json.field("rwo_quantity", rwo.getQuantity());
+                        json.field("lotid", rwo.getLotID(tp));
+                    }
+                    else {
+                        json.field("rwo", null);
+                        json.field("rwo_quantity", null);
+                        json.field("lotid", null);
+                    }
+                    json.endRecord();
                 }
-                outStr += "\"}";
             }
+            json.endArray();
+        }
+        catch (IOException e) {
+            System.err.println("Unable to write data to file: " + exportFile.toString());
         }
-        outStr += "]\n";
-        JobShop.LOGDATA(exportFile, outStr);
-
-        // End of file
-        JobShop.LOGDATA(exportFile, "}");
 
     }
 
@@ -1942,22 +2724,6 @@ public class JobShop {
         return new ArrayList<String>(this.plans.keySet());
     }
 
-    /**
-     * Returns a trimmed list of strings from an input record
-     * @param rec String representing an input record
-     * @param regex String representing regular expression used to split
-     *                     the input record
-     * @return String[] an array of string we split the input record into
-     *                  using the regex parameter
-     */
-    private static String[] getParts(String rec, String regex) {
-        String[] parts = rec.split(regex, -1);
-        for (int i=0; i < parts.length; i++) {
-            parts[i] = parts[i].trim();
-        }
-        return parts;
-    }
-
     /**
      * Perform static analysis of the JobShop model.  This will involve:
      * - computing the "level" of all tasks
@@ -1995,6 +2761,17 @@ public class JobShop {
         partition();
     }
 
+    /**
+     * Complete the static analysis of a model restored from a snapshot.
+     * The levels and criticality of the static model are part of the
+     * snapshot.  The partitions are always computed again: the partition
+     * ids in the snapshot include the released work orders of the run
+     * that wrote it, which may merge partitions of the static model
+     */
+    private void restoreStaticAnalysis() {
+        partition();
+    }
+
     /**
      * Partition the JobShop and log the details
      * At this time, we don't plan on doing anything with this result
@@ -2056,6 +2833,7 @@ public class JobShop {
         // efficiency calendars into account).
 
         List<Demand> dmds = this.demands.values().stream()
+                                   .filter(d -> inPlanScope(d.getPlan().getID()))
                                    .collect(Collectors.toList());
         for (Demand d : dmds) {
             List<Task> tsks_asc = this.tasks.values().stream()
@@ -0,0 +1,236 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A minimal streaming writer for the JSON export of a plan.  The export
+ * is a single JSON object made up of named arrays of records; every
+ * record is written straight to a buffered file channel (optionally
+ * gzip compressed) as soon as it is complete so that the memory needed
+ * does not grow with the number of records exported.  String values are
+ * escaped as per the JSON specification.
+ */
+class JsonWriter implements Closeable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BufferedWriter out;
+    private final StringBuilder scratch;
+    private boolean firstArray;
+    private boolean firstRecord;
+    private boolean firstField;
+
+    /**
+     * Constructor for a JsonWriter.  Creates (or truncates) the output
+     * file and writes the opening brace of the top level object.
+     * @param path Path of the output file
+     * @param gzip boolean value if the output must be gzip compressed
+     * @throws IOException if the output file cannot be opened
+     */
+    JsonWriter(Path path, boolean gzip) throws IOException {
+        OutputStream os = Channels.newOutputStream(
+                                FileChannel.open(path,
+                                                 StandardOpenOption.WRITE,
+                                                 StandardOpenOption.CREATE,
+                                                 StandardOpenOption.TRUNCATE_EXISTING));
+        if (gzip) {
+            os = new GZIPOutputStream(os, 64 * 1024);
+        }
+        this.out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8),
+                                      64 * 1024);
+        this.scratch = new StringBuilder(32);
+        this.firstArray = true;
+        this.out.write("{");
+        this.out.newLine();
+    }
+
+    /**
+     * Starts a named array of records in the top level object
+     * @param name String representing the name of the array
+     * @throws IOException if the data cannot be written
+     */
+    void beginArray(String name) throws IOException {
+        if (!this.firstArray) {
+            this.out.write(",");
+            this.out.newLine();
+        }
+        this.firstArray = false;
+        this.firstRecord = true;
+        writeString(name);
+        this.out.write(" : [");
+        this.out.newLine();
+    }
+
+    /**
+     * Ends the current array of records
+     * @throws IOException if the data cannot be written
+     */
+    void endArray() throws IOException {
+        if (!this.firstRecord) {
+            this.out.newLine();
+        }
+        this.out.write("]");
+    }
+
+    /**
+     * Starts a record (a JSON object) in the current array
+     * @throws IOException if the data cannot be written
+     */
+    void beginRecord() throws IOException {
+        if (!this.firstRecord) {
+            this.out.write(",");
+            this.out.newLine();
+        }
+        this.firstRecord = false;
+        this.firstField = true;
+        this.out.write("\t{ ");
+    }
+
+    /**
+     * Ends the current record
+     * @throws IOException if the data cannot be written
+     */
+    void endRecord() throws IOException {
+        this.out.write("}");
+    }
+
+    /**
+     * Writes a field of the current record.  All values are written as
+     * JSON strings (as expected by the browser UI); a null value is
+     * written as the string "null".
+     * @param name String representing the name of the field
+     * @param value Object whose string representation is the field value
+     * @throws IOException if the data cannot be written
+     */
+    void field(String name, Object value) throws IOException {
+        if (!this.firstField) {
+            this.out.write(", ");
+        }
+        this.firstField = false;
+        writeString(name);
+        this.out.write(" : ");
+        writeString(String.valueOf(value));
+    }
+
+    /**
+     * Writes a date/time field of the current record in the
+     * "yyyy-MM-dd HH:mm:ss" layout (see DateTimeCodec)
+     * @param name String representing the name of the field
+     * @param value LocalDateTime value of the field
+     * @throws IOException if the data cannot be written
+     */
+    void dateField(String name, LocalDateTime value) throws IOException {
+        if (!this.firstField) {
+            this.out.write(", ");
+        }
+        this.firstField = false;
+        writeString(name);
+        this.out.write(" : \"");
+        this.scratch.setLength(0);
+        this.out.append(DateTimeCodec.format(this.scratch, value));
+        this.out.write('"');
+    }
+
+    /**
+     * Writes a single string value as an element of the current array
+     * @param value String value of the element
+     * @throws IOException if the data cannot be written
+     */
+    void element(String value) throws IOException {
+        if (!this.firstRecord) {
+            this.out.write(",");
+            this.out.newLine();
+        }
+        this.firstRecord = false;
+        this.out.write("\t");
+        writeString(value);
+    }
+
+    /**
+     * Writes the closing brace of the top level object and closes the
+     * underlying file (finishing the gzip stream if any)
+     * @throws IOException if the data cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.out.newLine();
+            this.out.write("}");
+            this.out.newLine();
+        }
+        finally {
+            this.out.close();
+        }
+    }
+
+    /**
+     * Writes a quoted and escaped JSON string
+     * @param s String that must be written
+     * @throws IOException if the data cannot be written
+     */
+    private void writeString(String s) throws IOException {
+        this.out.write('"');
+        int from = 0;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            this.out.write(s, from, i - from);
+            from = i + 1;
+            switch (c) {
+                case '"':  this.out.write("\\\""); break;
+                case '\\': this.out.write("\\\\"); break;
+                case '\n': this.out.write("\\n"); break;
+                case '\r': this.out.write("\\r"); break;
+                case '\t': this.out.write("\\t"); break;
+                case '\b': this.out.write("\\b"); break;
+                case '\f': this.out.write("\\f"); break;
+                default:
+                    this.out.write("\\u00");
+                    this.out.write(HEX[(c >> 4) & 0xF]);
+                    this.out.write(HEX[c & 0xF]);
+            }
+        }
+        this.out.write(s, from, len - from);
+        this.out.write('"');
+    }
+}
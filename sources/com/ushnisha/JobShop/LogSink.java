@@ -0,0 +1,371 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+package com.ushnisha.JobShop;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An asynchronous sink for the log and data files written by the
+ * application.  Records are handed over to a single background writer
+ * thread through a bounded queue; the writer keeps one buffered writer
+ * open per target file for the life of the sink.  Buffers are flushed
+ * when a size threshold is reached, when the queue has been idle for a
+ * given interval, and when the sink is closed (at the latest from a
+ * shutdown hook, so that System.exit does not lose any records).
+ *
+ * Records that are written to a file are always kept in the order in
+ * which they were submitted.  When the queue is full, data records wait
+ * for space (backpressure) while log messages may optionally be dropped.
+ *
+ * Records are queued under the read lock of the sink and the sink is
+ * closed under its write lock, so every record is either queued ahead of
+ * the shutdown of the writer thread or written directly once the writer
+ * thread has finished.
+ */
+class LogSink {
+
+    static final int DEFAULT_QUEUE_SIZE = 8192;
+    static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    static final long DEFAULT_FLUSH_MILLIS = 1000;
+
+    private static final Record SHUTDOWN = new Record(null, null, true, null);
+
+    private final BlockingQueue<Record> queue;
+    private final int flushBytes;
+    private final long flushMillis;
+    private final boolean dropOnOverflow;
+    private final Charset charset;
+    private final Map<Path,BufferedWriter> writers;
+    private final Thread writerThread;
+    private final ReadWriteLock closeLock;
+    private volatile boolean closed;
+
+    private final AtomicLong submitted;
+    private final AtomicLong blocked;
+    private final AtomicLong dropped;
+    private final AtomicLong flushes;
+    private final AtomicLong failures;
+    private long pendingBytes;
+
+    /**
+     * Constructor for a LogSink.  Starts the background writer thread and
+     * registers a shutdown hook that closes the sink
+     * @param queueSize int value representing the capacity of the queue
+     * @param flushBytes int value representing the number of characters
+     *                   written after which all the files are flushed
+     * @param flushMillis long value representing the idle time in
+     *                    milliseconds after which all the files are flushed
+     * @param dropOnOverflow boolean value that is true if log messages
+     *                       must be dropped (rather than wait) when the
+     *                       queue is full
+     * @param cs Charset in which the files must be written
+     */
+    LogSink(int queueSize, int flushBytes, long flushMillis,
+            boolean dropOnOverflow, Charset cs) {
+        this.queue = new ArrayBlockingQueue<Record>(Math.max(queueSize, 1));
+        this.flushBytes = flushBytes;
+        this.flushMillis = Math.max(flushMillis, 1);
+        this.dropOnOverflow = dropOnOverflow;
+        this.charset = cs;
+        this.writers = new HashMap<Path,BufferedWriter>();
+        this.closeLock = new ReentrantReadWriteLock();
+        this.closed = false;
+        this.submitted = new AtomicLong();
+        this.blocked = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.flushes = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.pendingBytes = 0;
+
+        this.writerThread = new Thread(this::run, "jobshop-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "jobshop-log-shutdown"));
+    }
+
+    /**
+     * Submit a data record to be written to a file.  Waits for space in
+     * the queue if it is full
+     * @param path Path of the file to which the record must be written
+     * @param line String representing the record (a line terminator is added)
+     * @param append boolean value if we should append to the file or
+     *               truncate it before writing the record
+     */
+    void write(Path path, String line, boolean append) {
+        submit(new Record(path, line, append, null), false);
+    }
+
+    /**
+     * Submit a log message to be written to a file.  If the sink has been
+     * configured to drop messages on overflow and the queue is full, the
+     * message is dropped (and counted)
+     * @param path Path of the log file
+     * @param line String representing the log message
+     */
+    void log(Path path, String line) {
+        submit(new Record(path, line, true, null), this.dropOnOverflow);
+    }
+
+    /**
+     * Hand over a file to the caller: waits until all the records submitted
+     * so far have been written, then flushes and closes the writer of the
+     * file.  The caller may then write to the file directly; any records
+     * submitted for the file later will re-open it in append mode
+     * @param path Path of the file that must be released
+     */
+    void release(Path path) {
+        if (path == null) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        submit(new Record(path, null, true, done), false);
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Record rec, boolean mayDrop) {
+        this.closeLock.readLock().lock();
+        try {
+            if (!this.closed) {
+                enqueue(rec, mayDrop);
+                return;
+            }
+        }
+        finally {
+            this.closeLock.readLock().unlock();
+        }
+
+        // Late records (e.g. from other shutdown hooks) are written directly,
+        // after the records queued before the sink was closed
+        awaitWriter();
+        synchronized (this.writers) {
+            if (rec.released == null) {
+                writeRecord(rec);
+                flushAll();
+            }
+            else {
+                closeWriter(rec.path);
+                rec.released.countDown();
+            }
+        }
+    }
+
+    private void enqueue(Record rec, boolean mayDrop) {
+        this.submitted.incrementAndGet();
+        if (this.queue.offer(rec)) {
+            return;
+        }
+        if (mayDrop) {
+            this.dropped.incrementAndGet();
+            return;
+        }
+        this.blocked.incrementAndGet();
+        try {
+            this.queue.put(rec);
+        }
+        catch (InterruptedException e) {
+            this.dropped.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitWriter() {
+        if (Thread.currentThread() == this.writerThread) {
+            return;
+        }
+        try {
+            this.writerThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush and close all the files after writing out all the records that
+     * have been submitted so far.  Records submitted after the sink is
+     * closed are written synchronously
+     */
+    void close() {
+        this.closeLock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.queue.put(SHUTDOWN);
+        }
+        catch (InterruptedException e) {
+            // Stop the writer thread, which flushes all the files
+            this.writerThread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            this.closeLock.writeLock().unlock();
+        }
+        awaitWriter();
+        synchronized (this.writers) {
+            flushAll();
+        }
+    }
+
+    /**
+     * The loop run by the background writer thread
+     */
+    private void run() {
+        try {
+            while (true) {
+                Record rec = this.queue.poll(this.flushMillis, TimeUnit.MILLISECONDS);
+                synchronized (this.writers) {
+                    if (rec == null) {
+                        if (this.pendingBytes > 0) {
+                            flushAll();
+                        }
+                        continue;
+                    }
+                    if (rec == SHUTDOWN) {
+                        flushAll();
+                        return;
+                    }
+                    if (rec.released != null) {
+                        closeWriter(rec.path);
+                        rec.released.countDown();
+                        continue;
+                    }
+                    writeRecord(rec);
+                    if (this.pendingBytes >= this.flushBytes) {
+                        flushAll();
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            synchronized (this.writers) {
+                flushAll();
+            }
+        }
+    }
+
+    private void writeRecord(Record rec) {
+        try {
+            BufferedWriter w = this.writers.get(rec.path);
+            if (!rec.append || w == null) {
+                if (w != null) {
+                    w.close();
+                }
+                w = Files.newBufferedWriter(rec.path, this.charset,
+                                            StandardOpenOption.WRITE,
+                                            StandardOpenOption.CREATE,
+                                            rec.append ? StandardOpenOption.APPEND :
+                                                         StandardOpenOption.TRUNCATE_EXISTING);
+                this.writers.put(rec.path, w);
+            }
+            w.write(rec.line);
+            w.newLine();
+            this.pendingBytes += rec.line.length() + 1;
+        }
+        catch (IOException e) {
+            this.failures.incrementAndGet();
+            this.writers.remove(rec.path);
+            System.err.println("Unable to write data to file: " + rec.path.toString());
+        }
+    }
+
+    private void closeWriter(Path path) {
+        BufferedWriter w = this.writers.remove(path);
+        if (w != null) {
+            try {
+                w.close();
+            }
+            catch (IOException e) {
+                this.failures.incrementAndGet();
+                System.err.println("Unable to write data to file: " + path.toString());
+            }
+        }
+    }
+
+    private void flushAll() {
+        for (Map.Entry<Path,BufferedWriter> e : this.writers.entrySet()) {
+            try {
+                e.getValue().flush();
+            }
+            catch (IOException ex) {
+                this.failures.incrementAndGet();
+                System.err.println("Unable to write data to file: " + e.getKey().toString());
+            }
+        }
+        this.pendingBytes = 0;
+        this.flushes.incrementAndGet();
+    }
+
+    /**
+     * String representation of the statistics of the sink
+     * @return String value representing the sink statistics
+     */
+    public String toString() {
+        return "Records: " + this.submitted.get() + "; Blocked: " + this.blocked.get() +
+               "; Dropped: " + this.dropped.get() + "; Flushes: " + this.flushes.get() +
+               "; Write failures: " + this.failures.get();
+    }
+
+    /**
+     * A single line that must be written to a file (or a request to
+     * release a file, signalled through the latch once done)
+     */
+    private static class Record {
+
+        private final Path path;
+        private final String line;
+        private final boolean append;
+        private final CountDownLatch released;
+
+        Record(Path p, String l, boolean app, CountDownLatch rel) {
+            this.path = p;
+            this.line = l;
+            this.append = app;
+            this.released = rel;
+        }
+    }
+}
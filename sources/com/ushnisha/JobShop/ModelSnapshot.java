@@ -0,0 +1,415 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A versioned binary snapshot of the static (master data) part of a
+ * JobShop model: the calendars (with their shifts or shift patterns),
+ * SKUs, workcenters, tasks along with their precedences and alternate
+ * workcenters, and the results of the static analysis of the model
+ * (task and workcenter levels, workcenter criticality and partition ids).
+ * The partition ids are not used after a restore: the model is always
+ * partitioned again, along with the released work orders of the run.
+ *
+ * The snapshot records the size and modification time of each of the
+ * source files of the master data and is only used while all of them are
+ * unchanged.  A snapshot is read by mapping the file into memory.
+ *
+ * Layout (all values big-endian; strings are an int byte length followed
+ * by UTF-8 bytes):
+ * <pre>
+ *   int magic, int version
+ *   int n; n x (string path, long size, long modified)
+ *   int n; n x calendar (string name, string type,
+ *                        int n; n x (int id, long start, long end, int priority, double value),
+ *                        boolean pattern; [int n; n x (long start, long end, int priority, double value),
+ *                                          int n; n x (long start, long end, double value)])
+ *   int n; n x sku (string name, string description, int partitionid)
+ *   int n; n x workcenter (string name, string calendar, int setups, int criticality,
+ *                          int minlevel, int maxlevel, int internalcriticality, int partitionid)
+ *   int n; n x task (string taskid, string sku, long setup, long timeper, long minlot,
+ *                    long maxlot, boolean delivery, int level, int partitionid)
+ *   int n; n x precedence (string task, string predecessor)
+ *   int n; n x workcenter (string name, int n; n x (string task, int priority))
+ * </pre>
+ */
+class ModelSnapshot {
+
+    static final int MAGIC = 0x4A53534E;
+    static final int VERSION = 1;
+
+    private final Path file;
+    private final List<Path> sources;
+
+    /**
+     * Constructor for a ModelSnapshot
+     * @param file Path of the snapshot file
+     * @param sources List of Paths of the source files of the master data;
+     *                may be empty if the source cannot be checked
+     */
+    ModelSnapshot(Path file, List<Path> sources) {
+        this.file = file;
+        this.sources = sources;
+    }
+
+    /**
+     * Returns the path of the snapshot file
+     * @return Path of the snapshot file
+     */
+    Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Checks if the snapshot file exists, has the current version and was
+     * created from the current version of all the source files
+     * @return boolean value true if the snapshot can be restored
+     */
+    boolean isCurrent() {
+        if (!Files.isRegularFile(this.file)) {
+            return false;
+        }
+        try {
+            ByteBuffer buf = map();
+            return readHeader(buf);
+        }
+        catch (IOException | BufferUnderflowException e) {
+            JobShop.LOG("Unable to read model snapshot " + this.file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Restores the master data of the snapshot into the model registries
+     * @param calendars Map of calendars by name
+     * @param skus Map of SKUs by name
+     * @param workcenters Map of workcenters by name
+     * @param tasks Map of tasks by task number
+     * @param components Set of Partitionable components of the model
+     * @throws IOException if the snapshot cannot be read or is not current
+     */
+    void restore(Map<String,Calendar> calendars, Map<String,SKU> skus,
+                 Map<String,Workcenter> workcenters, Map<String,Task> tasks,
+                 Set<Partitionable> components) throws IOException {
+
+        ByteBuffer buf = map();
+        try {
+            if (!readHeader(buf)) {
+                throw new IOException("Model snapshot is not current: " + this.file);
+            }
+
+            int n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                Calendar cal = new Calendar(getString(buf), getString(buf));
+                int nshifts = buf.getInt();
+                for (int k = 0; k < nshifts; k++) {
+                    cal.addShift(buf.getInt(), buf.getLong(), buf.getLong(),
+                                 buf.getInt(), buf.getDouble());
+                }
+                if (buf.get() != 0) {
+                    CalendarPattern cp = new CalendarPattern();
+                    int ntemplate = buf.getInt();
+                    for (int k = 0; k < ntemplate; k++) {
+                        cp.addTemplateShift(buf.getLong(), buf.getLong(),
+                                            buf.getInt(), buf.getDouble());
+                    }
+                    int nexceptions = buf.getInt();
+                    for (int k = 0; k < nexceptions; k++) {
+                        cp.addException(buf.getLong(), buf.getLong(), buf.getDouble());
+                    }
+                    cal.setPattern(cp);
+                }
+                calendars.put(cal.getName(), cal);
+            }
+
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                SKU s = new SKU(getString(buf), getString(buf));
+                s.setPartitionId(buf.getInt());
+                skus.put(s.getName(), s);
+                components.add(s);
+            }
+
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                String name = getString(buf);
+                Calendar cal = lookup(calendars, getString(buf));
+                Workcenter w = new Workcenter(name, cal, buf.getInt(), buf.getInt());
+                w.setMinLevel(buf.getInt());
+                w.setMaxLevel(buf.getInt());
+                w.setInternalCriticality(buf.getInt());
+                w.setPartitionId(buf.getInt());
+                workcenters.put(name, w);
+                components.add(w);
+            }
+
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                String taskid = getString(buf);
+                SKU sku = lookup(skus, getString(buf));
+                Task t = new Task(taskid, sku, buf.getLong(), buf.getLong(),
+                                  buf.getLong(), buf.getLong());
+                if (buf.get() != 0) {
+                    sku.setDeliveryTask(t);
+                }
+                t.setLevel(buf.getInt());
+                t.setPartitionId(buf.getInt());
+                tasks.put(t.getTaskNumber(), t);
+                components.add(t);
+            }
+
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                Task succ = lookup(tasks, getString(buf));
+                Task pred = lookup(tasks, getString(buf));
+                succ.setPredecessor(pred);
+                pred.setSuccessor(succ);
+            }
+
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                Workcenter w = lookup(workcenters, getString(buf));
+                int ntasks = buf.getInt();
+                for (int k = 0; k < ntasks; k++) {
+                    Task t = lookup(tasks, getString(buf));
+                    t.addWorkcenter(w, buf.getInt());
+                    w.addTask(t);
+                }
+            }
+        }
+        catch (BufferUnderflowException e) {
+            throw new IOException("Truncated model snapshot: " + this.file);
+        }
+    }
+
+    /**
+     * Writes the master data of the model to the snapshot file.  The file
+     * is first written under a temporary name and then moved in place so
+     * that a concurrent run never reads a partial snapshot
+     * @param calendars Map of calendars by name
+     * @param skus Map of SKUs by name
+     * @param workcenters Map of workcenters by name
+     * @param tasks Map of tasks by task number
+     * @throws IOException if the snapshot cannot be written
+     */
+    void save(Map<String,Calendar> calendars, Map<String,SKU> skus,
+              Map<String,Workcenter> workcenters, Map<String,Task> tasks) throws IOException {
+
+        Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(this.sources.size());
+            for (Path p : this.sources) {
+                putString(out, p.toString());
+                out.writeLong(Files.exists(p) ? Files.size(p) : -1);
+                out.writeLong(Files.exists(p) ? Files.getLastModifiedTime(p).toMillis() : -1);
+            }
+
+            out.writeInt(calendars.size());
+            for (Calendar cal : calendars.values()) {
+                putString(out, cal.getName());
+                putString(out, cal.getType());
+                CalendarPattern cp = cal.getPattern();
+                if (cp == null) {
+                    int nshifts = cal.getShiftCount();
+                    out.writeInt(nshifts);
+                    for (int k = 0; k < nshifts; k++) {
+                        out.writeInt(cal.getShiftID(k));
+                        out.writeLong(cal.getShiftStart(k));
+                        out.writeLong(cal.getShiftEnd(k));
+                        out.writeInt(cal.getShiftPriority(k));
+                        out.writeDouble(cal.getShiftValue(k));
+                    }
+                    out.writeBoolean(false);
+                }
+                else {
+                    // The shifts of a pattern calendar are generated from
+                    // the pattern once the plan horizon is known
+                    out.writeInt(0);
+                    out.writeBoolean(true);
+                    out.writeInt(cp.getTemplateSize());
+                    for (int k = 0; k < cp.getTemplateSize(); k++) {
+                        long[] ts = cp.getTemplateShift(k);
+                        out.writeLong(ts[0]);
+                        out.writeLong(ts[1]);
+                        out.writeInt((int) ts[2]);
+                        out.writeDouble(Double.longBitsToDouble(ts[3]));
+                    }
+                    out.writeInt(cp.getExceptionCount());
+                    for (int k = 0; k < cp.getExceptionCount(); k++) {
+                        out.writeLong(cp.getExceptionStart(k));
+                        out.writeLong(cp.getExceptionEnd(k));
+                        out.writeDouble(cp.getExceptionValue(k));
+                    }
+                }
+            }
+
+            out.writeInt(skus.size());
+            for (SKU s : skus.values()) {
+                putString(out, s.getName());
+                putString(out, s.getDescription());
+                out.writeInt(s.getPartitionId());
+            }
+
+            out.writeInt(workcenters.size());
+            for (Workcenter w : workcenters.values()) {
+                putString(out, w.getName());
+                putString(out, w.getCalendar().getName());
+                out.writeInt(w.getMaxSetupsPerShift());
+                out.writeInt(w.getCriticalityIndex());
+                out.writeInt(w.getMinLevel());
+                out.writeInt(w.getMaxLevel());
+                out.writeInt(w.getInternalCriticality());
+                out.writeInt(w.getPartitionId());
+            }
+
+            List<Task> preds = new ArrayList<Task>();
+            out.writeInt(tasks.size());
+            for (Task t : tasks.values()) {
+                putString(out, t.getTaskID());
+                putString(out, t.getSKU().getName());
+                out.writeLong(t.getSetupTime());
+                out.writeLong(t.getTimePer());
+                out.writeLong(t.getMinLotSize());
+                out.writeLong(t.getMaxLotSize());
+                out.writeBoolean(t.getSKU().getDeliveryTask() == t);
+                out.writeInt(t.getLevel());
+                out.writeInt(t.getPartitionId());
+                if (t.getPredecessor() != null) {
+                    preds.add(t);
+                }
+            }
+
+            out.writeInt(preds.size());
+            for (Task t : preds) {
+                putString(out, t.getTaskNumber());
+                putString(out, t.getPredecessor().getTaskNumber());
+            }
+
+            // Associations are written by workcenter so that the tasks of
+            // each workcenter are restored in their original order
+            out.writeInt(workcenters.size());
+            for (Workcenter w : workcenters.values()) {
+                putString(out, w.getName());
+                out.writeInt(w.getTasks().size());
+                for (Task t : w.getTasks()) {
+                    putString(out, t.getTaskNumber());
+                    out.writeInt(t.getWorkcenterPriority(w));
+                }
+            }
+        }
+
+        try {
+            Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private ByteBuffer map() throws IOException {
+        try (FileChannel ch = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /**
+     * Reads the header of the snapshot and checks the version and the
+     * source files
+     * @param buf ByteBuffer positioned at the start of the snapshot
+     * @return boolean value true if the snapshot is current
+     */
+    private boolean readHeader(ByteBuffer buf) {
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            return false;
+        }
+        int n = buf.getInt();
+        if (n != this.sources.size()) {
+            return false;
+        }
+        try {
+            for (Path p : this.sources) {
+                String name = getString(buf);
+                long size = buf.getLong();
+                long modified = buf.getLong();
+                if (!name.equals(p.toString())) {
+                    return false;
+                }
+                if (size != (Files.exists(p) ? Files.size(p) : -1) ||
+                    modified != (Files.exists(p) ? Files.getLastModifiedTime(p).toMillis() : -1)) {
+                    return false;
+                }
+            }
+        }
+        catch (IOException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static <T> T lookup(Map<String,T> map, String key) throws IOException {
+        T value = map.get(key);
+        if (value == null) {
+            throw new IOException("Model snapshot refers to unknown object: " + key);
+        }
+        return value;
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getInt()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+}
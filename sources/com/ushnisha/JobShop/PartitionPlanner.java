@@ -0,0 +1,238 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Plans the demands of a Plan partition by partition on a ForkJoin pool.
+ * The partitions of the model (see JobShop.partition) share no SKUs,
+ * Tasks, Workcenters or ReleasedWorkOrders, so the demands of different
+ * partitions can be planned concurrently; the demands of a partition are
+ * planned on a single thread in the order in which they are added (the
+ * priority order).  The plan of each partition, and hence the merged
+ * output, is therefore identical to that of sequential planning.
+ *
+ * The partitions are assigned to the threads up front, the most expensive
+ * partition first and each partition to the least loaded thread, using a
+ * cost estimate of the number of demands times their routing length.
+ * The only objects shared by the partitions (Calendars and Plans) must
+ * not be modified while planning.
+ *
+ * By default the demands of a partition are planned one after the other;
+ * a different planner for the demands of a partition (for example, a
+ * SpeculativePlanner) may be supplied instead.
+ */
+class PartitionPlanner {
+
+    private final int threads;
+    private final Consumer<List<Demand>> planner;
+    private final Map<Integer, Partition> partitions;
+    private List<Bucket> buckets;
+    private long elapsed;
+
+    /**
+     * Constructor for a PartitionPlanner
+     * @param threads int value representing the number of threads used to
+     *                plan the partitions
+     */
+    PartitionPlanner(int threads) {
+        this(threads, dmds -> dmds.forEach(Demand::plan));
+    }
+
+    /**
+     * Constructor for a PartitionPlanner with a specific planner for the
+     * demands of a partition
+     * @param threads int value representing the number of threads used to
+     *                plan the partitions
+     * @param planner Consumer that plans a list of demands (of a single
+     *                partition) in order
+     */
+    PartitionPlanner(int threads, Consumer<List<Demand>> planner) {
+        this.threads = Math.max(1, threads);
+        this.planner = planner;
+        this.partitions = new TreeMap<Integer, Partition>();
+        this.buckets = new ArrayList<Bucket>();
+        this.elapsed = 0;
+    }
+
+    /**
+     * Adds a demand to its partition.  Demands must be added in the order
+     * in which they must be planned
+     * @param d Demand that must be planned
+     * @param routingLength int value representing the number of tasks in
+     *                      the routing of the demand
+     */
+    void add(Demand d, int routingLength) {
+        Partition p = this.partitions.computeIfAbsent(d.getPartitionId(), Partition::new);
+        p.demands.add(d);
+        p.cost += Math.max(1, routingLength);
+    }
+
+    /**
+     * Plans all the partitions and waits for them to complete.  If the
+     * planning of any partition fails, the failure is rethrown once all
+     * the other partitions are complete
+     */
+    void run() {
+        long t0 = System.nanoTime();
+        try {
+            assign();
+            if (this.buckets.size() == 1) {
+                this.buckets.get(0).compute();
+            }
+            else {
+                runParallel();
+            }
+        }
+        finally {
+            this.elapsed = System.nanoTime() - t0;
+        }
+    }
+
+    /**
+     * Assign the partitions to (at most as many buckets as there are)
+     * threads: the partitions are taken in descending order of cost and
+     * each is added to the bucket with the least cost so far
+     */
+    private void assign() {
+        List<Partition> sorted = new ArrayList<Partition>(this.partitions.values());
+        sorted.sort(Comparator.comparingLong((Partition p) -> p.cost).reversed()
+                              .thenComparingInt(p -> p.id));
+
+        int n = Math.min(this.threads, Math.max(1, sorted.size()));
+        this.buckets = new ArrayList<Bucket>(n);
+        for (int i = 0; i < n; i++) {
+            this.buckets.add(new Bucket(this.planner));
+        }
+        for (Partition p : sorted) {
+            Bucket least = this.buckets.get(0);
+            for (Bucket b : this.buckets) {
+                if (b.cost < least.cost) {
+                    least = b;
+                }
+            }
+            least.partitions.add(p);
+            least.cost += p.cost;
+        }
+    }
+
+    private void runParallel() {
+
+        AtomicInteger counter = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(this.buckets.size(),
+                                p -> {
+                                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                                    t.setName("jobshop-planner-" + counter.incrementAndGet());
+                                    return t;
+                                },
+                                null, false);
+        try {
+            pool.invoke(new RecursiveAction() {
+                protected void compute() {
+                    ForkJoinTask.invokeAll(PartitionPlanner.this.buckets);
+                }
+            });
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of partitions, the estimated cost and planning
+     * time of each thread and the elapsed time of the whole planning run
+     * @return String representing the planning timings for log purposes
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.partitions.size()).append(" partitions; ");
+        for (int i = 0; i < this.buckets.size(); i++) {
+            Bucket b = this.buckets.get(i);
+            sb.append("thread ").append(i + 1).append(": ")
+              .append(b.partitions.size()).append(" partitions, cost ")
+              .append(b.cost).append(", ").append(b.nanos / 1000000).append(" ms; ");
+        }
+        return sb.append("total: ").append(this.elapsed / 1000000).append(" ms (")
+                 .append(this.buckets.size()).append(this.buckets.size() == 1 ? " thread)" : " threads)")
+                 .toString();
+    }
+
+    /**
+     * The demands (in planning order) of a single partition
+     */
+    private static class Partition {
+
+        private final int id;
+        private final List<Demand> demands;
+        private long cost;
+
+        Partition(int id) {
+            this.id = id;
+            this.demands = new ArrayList<Demand>();
+            this.cost = 0;
+        }
+    }
+
+    /**
+     * The partitions assigned to a single thread
+     */
+    private static class Bucket extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Consumer<List<Demand>> planner;
+        private final List<Partition> partitions;
+        private long cost;
+        private long nanos;
+
+        Bucket(Consumer<List<Demand>> planner) {
+            this.planner = planner;
+            this.partitions = new ArrayList<Partition>();
+            this.cost = 0;
+            this.nanos = 0;
+        }
+
+        protected void compute() {
+            long t0 = System.nanoTime();
+            for (Partition p : this.partitions) {
+                this.planner.accept(p.demands);
+            }
+            this.nanos = System.nanoTime() - t0;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.time.LocalDateTime;
+
+/**
+ * A Placement is the answer of a Task to the question of where a TaskPlan
+ * could be planned: the Workcenter the TaskPlan would load (null for
+ * Tasks that do not load a workcenter) and the DateRange it would span.
+ * A Placement is a value; it does not change the state of the Task or the
+ * Workcenter until a TaskPlan is created from it
+ */
+class Placement {
+
+    private final Workcenter workcenter;
+    private final DateRange dateRange;
+
+    /**
+     * Constructor for the placement
+     * @param w Workcenter that the TaskPlan would load; null if none
+     * @param dr DateRange that the TaskPlan would span
+     */
+    Placement(Workcenter w, DateRange dr) {
+        this.workcenter = w;
+        this.dateRange = dr;
+    }
+
+    /**
+     * Returns the workcenter of this placement
+     * @return Workcenter that the TaskPlan would load; null if none
+     */
+    Workcenter getWorkcenter() {
+        return this.workcenter;
+    }
+
+    /**
+     * Returns the date range of this placement
+     * @return DateRange that the TaskPlan would span
+     */
+    DateRange getDateRange() {
+        return this.dateRange;
+    }
+
+    /**
+     * Returns the start of this placement
+     * @return LocalDateTime representing the start of the TaskPlan
+     */
+    LocalDateTime getStart() {
+        return this.dateRange.getStart();
+    }
+
+    /**
+     * Returns the end of this placement
+     * @return LocalDateTime representing the end of the TaskPlan
+     */
+    LocalDateTime getEnd() {
+        return this.dateRange.getEnd();
+    }
+
+    /**
+     * String representation of the placement
+     * @return String value representing the placement
+     */
+    public String toString() {
+        return this.dateRange + " on workcenter " + this.workcenter;
+    }
+}
@@ -36,10 +36,14 @@ import java.time.LocalDateTime;
  */
 class Plan {
 
+    static final int DEFAULT_MAX_SLOT_PROBES = 10000;
+
     private String id;
     private LocalDateTime start;
     private LocalDateTime end;
     private Map<String, String> params;
+    private PlanOverlay overlay;
+    private int maxSlotProbes;
 
     /**
      * Constructor that creates a Plan object with a unique ID and
@@ -53,6 +57,8 @@ class Plan {
         this.start = st;
         this.end = en;
         this.params = new HashMap<String, String>();
+        this.overlay = new PlanOverlay();
+        this.maxSlotProbes = DEFAULT_MAX_SLOT_PROBES;
     }
 
 
@@ -73,6 +79,33 @@ class Plan {
      */
     void setParam(String key, String value) {
         this.params.put(key, value);
+        if (key.equals("MAX_SLOT_PROBES")) {
+            this.maxSlotProbes = parseMaxSlotProbes(value);
+        }
+    }
+
+    /**
+     * Returns the maximum number of probes allowed in a single slot search
+     * on a workcenter (planning parameter MAX_SLOT_PROBES)
+     * @return int value representing the maximum number of probes
+     */
+    int getMaxSlotProbes() {
+        return this.maxSlotProbes;
+    }
+
+    private int parseMaxSlotProbes(String value) {
+        try {
+            int n = Integer.parseInt(value.trim());
+            if (n > 0) {
+                return n;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Fall through
+        }
+        JobShop.LOG("Illegal value for MAX_SLOT_PROBES: " + value + " in plan " +
+                    this.id + "; Defaulting to " + DEFAULT_MAX_SLOT_PROBES + "...");
+        return DEFAULT_MAX_SLOT_PROBES;
     }
 
     /**
@@ -100,6 +133,15 @@ class Plan {
         return this.id;
     }
 
+    /**
+     * Returns the overlay that holds the planning state (TaskPlans and
+     * workcenter loads) of this plan
+     * @return PlanOverlay of this plan
+     */
+    PlanOverlay getOverlay() {
+        return this.overlay;
+    }
+
     /**
      * returns a string representation of this plan for output/log purposes
      * @return String value representing this plan
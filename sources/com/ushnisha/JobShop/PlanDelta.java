@@ -0,0 +1,258 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Publishes the output of a set of plans to the taskplan and demandplan
+ * tables as a delta against the output that is already stored.  The rows
+ * of the plans are read from the tables and matched with the new rows:
+ * TaskPlans on (planid, skuid, taskid, demandid, workorderid, lotid,
+ * startdate) and DemandPlans on (planid, demandid).  Only the rows that
+ * are new are inserted, the rows whose other columns changed are updated
+ * and the rows that no longer exist are deleted.
+ */
+class PlanDelta {
+
+    private static final char SEP = '\u001F';
+    private static final String NULL = "\u0000";
+
+    private final DbWriter dbw;
+    private final Collection<String> planids;
+    private long[] tpCounts;
+    private long[] dpCounts;
+
+    /**
+     * Constructor for a PlanDelta
+     * @param dbw DbWriter used to read and write the tables
+     * @param planids Collection of String representing the planids of the
+     *                plans that are published
+     */
+    PlanDelta(DbWriter dbw, Collection<String> planids) {
+        this.dbw = dbw;
+        this.planids = planids;
+        this.tpCounts = new long[4];
+        this.dpCounts = new long[4];
+    }
+
+    /**
+     * Publishes the TaskPlans and DemandPlans of the plans.  The changes
+     * become visible when the transaction of the DbWriter is committed
+     * @param tps List of TaskPlans of the plans
+     * @param dmds List of Demands of the plans
+     * @throws SQLException if the tables cannot be read or written
+     */
+    void publish(List<TaskPlan> tps, List<Demand> dmds) throws SQLException {
+        publishTaskPlans(tps);
+        publishDemandPlans(dmds);
+    }
+
+    private void publishTaskPlans(List<TaskPlan> tps) throws SQLException {
+
+        // Stored rows by key; a key may (in theory) occur more than once
+        Map<String, Deque<Object[]>> stored = new HashMap<String, Deque<Object[]>>();
+        try (PreparedStatement ps = this.dbw.prepareForPlans(
+                 "select taskplanid, planid, skuid, taskid, demandid, workorderid," +
+                 " lotid, startdate, enddate, quantity, workcenterid from taskplan",
+                 this.planids);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Integer lotid = Integer.valueOf(rs.getInt(7));
+                if (rs.wasNull()) {
+                    lotid = null;
+                }
+                String key = key(rs.getString(2), rs.getString(3), rs.getString(4),
+                                 rs.getString(5), rs.getString(6), lotid,
+                                 this.dbw.getDateTime(rs, 8));
+                Object[] row = { Long.valueOf(rs.getLong(1)), this.dbw.getDateTime(rs, 9),
+                                 Integer.valueOf(rs.getInt(10)), rs.getString(11) };
+                stored.computeIfAbsent(key, k -> new ArrayDeque<Object[]>()).add(row);
+            }
+        }
+
+        List<TaskPlan> inserts = new ArrayList<TaskPlan>();
+        try (DbWriter.Batch upd = this.dbw.batch("update taskplan set enddate = ?, quantity = ?," +
+                                                 " workcenterid = ? where taskplanid = ?")) {
+            for (TaskPlan tp : tps) {
+                ReleasedWorkOrder rwo = tp.getReleasedWorkOrder();
+                String key = key(tp.getPlan().getID(), tp.getTask().getSKU().getName(),
+                                 tp.getTask().getTaskID(),
+                                 (tp.getDemand() != null) ? tp.getDemand().getID() : null,
+                                 (rwo != null) ? rwo.getID() : null,
+                                 (rwo != null) ? rwo.getLotID(tp) : null,
+                                 tp.getStart());
+                Deque<Object[]> rows = stored.get(key);
+                Object[] row = (rows == null) ? null : rows.poll();
+                if (row == null) {
+                    inserts.add(tp);
+                    continue;
+                }
+                Integer quantity = Long.valueOf(tp.getQuantity()).intValue();
+                String wrkid = (tp.getWorkcenter() != null) ? tp.getWorkcenter().getName() : null;
+                if (tp.getEnd().equals(row[1]) && quantity.equals(row[2]) &&
+                    Objects.equals(wrkid, row[3])) {
+                    this.tpCounts[3]++;
+                    continue;
+                }
+                upd.setDateTime(1, tp.getEnd());
+                upd.setInt(2, quantity);
+                upd.setString(3, wrkid);
+                upd.setLong(4, (Long) row[0]);
+                upd.addRow();
+            }
+            this.tpCounts[1] = upd.getRows();
+        }
+
+        try (DbWriter.Batch del = this.dbw.batch("delete from taskplan where taskplanid = ?")) {
+            for (Deque<Object[]> rows : stored.values()) {
+                for (Object[] row : rows) {
+                    del.setLong(1, (Long) row[0]);
+                    del.addRow();
+                }
+            }
+            this.tpCounts[2] = del.getRows();
+        }
+
+        try (DbWriter.Insert ins = this.dbw.insert("taskplan", "planid", "demandid",
+                                                   "skuid", "taskid", "startdate",
+                                                   "enddate", "quantity", "workcenterid",
+                                                   "workorderid", "lotid")) {
+            for (TaskPlan tp : inserts) {
+                ReleasedWorkOrder rwo = tp.getReleasedWorkOrder();
+                ins.setString(1, tp.getPlan().getID());
+                ins.setString(2, (tp.getDemand() != null) ? tp.getDemand().getID() : null);
+                ins.setString(3, tp.getTask().getSKU().getName());
+                ins.setString(4, tp.getTask().getTaskID());
+                ins.setDateTime(5, tp.getStart());
+                ins.setDateTime(6, tp.getEnd());
+                ins.setInt(7, Long.valueOf(tp.getQuantity()).intValue());
+                ins.setString(8, (tp.getWorkcenter() != null) ? tp.getWorkcenter().getName() : null);
+                ins.setString(9, (rwo != null) ? rwo.getID() : null);
+                ins.setInt(10, (rwo != null) ? rwo.getLotID(tp) : null);
+                ins.addRow();
+            }
+        }
+        this.tpCounts[0] = inserts.size();
+    }
+
+    private void publishDemandPlans(List<Demand> dmds) throws SQLException {
+
+        Map<String, Object[]> stored = new HashMap<String, Object[]>();
+        try (PreparedStatement ps = this.dbw.prepareForPlans(
+                 "select planid, demandid, plandate, planquantity from demandplan",
+                 this.planids);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Object[] row = { rs.getString(1), rs.getString(2),
+                                 this.dbw.getDateTime(rs, 3), Integer.valueOf(rs.getInt(4)) };
+                stored.put(rs.getString(1) + SEP + rs.getString(2), row);
+            }
+        }
+
+        List<Demand> inserts = new ArrayList<Demand>();
+        try (DbWriter.Batch upd = this.dbw.batch("update demandplan set plandate = ?, planquantity = ?" +
+                                                 " where planid = ? and demandid = ?")) {
+            for (Demand dmd : dmds) {
+                Object[] row = stored.remove(dmd.getPlan().getID() + SEP + dmd.getID());
+                if (row == null) {
+                    inserts.add(dmd);
+                    continue;
+                }
+                Integer quantity = Long.valueOf(dmd.getPlanQuantity()).intValue();
+                if (Objects.equals(dmd.getPlanDate(), row[2]) && quantity.equals(row[3])) {
+                    this.dpCounts[3]++;
+                    continue;
+                }
+                upd.setDateTime(1, dmd.getPlanDate());
+                upd.setInt(2, quantity);
+                upd.setString(3, dmd.getPlan().getID());
+                upd.setString(4, dmd.getID());
+                upd.addRow();
+            }
+            this.dpCounts[1] = upd.getRows();
+        }
+
+        try (DbWriter.Batch del = this.dbw.batch("delete from demandplan" +
+                                                 " where planid = ? and demandid = ?")) {
+            for (Object[] row : stored.values()) {
+                del.setString(1, (String) row[0]);
+                del.setString(2, (String) row[1]);
+                del.addRow();
+            }
+            this.dpCounts[2] = del.getRows();
+        }
+
+        try (DbWriter.Insert ins = this.dbw.insert("demandplan", "planid", "demandid",
+                                                   "plandate", "planquantity")) {
+            for (Demand dmd : inserts) {
+                ins.setString(1, dmd.getPlan().getID());
+                ins.setString(2, dmd.getID());
+                ins.setDateTime(3, dmd.getPlanDate());
+                ins.setInt(4, Long.valueOf(dmd.getPlanQuantity()).intValue());
+                ins.addRow();
+            }
+        }
+        this.dpCounts[0] = inserts.size();
+    }
+
+    private static String key(String planid, String skuid, String taskid, String demandid,
+                              String workorderid, Integer lotid, LocalDateTime start) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(planid).append(SEP).append(skuid).append(SEP).append(taskid).append(SEP)
+          .append((demandid == null) ? NULL : demandid).append(SEP)
+          .append((workorderid == null) ? NULL : workorderid).append(SEP)
+          .append((lotid == null) ? NULL : lotid.toString()).append(SEP);
+        return DateTimeCodec.appendISO(sb, start).toString();
+    }
+
+    /**
+     * Returns the number of rows changed by the publish
+     * @return String representation of the rows inserted, updated,
+     *         deleted and unchanged in each table
+     */
+    @Override
+    public String toString() {
+        return "taskplan: " + counts(this.tpCounts) + "; demandplan: " + counts(this.dpCounts);
+    }
+
+    private static String counts(long[] c) {
+        return c[0] + " inserted, " + c[1] + " updated, " + c[2] + " deleted, " +
+               c[3] + " unchanged";
+    }
+}
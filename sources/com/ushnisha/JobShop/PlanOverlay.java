@@ -0,0 +1,135 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The planning state of a single Plan, kept apart from the (static)
+ * model that is shared by all the plans: the TaskPlans of each Task and
+ * Workcenter and the load index of each Workcenter.  Since the
+ * model itself is not modified while planning, several plans may be
+ * generated concurrently, each on its own overlay.
+ *
+ * The maps of the overlay are safe for concurrent use, so that the
+ * partitions of a Plan may also be planned in parallel; the lists of a
+ * Task or Workcenter are only ever modified by the thread planning its
+ * partition.
+ *
+ * Each Workcenter has a version that is incremented whenever a TaskPlan
+ * is added to its loads, so that a request evaluated speculatively can
+ * cheaply check that the loads it has seen are still current.  Such
+ * requests are evaluated under the read lock of the overlay and committed
+ * under its write lock.
+ */
+class PlanOverlay {
+
+    private final Map<Task, List<TaskPlan>> taskplans;
+    private final Map<Workcenter, List<TaskPlan>> workcenterplans;
+    private final Map<Workcenter, TaskPlanIndex> loads;
+    private final Map<Workcenter, Long> versions;
+    private final ReadWriteLock lock;
+
+    /**
+     * Constructor for an empty PlanOverlay
+     */
+    PlanOverlay() {
+        this.taskplans = new ConcurrentHashMap<Task, List<TaskPlan>>();
+        this.workcenterplans = new ConcurrentHashMap<Workcenter, List<TaskPlan>>();
+        this.loads = new ConcurrentHashMap<Workcenter, TaskPlanIndex>();
+        this.versions = new ConcurrentHashMap<Workcenter, Long>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Add a TaskPlan to the TaskPlans of its Task and, if it loads a
+     * Workcenter, to the TaskPlans and load index of the Workcenter
+     * @param tp TaskPlan that must be added
+     */
+    void addTaskPlan(TaskPlan tp) {
+        this.taskplans.computeIfAbsent(tp.getTask(), t -> new ArrayList<TaskPlan>())
+                      .add(tp);
+        Workcenter w = tp.getWorkcenter();
+        if (w != null) {
+            this.workcenterplans.computeIfAbsent(w, k -> new ArrayList<TaskPlan>())
+                                .add(tp);
+            getLoads(w).add(tp);
+            this.versions.merge(w, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Returns the TaskPlans of a Task in this plan
+     * @param t Task whose TaskPlans are returned
+     * @return List<TaskPlan> of the Task in the order they were added
+     */
+    List<TaskPlan> getTaskPlans(Task t) {
+        return this.taskplans.getOrDefault(t, Collections.emptyList());
+    }
+
+    /**
+     * Returns the TaskPlans that load a Workcenter in this plan
+     * @param w Workcenter whose TaskPlans are returned
+     * @return List<TaskPlan> of the Workcenter in the order they were added
+     */
+    List<TaskPlan> getTaskPlans(Workcenter w) {
+        return this.workcenterplans.getOrDefault(w, Collections.emptyList());
+    }
+
+    /**
+     * Returns the load index of a Workcenter in this plan
+     * @param w Workcenter whose loads are returned
+     * @return TaskPlanIndex of the busy spans of the Workcenter
+     */
+    TaskPlanIndex getLoads(Workcenter w) {
+        return this.loads.computeIfAbsent(w, k -> new TaskPlanIndex());
+    }
+
+    /**
+     * Returns the version of the loads of a Workcenter in this plan
+     * @param w Workcenter whose version is returned
+     * @return long value that changes whenever a TaskPlan loads the Workcenter
+     */
+    long getVersion(Workcenter w) {
+        return this.versions.getOrDefault(w, 0L);
+    }
+
+    /**
+     * Returns the lock that guards the overlay (and the ReleasedWorkOrders
+     * of the plan) when requests are evaluated speculatively
+     * @return ReadWriteLock of the overlay
+     */
+    ReadWriteLock getLock() {
+        return this.lock;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pending changes of a single request (the planning of a Demand)
+ * against a Plan.  While a request is evaluated, the TaskPlans it creates
+ * and the ReleasedWorkOrder quantities it allocates are only recorded in
+ * the context; the workcenter loads seen by the request are those of the
+ * plan together with the TaskPlans pending in the context.  The changes
+ * are applied to the plan (and the work orders) in one step by commit(),
+ * so a request may be evaluated without side effects and simply dropped.
+ *
+ * The context also records the version of the loads of each workcenter
+ * (and the version of each ReleasedWorkOrder) that the request has read;
+ * if none of them has changed when the context is committed, the request
+ * would be evaluated in exactly the same way against the current plan.
+ *
+ * A context is used by a single thread.
+ */
+class PlanningContext {
+
+    private final Plan plan;
+    private final List<TaskPlan> taskplans;
+    private final Map<Workcenter, TaskPlanIndex> loads;
+    private final Map<ReleasedWorkOrder, ReleasedWorkOrder.Allocation> allocations;
+    private final Map<Workcenter, Long> readVersions;
+
+    /**
+     * Constructor for an empty PlanningContext
+     * @param p Plan against which requests are evaluated
+     */
+    PlanningContext(Plan p) {
+        this.plan = p;
+        this.taskplans = new ArrayList<TaskPlan>();
+        this.loads = new HashMap<Workcenter, TaskPlanIndex>();
+        this.allocations = new LinkedHashMap<ReleasedWorkOrder, ReleasedWorkOrder.Allocation>();
+        this.readVersions = new HashMap<Workcenter, Long>();
+    }
+
+    /**
+     * Returns the Plan against which requests are evaluated
+     * @return Plan of this context
+     */
+    Plan getPlan() {
+        return this.plan;
+    }
+
+    /**
+     * Record a TaskPlan created by the request; the TaskPlan loads its
+     * workcenter (for the rest of the request) immediately
+     * @param tp TaskPlan that must be added to the plan on commit
+     */
+    void addTaskPlan(TaskPlan tp) {
+        this.taskplans.add(tp);
+        Workcenter w = tp.getWorkcenter();
+        if (w != null) {
+            this.loads.computeIfAbsent(w, k -> new TaskPlanIndex()).add(tp);
+        }
+    }
+
+    /**
+     * Returns the TaskPlans created by the request so far
+     * @return List<TaskPlan> in the order in which they were created
+     */
+    List<TaskPlan> getTaskPlans() {
+        return this.taskplans;
+    }
+
+    /**
+     * Returns the pending allocation of a ReleasedWorkOrder, starting from
+     * its current (committed) state the first time it is requested
+     * @param rwo ReleasedWorkOrder that is being allocated
+     * @return ReleasedWorkOrder.Allocation of the work order in this context
+     */
+    ReleasedWorkOrder.Allocation getAllocation(ReleasedWorkOrder rwo) {
+        return this.allocations.computeIfAbsent(rwo, ReleasedWorkOrder::allocate);
+    }
+
+    /**
+     * Finds the earliest start date of the spans loaded on a workcenter
+     * (in the plan or pending in this context) that intersect a DateRange
+     * @param w Workcenter whose loads are searched
+     * @param dr DateRange with which the spans must intersect
+     * @return LocalDateTime of the earliest start; null if none intersects
+     */
+    LocalDateTime firstConflictStart(Workcenter w, DateRange dr) {
+        read(w);
+        LocalDateTime st = this.plan.getOverlay().getLoads(w).firstConflictStart(dr);
+        TaskPlanIndex pending = this.loads.get(w);
+        if (pending != null) {
+            LocalDateTime pst = pending.firstConflictStart(dr);
+            if (st == null || (pst != null && pst.isBefore(st))) {
+                st = pst;
+            }
+        }
+        return st;
+    }
+
+    /**
+     * Finds the latest end date of the spans loaded on a workcenter
+     * (in the plan or pending in this context) that intersect a DateRange
+     * @param w Workcenter whose loads are searched
+     * @param dr DateRange with which the spans must intersect
+     * @return LocalDateTime of the latest end; null if none intersects
+     */
+    LocalDateTime lastConflictEnd(Workcenter w, DateRange dr) {
+        read(w);
+        LocalDateTime en = this.plan.getOverlay().getLoads(w).lastConflictEnd(dr);
+        TaskPlanIndex pending = this.loads.get(w);
+        if (pending != null) {
+            en = later(en, pending.lastConflictEnd(dr));
+        }
+        return en;
+    }
+
+    /**
+     * Returns the latest end date of all the spans loaded on a workcenter
+     * (in the plan or pending in this context)
+     * @param w Workcenter whose loads are searched
+     * @return LocalDateTime of the latest end; null if there are no loads
+     */
+    LocalDateTime getLatestEnd(Workcenter w) {
+        read(w);
+        LocalDateTime en = this.plan.getOverlay().getLoads(w).getLatestEnd();
+        TaskPlanIndex pending = this.loads.get(w);
+        if (pending != null) {
+            en = later(en, pending.getLatestEnd());
+        }
+        return en;
+    }
+
+    private void read(Workcenter w) {
+        if (!this.readVersions.containsKey(w)) {
+            this.readVersions.put(w, this.plan.getOverlay().getVersion(w));
+        }
+    }
+
+    /**
+     * Checks that the loads of the workcenters and the ReleasedWorkOrders
+     * read by the request have not changed since they were read
+     * @return boolean value that is true if the request is still current
+     */
+    boolean isCurrent() {
+        PlanOverlay overlay = this.plan.getOverlay();
+        for (Map.Entry<Workcenter, Long> e : this.readVersions.entrySet()) {
+            if (overlay.getVersion(e.getKey()) != e.getValue().longValue()) {
+                return false;
+            }
+        }
+        for (ReleasedWorkOrder.Allocation a : this.allocations.values()) {
+            if (!a.isCurrent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of workcenters whose loads were read by the request
+     * @return int value representing the number of workcenters read
+     */
+    int getReadCount() {
+        return this.readVersions.size();
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null || (b != null && b.isAfter(a))) {
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Apply the pending work order allocations, leaving the pending
+     * TaskPlans in the context (to be added to the plan by commit())
+     */
+    void commitAllocations() {
+        for (ReleasedWorkOrder.Allocation a : this.allocations.values()) {
+            a.commit();
+        }
+        this.allocations.clear();
+    }
+
+    /**
+     * Apply the pending work order allocations and add the pending
+     * TaskPlans (in the order they were created) to the plan.  The
+     * context is empty afterwards
+     */
+    void commit() {
+        commitAllocations();
+        PlanOverlay overlay = this.plan.getOverlay();
+        for (TaskPlan tp : this.taskplans) {
+            overlay.addTaskPlan(tp);
+        }
+        this.taskplans.clear();
+        this.loads.clear();
+        this.readVersions.clear();
+    }
+}
@@ -51,6 +51,7 @@ class ReleasedWorkOrder implements Partitionable {
     private int partitionid;
     private List<TaskPlan> allocated_taskplans;
     private Map<TaskPlan, Integer> workorder_lots;
+    private int version;
     
     /**
      * Constructor for the ReleasedWorkOrder object
@@ -77,17 +78,17 @@ class ReleasedWorkOrder implements Partitionable {
         this.demand = dmd;
         this.allocated_taskplans = new ArrayList<TaskPlan>();
         this.workorder_lots = new HashMap<TaskPlan, Integer>();
+        this.version = 0;
         
         // Create Original UnPegged TaskPlan corresponding to the ReleasedWorkOrder
         //
         this.taskplan = new TaskPlan(t, p, w, st, en, qty, this);
         this.workorder_lots.put(this.taskplan, this.lotid);
         
-        // Add TaskPlan to all relevant "owners"
+        // Add TaskPlan to all relevant "owners" (in the overlay of the plan)
         //
-        t.addTaskPlan(this.taskplan);
-        if (w != null) { 
-            w.addTaskPlan(this.taskplan);
+        if (p != null) {
+            p.getOverlay().addTaskPlan(this.taskplan);
         }
     }
     
@@ -95,16 +96,17 @@ class ReleasedWorkOrder implements Partitionable {
      * Function called by a Task or of the same type as this ReleasedWorkOrder
      * for a certain quanity of the sku by a certain time.
      * Returns a Promise based on available unallocated quantity of 
-     * this ReleasedWorkOrder.
+     * this ReleasedWorkOrder.  The allocation is only recorded in the
+     * PlanningContext of the request until the context is committed
      * @param req Request that is made by the downstream Task or Demand
+     * @param ctx PlanningContext in which the request is evaluated
      * @return Promise that is the response to the input request, req
      */
-    Promise request(Request req) {
+    Promise request(Request req, PlanningContext ctx) {
         
         Demand dmd = req.getDemand();
         long reqQty = req.getQuantity();
-        LocalDateTime due = req.getDate();
-        Plan p = req.getPlan();
+        Allocation alloc = ctx.getAllocation(this);
 
         List<TaskPlan> tps = new ArrayList<TaskPlan>();
 
@@ -112,35 +114,32 @@ class ReleasedWorkOrder implements Partitionable {
         // assign ReleasedWorkOrder taskplan entirely to this request/demand
         // and return
         if (this.demand == dmd) {
-            this.allocated_taskplans.add(this.taskplan);
-            tps.add(this.taskplan);
-            this.taskplan = null;            
+            alloc.allocated.add(alloc.taskplan);
+            tps.add(alloc.taskplan);
+            alloc.taskplan = null;
         }
         // Else handle null case
         else if (this.demand == null) {
-            long availQty = this.taskplan != null ? this.taskplan.getQuantity() : 0L;
+            long availQty = alloc.taskplan != null ? alloc.available : 0L;
             long promiseQty = availQty >= reqQty ? reqQty : availQty;
             if (promiseQty > 0) {
                 long remQty = availQty - promiseQty;
                 if (remQty == 0) {
-                    this.allocated_taskplans.add(this.taskplan);
-                    tps.add(this.taskplan);
-                    this.taskplan.setDemand(dmd);
-                    this.taskplan = null;
+                    alloc.allocated.add(alloc.taskplan);
+                    tps.add(alloc.taskplan);
+                    alloc.peg(alloc.taskplan, dmd);
+                    alloc.taskplan = null;
                 }
                 else {
-                    this.taskplan.setQuantity(remQty);
+                    alloc.available = remQty;
                     TaskPlan tp = new TaskPlan(this.task, this.plan, this.workcenter,
                                             this.start, this.end, promiseQty,
                                             dmd, this);
 
-                    this.workorder_lots.put(tp, this.getNextLotID());
-                    this.allocated_taskplans.add(tp);
+                    alloc.lots.put(tp, alloc.getNextLotID());
+                    alloc.allocated.add(tp);
                     tps.add(tp);
-                    this.task.addTaskPlan(tp);
-                    if (this.workcenter != null) {
-                        this.workcenter.addTaskPlan(tp);
-                    }
+                    ctx.addTaskPlan(tp);
                 }
             }
         }
@@ -148,6 +147,15 @@ class ReleasedWorkOrder implements Partitionable {
         return new Promise(dmd, tps);
     }
 
+    /**
+     * Start a (pending) allocation of this ReleasedWorkOrder from its
+     * current state
+     * @return Allocation of this ReleasedWorkOrder
+     */
+    Allocation allocate() {
+        return new Allocation();
+    }
+
     /**
      * A string representation of the ReleasedWorkOrder
      * @return String representing the workorderid for output/log purposes
@@ -314,4 +322,81 @@ class ReleasedWorkOrder implements Partitionable {
     public String toString() {
         return this.workorderid;
     }
+
+    /**
+     * The pending allocation of the quantity of this ReleasedWorkOrder
+     * within a PlanningContext: the unallocated TaskPlan (and its
+     * quantity), the TaskPlans allocated to requests and their lot ids.
+     * The state of the ReleasedWorkOrder (and of its unallocated TaskPlan)
+     * is only updated when the allocation is committed
+     */
+    class Allocation {
+
+        private final int version;
+        private final TaskPlan original;
+        private TaskPlan taskplan;
+        private long available;
+        private TaskPlan pegged;
+        private Demand peggedTo;
+        private final List<TaskPlan> allocated;
+        private final Map<TaskPlan, Integer> lots;
+
+        private Allocation() {
+            ReleasedWorkOrder rwo = ReleasedWorkOrder.this;
+            this.version = rwo.version;
+            this.original = rwo.taskplan;
+            this.taskplan = rwo.taskplan;
+            this.available = (rwo.taskplan != null) ? rwo.taskplan.getQuantity() : 0L;
+            this.pegged = null;
+            this.peggedTo = null;
+            this.allocated = new ArrayList<TaskPlan>();
+            this.lots = new HashMap<TaskPlan, Integer>();
+        }
+
+        /**
+         * Record that the (entire) unallocated TaskPlan is pegged to a demand
+         */
+        private void peg(TaskPlan tp, Demand dmd) {
+            this.pegged = tp;
+            this.peggedTo = dmd;
+        }
+
+        /**
+         * Returns the next lotID, accounting for the lots allocated so far
+         */
+        private Integer getNextLotID() {
+            Integer next = ReleasedWorkOrder.this.getNextLotID();
+            for (Integer l : this.lots.values()) {
+                if (l >= next) {
+                    next = l + 1;
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Checks that the ReleasedWorkOrder has not been allocated since
+         * this allocation was started
+         */
+        boolean isCurrent() {
+            return this.version == ReleasedWorkOrder.this.version;
+        }
+
+        /**
+         * Apply the allocation to the ReleasedWorkOrder
+         */
+        void commit() {
+            ReleasedWorkOrder rwo = ReleasedWorkOrder.this;
+            rwo.version++;
+            if (this.pegged != null) {
+                this.pegged.setDemand(this.peggedTo);
+            }
+            if (this.original != null && this.original.getQuantity() != this.available) {
+                this.original.setQuantity(this.available);
+            }
+            rwo.taskplan = this.taskplan;
+            rwo.allocated_taskplans.addAll(this.allocated);
+            rwo.workorder_lots.putAll(this.lots);
+        }
+    }
 }
@@ -62,6 +62,14 @@ class SKU implements Partitionable {
         return this.delivery_task;
     }
 
+    /**
+     * Returns the description of this SKU
+     * @return String that is the description of this SKU
+     */
+    String getDescription() {
+        return this.description;
+    }
+
     /**
      * returns the partitionid of the SKU
      * @return int value that represents the partitionid of the SKU.
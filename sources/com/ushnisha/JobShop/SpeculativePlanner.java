@@ -0,0 +1,204 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Plans a list of demands (in priority order) optimistically: worker
+ * threads evaluate the requests of the next demands of a window of up to
+ * K demands against the current state of the plan, while the demands are
+ * committed one at a time in priority order.  A demand is only committed
+ * as evaluated if none of the workcenter loads (and ReleasedWorkOrders) it
+ * read have changed since; otherwise it is planned again against the
+ * current plan.  The result is therefore identical to planning the demands
+ * sequentially, while demands that touch disjoint workcenters are planned
+ * concurrently.
+ *
+ * Requests are evaluated under the read lock of the overlay of the plan
+ * and committed under its write lock.  A SpeculativePlanner may be used
+ * by several threads at once (for example, one per partition).
+ */
+class SpeculativePlanner {
+
+    private final int window;
+    private final int threads;
+    private final ExecutorService pool;
+    private final AtomicLong demands;
+    private final AtomicLong replanned;
+    private final AtomicLong elapsed;
+
+    /**
+     * Constructor for a SpeculativePlanner
+     * @param window int value representing the number of demands that
+     *               may be evaluated ahead of the demand being committed
+     * @param threads int value representing the number of worker threads
+     */
+    SpeculativePlanner(int window, int threads) {
+        this.window = Math.max(1, window);
+        this.threads = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.threads,
+                        r -> {
+                            Thread t = new Thread(r, "jobshop-speculator-" +
+                                                     counter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        this.demands = new AtomicLong();
+        this.replanned = new AtomicLong();
+        this.elapsed = new AtomicLong();
+    }
+
+    /**
+     * Plans a list of demands of the same plan
+     * @param dmds List of Demands in the order in which they must be planned
+     */
+    void plan(List<Demand> dmds) {
+
+        if (dmds.isEmpty()) {
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        ReadWriteLock lock = dmds.get(0).getPlan().getOverlay().getLock();
+        Deque<Future<Speculation>> pending = new ArrayDeque<Future<Speculation>>();
+        int next = 0;
+
+        try {
+            while (next < dmds.size() && pending.size() < this.window) {
+                pending.add(submit(dmds.get(next++), lock));
+            }
+
+            while (!pending.isEmpty()) {
+                Speculation s = await(pending.poll());
+
+                Lock w = lock.writeLock();
+                w.lock();
+                try {
+                    if (!s.ctx.isCurrent()) {
+                        this.replanned.incrementAndGet();
+                        s = new Speculation(s.demand);
+                    }
+                    s.demand.commit(s.ctx, s.promise);
+                }
+                finally {
+                    w.unlock();
+                }
+                this.demands.incrementAndGet();
+
+                if (next < dmds.size()) {
+                    pending.add(submit(dmds.get(next++), lock));
+                }
+            }
+        }
+        finally {
+            for (Future<Speculation> f : pending) {
+                f.cancel(false);
+            }
+            this.elapsed.addAndGet(System.nanoTime() - t0);
+        }
+    }
+
+    private Future<Speculation> submit(Demand d, ReadWriteLock lock) {
+        return this.pool.submit(() -> {
+            Lock r = lock.readLock();
+            r.lock();
+            try {
+                return new Speculation(d);
+            }
+            finally {
+                r.unlock();
+            }
+        });
+    }
+
+    private static Speculation await(Future<Speculation> f) {
+        try {
+            return f.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while planning demands", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    void close() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Returns the number of demands planned, the number of demands that
+     * had to be planned again and the time spent planning
+     * @return String representing the planning statistics for log purposes
+     */
+    public String toString() {
+        return this.demands.get() + " demands; " + this.replanned.get() +
+               " replanned; window: " + this.window + "; " +
+               this.elapsed.get() / 1000000 + " ms (" + this.threads +
+               (this.threads == 1 ? " thread)" : " threads)");
+    }
+
+    /**
+     * The evaluated (but not committed) request of a demand
+     */
+    private static class Speculation {
+
+        private final Demand demand;
+        private final PlanningContext ctx;
+        private final Promise promise;
+
+        Speculation(Demand d) {
+            this.demand = d;
+            this.ctx = new PlanningContext(d.getPlan());
+            this.promise = d.request(this.ctx);
+        }
+    }
+}
@@ -48,6 +48,16 @@ import static com.ushnisha.JobShop.JobShop.LOG;
  */
 class Task implements Partitionable {
 
+    /**
+     * Order in which the workcenters of a task are tried: by priority and,
+     * for workcenters of equal priority, in reverse order of their names.
+     * The tie-break keeps plans independent of hash map iteration order
+     * (it reproduces reference result tests/expects/test0020.expect.1)
+     */
+    private static final Comparator<Map.Entry<Workcenter, Integer>> WORKCENTER_PREFERENCE =
+        Map.Entry.<Workcenter, Integer>comparingByValue()
+                 .thenComparing(e -> e.getKey().getName(), Comparator.reverseOrder());
+
     private String taskNum;
     private String taskid;
     private SKU sku;
@@ -59,9 +69,7 @@ class Task implements Partitionable {
     private long min_lot_size;
     private long max_lot_size;
     private int partitionid;
-    private Workcenter workcenter;
     private Map<Workcenter, Integer> workcenters;
-    private List<TaskPlan> plans;
     private List<ReleasedWorkOrder> relworkorders;
 
     private Map<Demand, LocalDateTime> EPST;
@@ -95,9 +103,7 @@ class Task implements Partitionable {
 
         this.taskNum = this.sku.getName() + "-" + this.taskid;
         this.level = 0;
-        this.workcenter = null;
         this.workcenters = new HashMap<Workcenter, Integer>();
-        this.plans = new ArrayList<TaskPlan>();
         this.relworkorders = new ArrayList<ReleasedWorkOrder>();
 
         this.EPST = new HashMap<Demand, LocalDateTime>();
@@ -231,11 +237,13 @@ class Task implements Partitionable {
     }
 
     /**
-     * Returns the list of TaskPlans planned for this Task
-     * @return List<TaskPlan> associated with this Task
+     * Get the priority of a workcenter associated with this task
+     * @param w Workcenter associated with this task
+     * @return Integer value representing the priority of the workcenter;
+     *         null if the workcenter is not associated with this task
      */
-    List<TaskPlan> getTaskPlans() {
-        return this.plans;
+    Integer getWorkcenterPriority(Workcenter w) {
+        return this.workcenters.get(w);
     }
 
     /**
@@ -246,17 +254,7 @@ class Task implements Partitionable {
      *
      */
     List<TaskPlan> getTaskPlans(Plan p) {
-        return this.plans.stream()
-               .filter(t -> t.getPlan().equals(p))
-               .collect(Collectors.toList());
-    }
-
-    /**
-     * Associate a TaskPlan with this Task
-     * @param tp TaskPlan that is associated with this Task
-     */
-    void addTaskPlan(TaskPlan tp) {
-        this.plans.add(tp);
+        return p.getOverlay().getTaskPlans(this);
     }
 
     /**
@@ -267,39 +265,50 @@ class Task implements Partitionable {
      *            for the TaskPlan
      * @param enddate LocalDateTime representing the date on or before
      *                which we want the TaskPlan to end
-     * @param p Plan under whose PlanParams constraints we want the
-     *          Workcenter to try to schedule the TaskPlan
-     * @return DateRange value that represents the start and end dates
-     *         of the TaskPlan as per Workcenter availability
+     * @param ctx PlanningContext of the request; the PlanParams of its
+     *          Plan constrain how the Workcenter schedules the TaskPlan
+     * @return Placement value that represents the Workcenter and the start
+     *         and end dates of the TaskPlan as per Workcenter availability;
+     *         null if none of the workcenters has a free slot for it
      */
-    private DateRange queryWorkcentersForEndBefore(long qty, LocalDateTime enddate, Plan p) {
+    private Placement queryWorkcentersForEndBefore(long qty, LocalDateTime enddate, PlanningContext ctx) {
 
+        Plan p = ctx.getPlan();
         long baseLT = getBaseLT(qty);
-        DateRange res_DateRange = new DateRange(LocalDateTime.MIN, LocalDateTime.MAX);
+        Placement res_Placement = new Placement(null, new DateRange(LocalDateTime.MIN, LocalDateTime.MAX));
         boolean capacity_constrained = Boolean.parseBoolean(p.getParam("RESOURCE_CONSTRAINED"));
 
         List<Workcenter> wrks = this.workcenters.entrySet().stream()
-                                .sorted(Map.Entry.comparingByValue())
+                                .sorted(WORKCENTER_PREFERENCE)
                                 .map(Map.Entry::getKey)
                                 .collect(Collectors.toList());
 
-        JobShop.LOG("Task: " + this.taskNum +
-                    "; querying workcenter for END ON OR BEFORE " + enddate,
-                    DEBUG_LEVELS.DETAILED);
+        JobShop.LOG(() -> "Task: " + this.taskNum +
+                          "; querying workcenter for END ON OR BEFORE " + enddate,
+                          DEBUG_LEVELS.DETAILED);
 
         if (!capacity_constrained) {
-            this.workcenter = wrks.get(0);
-            res_DateRange = this.workcenter.queryEndBefore(enddate, baseLT, p);
+            res_Placement = new Placement(wrks.get(0), wrks.get(0).queryEndBefore(enddate, baseLT, ctx));
         }
         else {
 
             Map<Workcenter,DateRange> wrkDRs = new HashMap<Workcenter,DateRange>();
 
             for (Workcenter w : wrks) {
-                DateRange dr = w.queryEndBefore(enddate, baseLT, p);
-                wrkDRs.put(w, dr);
-                JobShop.LOG(this.workcenters.get(w) + ": " + w.getName() + ": " + dr,
-                            DEBUG_LEVELS.DETAILED);
+                DateRange dr = w.queryEndBefore(enddate, baseLT, ctx);
+                JobShop.LOG(() -> this.workcenters.get(w) + ": " + w.getName() + ": " + dr,
+                                  DEBUG_LEVELS.DETAILED);
+                if (dr != null) {
+                    wrkDRs.put(w, dr);
+                }
+            }
+
+            // Only the workcenters with a free slot can load the TaskPlan
+            wrks = wrks.stream()
+                       .filter(wrkDRs::containsKey)
+                       .collect(Collectors.toList());
+            if (wrks.isEmpty()) {
+                return null;
             }
 
             // First check in order of preferred workcenters to see if any of them
@@ -310,8 +319,7 @@ class Task implements Partitionable {
             for (Workcenter w : wrks) {
                 if (wrkDRs.get(w).getEnd().compareTo(enddate) == 0) {
                     JobShop.LOG("Found exact date match", DEBUG_LEVELS.DETAILED);
-                    this.workcenter = w;
-                    return wrkDRs.get(w);
+                    return new Placement(w, wrkDRs.get(w));
                 }
             }
 
@@ -327,9 +335,9 @@ class Task implements Partitionable {
                 if (wrkDRs.get(w).getEnd().compareTo(enddate) < 0) {
                     long diff = enddate.until(wrkDRs.get(w).getEnd(), ChronoUnit.MINUTES);
 
-                    JobShop.LOG(this.workcenters.get(w) + ": " + w.getName() +
-                                ": " + wrkDRs.get(w) + ", " + diff,
-                                DEBUG_LEVELS.DETAILED);
+                    JobShop.LOG(() -> this.workcenters.get(w) + ": " + w.getName() +
+                                      ": " + wrkDRs.get(w) + ", " + diff,
+                                      DEBUG_LEVELS.DETAILED);
 
                     if (diff > delta) {
                         found = true;
@@ -341,8 +349,7 @@ class Task implements Partitionable {
             }
 
             if (found) {
-                this.workcenter = bestWrk;
-                return wrkDRs.get(bestWrk);
+                return new Placement(bestWrk, wrkDRs.get(bestWrk));
             }
 
             // If no workcenter can return a data earlier than the exact enddate
@@ -355,9 +362,9 @@ class Task implements Partitionable {
                 if (wrkDRs.get(w).getEnd().compareTo(enddate) > 0) {
                     long diff = enddate.until(wrkDRs.get(w).getEnd(), ChronoUnit.MINUTES);
 
-                    JobShop.LOG(this.workcenters.get(w) + ": " + w.getName() +
-                                ": " + wrkDRs.get(w) + ", " + diff,
-                                DEBUG_LEVELS.DETAILED);
+                    JobShop.LOG(() -> this.workcenters.get(w) + ": " + w.getName() +
+                                      ": " + wrkDRs.get(w) + ", " + diff,
+                                      DEBUG_LEVELS.DETAILED);
 
                     if (diff < delta) {
                         found = true;
@@ -369,12 +376,11 @@ class Task implements Partitionable {
             }
 
             if (found) {
-                this.workcenter = bestWrk;
-                return wrkDRs.get(bestWrk);
+                return new Placement(bestWrk, wrkDRs.get(bestWrk));
             }
         }
 
-        return res_DateRange;
+        return res_Placement;
     }
 
     /**
@@ -385,39 +391,54 @@ class Task implements Partitionable {
      *            for the TaskPlan
      * @param startdate LocalDateTime representing the date on or after
      *                  which we want the TaskPlan to end
-     * @param p Plan under whose PlanParams constraints we want the
-     *          Workcenter to try to schedule the TaskPlan
-     * @return DateRange value that represents the start and end dates
-     *         of the TaskPlan as per Workcenter availability
+     * @param ctx PlanningContext of the request; the PlanParams of its
+     *          Plan constrain how the Workcenter schedules the TaskPlan
+     * @param fallback Workcenter of the Placement returned if none of the
+     *                 workcenters can place the TaskPlan (the workcenter
+     *                 chosen by the END ON OR BEFORE query of the request)
+     * @return Placement value that represents the Workcenter and the start
+     *         and end dates of the TaskPlan as per Workcenter availability;
+     *         null if none of the workcenters has a free slot for it
      */
-    private DateRange queryWorkcentersForStartAfter(long qty, LocalDateTime startdate, Plan p) {
+    private Placement queryWorkcentersForStartAfter(long qty, LocalDateTime startdate,
+                                                    PlanningContext ctx, Workcenter fallback) {
 
+        Plan p = ctx.getPlan();
         long baseLT = getBaseLT(qty);
-        DateRange res_DateRange = new DateRange(LocalDateTime.MIN, LocalDateTime.MAX);
+        Placement res_Placement = new Placement(fallback, new DateRange(LocalDateTime.MIN, LocalDateTime.MAX));
         boolean capacity_constrained = Boolean.parseBoolean(p.getParam("RESOURCE_CONSTRAINED"));
 
         List<Workcenter> wrks = this.workcenters.entrySet().stream()
-                                .sorted(Map.Entry.comparingByValue())
+                                .sorted(WORKCENTER_PREFERENCE)
                                 .map(Map.Entry::getKey)
                                 .collect(Collectors.toList());
 
-        JobShop.LOG("Task: " + this.taskNum +
-                    "; querying workcenter for START ON OR AFTER " + startdate,
-                    DEBUG_LEVELS.DETAILED);
+        JobShop.LOG(() -> "Task: " + this.taskNum +
+                          "; querying workcenter for START ON OR AFTER " + startdate,
+                          DEBUG_LEVELS.DETAILED);
 
         if (!capacity_constrained) {
-            this.workcenter = wrks.get(0);
-            res_DateRange = this.workcenter.queryStartAfter(startdate, baseLT, p);
+            res_Placement = new Placement(wrks.get(0), wrks.get(0).queryStartAfter(startdate, baseLT, ctx));
         }
         else {
 
             Map<Workcenter,DateRange> wrkDRs = new HashMap<Workcenter,DateRange>();
 
             for (Workcenter w : wrks) {
-                DateRange dr = w.queryStartAfter(startdate, baseLT, p);
-                wrkDRs.put(w, dr);
-                JobShop.LOG(this.workcenters.get(w) + ": " + w.getName() + ": " + dr,
-                            DEBUG_LEVELS.DETAILED);
+                DateRange dr = w.queryStartAfter(startdate, baseLT, ctx);
+                JobShop.LOG(() -> this.workcenters.get(w) + ": " + w.getName() + ": " + dr,
+                                  DEBUG_LEVELS.DETAILED);
+                if (dr != null) {
+                    wrkDRs.put(w, dr);
+                }
+            }
+
+            // Only the workcenters with a free slot can load the TaskPlan
+            wrks = wrks.stream()
+                       .filter(wrkDRs::containsKey)
+                       .collect(Collectors.toList());
+            if (wrks.isEmpty()) {
+                return null;
             }
 
             // First check in order of preferred workcenters to see if any of them
@@ -428,8 +449,7 @@ class Task implements Partitionable {
             for (Workcenter w : wrks) {
                 if (wrkDRs.get(w).getStart().compareTo(startdate) == 0) {
                     JobShop.LOG("Found exact date match", DEBUG_LEVELS.DETAILED);
-                    this.workcenter = w;
-                    return wrkDRs.get(w);
+                    return new Placement(w, wrkDRs.get(w));
                 }
             }
 
@@ -454,8 +474,7 @@ class Task implements Partitionable {
             }
 
             if (found) {
-                this.workcenter = bestWrk;
-                return wrkDRs.get(bestWrk);
+                return new Placement(bestWrk, wrkDRs.get(bestWrk));
             }
 
             // If no workcenter can return a data later than the exact start
@@ -476,12 +495,11 @@ class Task implements Partitionable {
             }
 
             if (found) {
-                this.workcenter = bestWrk;
-                return wrkDRs.get(bestWrk);
+                return new Placement(bestWrk, wrkDRs.get(bestWrk));
             }
         }
 
-        return res_DateRange;
+        return res_Placement;
     }
 
 
@@ -500,11 +518,14 @@ class Task implements Partitionable {
      * Function called by a downstream Task or Demand asking for a certain
      * quanity of the sku by a certian time.
      * Returns a Promise based on resource availability and the response
-     * from its own upstream tasks (if any).
+     * from its own upstream tasks (if any).  The TaskPlans of the Promise
+     * (and any ReleasedWorkOrder allocations) are only recorded in the
+     * PlanningContext; they are added to the plan when it is committed
      * @param req Request that is made by the downstream Task or Demand
+     * @param ctx PlanningContext in which the request is evaluated
      * @return Promise that is the response to the input request, req
      */
-    Promise request(Request req) {
+    Promise request(Request req, PlanningContext ctx) {
 
         Demand dmd = req.getDemand();
         long origQty = req.getQuantity();
@@ -515,7 +536,7 @@ class Task implements Partitionable {
         List<Promise> allPromises = new ArrayList<Promise>();
 
         // First check with any ReleasedWorkOrders associated with this request
-        Promise woPromise = checkReleasedWorkOrdersForQuantity(req);
+        Promise woPromise = checkReleasedWorkOrdersForQuantity(req, ctx);
         allPromises.add(woPromise);
         for (TaskPlan tp : woPromise.getTaskPlans()) {
             remQty -= tp.getQuantity();
@@ -526,9 +547,15 @@ class Task implements Partitionable {
         }
 
         // Next check for own workcenter availability (if loading workcenter)
-        DateRange res_dateRange = null;
+        Placement res_placement = null;
         if (this.workcenters.size() > 0) {
-            res_dateRange = queryWorkcentersForEndBefore(remQty, due, p);
+            res_placement = queryWorkcentersForEndBefore(remQty, due, ctx);
+            if (res_placement == null) {
+                JobShop.LOG("Warning! Task " + this + " has no free slot on its workcenters for " +
+                            remQty + " of demand " + dmd.getID() + "; the quantity is not planned",
+                            DEBUG_LEVELS.MINIMAL);
+                return combinePromises(dmd, allPromises);
+            }
         }
         else {
             long baseLT = getBaseLT(remQty);
@@ -538,21 +565,21 @@ class Task implements Partitionable {
                 validStart = p.getStart();
                 validEnd = validStart.plusMinutes(baseLT);
             }
-            res_dateRange = new DateRange(validStart, validEnd);
+            res_placement = new Placement(null, new DateRange(validStart, validEnd));
         }
 
-        Request reqDelta = new Request(dmd, remQty, res_dateRange.getStart(), p);
+        Request reqDelta = new Request(dmd, remQty, res_placement.getStart(), p);
 
         // Propagate the request to upstream tasks (predecessors) if any
         // and plan based on upstream response.  Then send own promise
         // to downstream requesting task/demand.
         //
         if (this.pred != null) {
-            Promise promise = this.pred.request(reqDelta);
-            allPromises.add(this.plan(reqDelta, promise));
+            Promise promise = this.pred.request(reqDelta, ctx);
+            allPromises.add(this.plan(reqDelta, promise, res_placement.getWorkcenter(), ctx));
         }
         else {
-            return this.plan(reqDelta, res_dateRange);
+            return this.plan(reqDelta, res_placement, ctx);
         }
 
         return combinePromises(dmd, allPromises);
@@ -564,21 +591,20 @@ class Task implements Partitionable {
      * is no need to propagate the request upstream beyond this point.
      *
      * @param req Request that is made by the downstream Task/Demand
-     * @param dr DateRange to use for start and end of the TaskPlan being planned
+     * @param pl Placement to use for the workcenter, start and end of the
+     *           TaskPlan being planned
+     * @param ctx PlanningContext in which the TaskPlan is recorded
      * @return Promise which contains the details of the TaskPlans planned
      */
-    private Promise plan(Request req, DateRange dr) {
+    private Promise plan(Request req, Placement pl, PlanningContext ctx) {
 
-        JobShop.LOG("Planning Task: " + this.taskNum + " between " +
-                    dr.getStart() + " and " + dr.getEnd() +
-                    " on workcenter " + this.workcenter,
-                    DEBUG_LEVELS.DETAILED);
+        JobShop.LOG(() -> "Planning Task: " + this.taskNum + " between " +
+                          pl.getStart() + " and " + pl.getEnd() +
+                          " on workcenter " + pl.getWorkcenter(),
+                          DEBUG_LEVELS.DETAILED);
 
-        TaskPlan tp = new TaskPlan(this, req.getPlan(), this.workcenter, dr.getStart(), dr.getEnd(), req.getQuantity(), req.getDemand());
-        this.plans.add(tp);
-        if (this.workcenter != null) {
-            this.workcenter.addTaskPlan(tp);
-        }
+        TaskPlan tp = new TaskPlan(this, req.getPlan(), pl.getWorkcenter(), pl.getStart(), pl.getEnd(), req.getQuantity(), req.getDemand());
+        ctx.addTaskPlan(tp);
         List<TaskPlan> tps = new ArrayList<TaskPlan>();
         tps.add(tp);
         Promise p = new Promise(req.getDemand(), tps);
@@ -594,10 +620,19 @@ class Task implements Partitionable {
      * @param req Request that is made by the downstream Task/Demand
      * @param promise Promise made by the predecessor that is used to
      *        plan the TaskPlans for this Task
+     * @param fallback Workcenter chosen for the request when it was
+     *        propagated upstream (see queryWorkcentersForStartAfter)
+     * @param ctx PlanningContext in which the TaskPlan is recorded
      * @return Promise which contains the details of the TaskPlans planned
-     *         and returned to the successor Task/Demand.
+     *         and returned to the successor Task/Demand; it is empty if
+     *         none of the workcenters has a free slot for the TaskPlan.
      */
-    private Promise plan(Request req, Promise promise) {
+    private Promise plan(Request req, Promise promise, Workcenter fallback, PlanningContext ctx) {
+
+        // Nothing was planned upstream for the request
+        if (promise.getTaskPlans().isEmpty()) {
+            return new Promise(req.getDemand(), new ArrayList<TaskPlan>());
+        }
 
         long qty = 0;
         LocalDateTime start = LocalDateTime.MIN;
@@ -616,9 +651,17 @@ class Task implements Partitionable {
             qty = req.getQuantity();
         }
 
-        DateRange res_dateRange = null;
+        Placement res_placement = null;
         if (this.workcenters.size() > 0) {
-            res_dateRange = queryWorkcentersForStartAfter(qty, start, req.getPlan());
+            res_placement = queryWorkcentersForStartAfter(qty, start, ctx, fallback);
+            if (res_placement == null) {
+                // The upstream TaskPlans of the promise stay planned
+                JobShop.LOG("Warning! Task " + this + " has no free slot on its workcenters for " +
+                            qty + " of demand " + req.getDemand().getID() +
+                            "; the quantity is not planned",
+                            DEBUG_LEVELS.MINIMAL);
+                return new Promise(req.getDemand(), new ArrayList<TaskPlan>());
+            }
         }
         else {
             long baseLT = getBaseLT(qty);
@@ -628,19 +671,18 @@ class Task implements Partitionable {
                 validEnd = req.getPlan().getEnd();
                 validStart = validStart.plusMinutes(baseLT);
             }
-            res_dateRange = new DateRange(validStart, validEnd);
+            res_placement = new Placement(null, new DateRange(validStart, validEnd));
         }
 
-        JobShop.LOG("Planning Task: " + this.taskNum + " between " +
-                    res_dateRange.getStart() + " and " +
-                    res_dateRange.getEnd() + " on workcenter " + this.workcenter,
-                    DEBUG_LEVELS.DETAILED);
-
-        TaskPlan tp = new TaskPlan(this, req.getPlan(), this.workcenter, res_dateRange.getStart(), res_dateRange.getEnd(), qty, req.getDemand());
-        this.plans.add(tp);
-        if (this.workcenter != null) {
-            this.workcenter.addTaskPlan(tp);
+        if (JobShop.isLoggable(DEBUG_LEVELS.DETAILED)) {
+            JobShop.LOG("Planning Task: " + this.taskNum + " between " +
+                        res_placement.getStart() + " and " +
+                        res_placement.getEnd() + " on workcenter " + res_placement.getWorkcenter(),
+                        DEBUG_LEVELS.DETAILED);
         }
+
+        TaskPlan tp = new TaskPlan(this, req.getPlan(), res_placement.getWorkcenter(), res_placement.getStart(), res_placement.getEnd(), qty, req.getDemand());
+        ctx.addTaskPlan(tp);
         List<TaskPlan> tps = new ArrayList<TaskPlan>();
         tps.add(tp);
         Promise p = new Promise(req.getDemand(), tps);
@@ -651,9 +693,10 @@ class Task implements Partitionable {
      * Checks ReleasedWorkOrders associated with this Task for available
      * planned/released quantity first before trying to plan fresh
      * @param req Request which we are trying to satisfy
+     * @param ctx PlanningContext in which the allocations are recorded
      * @return Promise representing the matching ReleasedWorkOrders
      */
-     private Promise checkReleasedWorkOrdersForQuantity(Request req) {
+     private Promise checkReleasedWorkOrdersForQuantity(Request req, PlanningContext ctx) {
 
         Demand dmd = req.getDemand();
         long origQty = req.getQuantity();
@@ -667,6 +710,7 @@ class Task implements Partitionable {
         // Search first from date of request to earlier dates
         List<ReleasedWorkOrder> type1_WO = this.relworkorders.stream()
                                    .filter(w -> w.getDemand() == dmd)
+                                   .filter(w -> w.getPlan() == p)
                                    .filter(w -> (w.getEnd().isEqual(due) ||
                                                  w.getEnd().isBefore(due)))
                                    .sorted(Comparator.comparing(ReleasedWorkOrder::getEnd).reversed())
@@ -677,7 +721,7 @@ class Task implements Partitionable {
                 break;
             }
             Request woReq = new Request(dmd, remQty, due, p);
-            Promise woPromise = wo.request(woReq);
+            Promise woPromise = wo.request(woReq, ctx);
             allWOPromises.add(woPromise);
             for (TaskPlan tp : woPromise.getTaskPlans()) {
                 remQty -= tp.getQuantity();
@@ -688,6 +732,7 @@ class Task implements Partitionable {
         // but have a date later than this request
         List<ReleasedWorkOrder> type2_WO = this.relworkorders.stream()
                                    .filter(w -> w.getDemand() == dmd)
+                                   .filter(w -> w.getPlan() == p)
                                    .filter(w -> w.getEnd().isAfter(due))
                                    .sorted(Comparator.comparing(ReleasedWorkOrder::getEnd))
                                    .collect(Collectors.toList());
@@ -697,7 +742,7 @@ class Task implements Partitionable {
                 break;
             }
             Request woReq = new Request(dmd, remQty, due, p);
-            Promise woPromise = wo.request(woReq);
+            Promise woPromise = wo.request(woReq, ctx);
             allWOPromises.add(woPromise);
             for (TaskPlan tp : woPromise.getTaskPlans()) {
                 remQty -= tp.getQuantity();
@@ -708,6 +753,7 @@ class Task implements Partitionable {
         // Search first from date of request to earlier dates
         List<ReleasedWorkOrder> type3_WO = this.relworkorders.stream()
                                    .filter(w -> w.getDemand() == null)
+                                   .filter(w -> w.getPlan() == p)
                                    .filter(w -> (w.getEnd().isEqual(due) ||
                                                  w.getEnd().isBefore(due)))
                                    .sorted(Comparator.comparing(ReleasedWorkOrder::getEnd).reversed())
@@ -718,7 +764,7 @@ class Task implements Partitionable {
                 break;
             }
             Request woReq = new Request(dmd, remQty, due, p);
-            Promise woPromise = wo.request(woReq);
+            Promise woPromise = wo.request(woReq, ctx);
             allWOPromises.add(woPromise);
             for (TaskPlan tp : woPromise.getTaskPlans()) {
                 remQty -= tp.getQuantity();
@@ -729,6 +775,7 @@ class Task implements Partitionable {
         // but have a date later than this request
         List<ReleasedWorkOrder> type4_WO = this.relworkorders.stream()
                                    .filter(w -> w.getDemand() == null)
+                                   .filter(w -> w.getPlan() == p)
                                    .filter(w -> w.getEnd().isAfter(due))
                                    .sorted(Comparator.comparing(ReleasedWorkOrder::getEnd))
                                    .collect(Collectors.toList());
@@ -738,7 +785,7 @@ class Task implements Partitionable {
                 break;
             }
             Request woReq = new Request(dmd, remQty, due, p);
-            Promise woPromise = wo.request(woReq);
+            Promise woPromise = wo.request(woReq, ctx);
             allWOPromises.add(woPromise);
             for (TaskPlan tp : woPromise.getTaskPlans()) {
                 remQty -= tp.getQuantity();
@@ -790,17 +837,17 @@ class Task implements Partitionable {
 
         if (this.workcenters.size() > 0) {
             List<Workcenter> wrks = this.workcenters.entrySet().stream()
-                                    .sorted(Map.Entry.comparingByValue())
+                                    .sorted(WORKCENTER_PREFERENCE)
                                     .map(Map.Entry::getKey)
                                     .collect(Collectors.toList());
 
-            JobShop.LOG("Found: " + this.workcenters.size() + " workcenters...",
-                        JobShop.DEBUG_LEVELS.MAXIMAL);
+            JobShop.LOG(() -> "Found: " + this.workcenters.size() + " workcenters...",
+                              JobShop.DEBUG_LEVELS.MAXIMAL);
 
             DateRange minmax = new DateRange(dmd.getPlan().getEnd(), dmd.getPlan().getEnd());
             for (Workcenter w : wrks) {
-                JobShop.LOG("Processing workcenter: " + w.getName(),
-                            JobShop.DEBUG_LEVELS.MAXIMAL);
+                JobShop.LOG(() -> "Processing workcenter: " + w.getName(),
+                                  JobShop.DEBUG_LEVELS.MAXIMAL);
                 Calendar cal = w.getCalendar();
                 DateRange dr = CalendarUtils.calcStartAfter(cal, epst, baseLT);
                 if (dr.getStart().isBefore(minmax.getStart())) {
@@ -851,17 +898,17 @@ class Task implements Partitionable {
 
         if (this.workcenters.size() > 0) {
             List<Workcenter> wrks = this.workcenters.entrySet().stream()
-                                    .sorted(Map.Entry.comparingByValue())
+                                    .sorted(WORKCENTER_PREFERENCE)
                                     .map(Map.Entry::getKey)
                                     .collect(Collectors.toList());
 
-            JobShop.LOG("Found: " + this.workcenters.size() + " workcenters...",
-                        JobShop.DEBUG_LEVELS.MAXIMAL);
+            JobShop.LOG(() -> "Found: " + this.workcenters.size() + " workcenters...",
+                              JobShop.DEBUG_LEVELS.MAXIMAL);
 
             DateRange minmax = new DateRange(dmd.getPlan().getStart(), dmd.getPlan().getStart());
             for (Workcenter w : wrks) {
-                JobShop.LOG("Processing workcenter: " + w.getName(),
-                            JobShop.DEBUG_LEVELS.MAXIMAL);
+                JobShop.LOG(() -> "Processing workcenter: " + w.getName(),
+                                  JobShop.DEBUG_LEVELS.MAXIMAL);
                 Calendar cal = w.getCalendar();
                 DateRange dr = CalendarUtils.calcEndBefore(cal, lpet, baseLT);
                 if (dr.getStart().isAfter(minmax.getStart())) {
@@ -968,6 +1015,30 @@ class Task implements Partitionable {
         return this.time_per;
     }
 
+    /**
+     * Returns the setup time associated with this task
+     * @return long representing the setup time of this task
+     */
+    long getSetupTime() {
+        return this.setup_time;
+    }
+
+    /**
+     * Returns the minimum lot size of this task
+     * @return long representing the minimum lot size of this task
+     */
+    long getMinLotSize() {
+        return this.min_lot_size;
+    }
+
+    /**
+     * Returns the maximum lot size of this task
+     * @return long representing the maximum lot size of this task
+     */
+    long getMaxLotSize() {
+        return this.max_lot_size;
+    }
+
     /**
      * Returns the EPST of this task for a given demand
      * @param dmd Demand for which we are requesting EPST of this Task
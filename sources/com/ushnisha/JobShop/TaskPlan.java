@@ -247,24 +247,34 @@ class TaskPlan {
      * @return String value representing the TaskPlan for output purposes
      */
     String taskplanString() {
-        String outStr = "";
-        outStr += this.plan.getID() + "," + this.task.getSKU().getName() +
-                   "," + this.task.getTaskID() + "," + this.start +
-                   "," + this.end + "," + this.quantity +
-                   "," + this.getDemandID() + ",";
+        return appendTaskplanString(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the csv output representation of the Task Plan (see
+     * taskplanString) to a StringBuilder
+     * @param sb StringBuilder to which the representation is appended
+     * @return StringBuilder that was passed in
+     */
+    StringBuilder appendTaskplanString(StringBuilder sb) {
+        sb.append(this.plan.getID()).append(',').append(this.task.getSKU().getName())
+          .append(',').append(this.task.getTaskID()).append(',');
+        DateTimeCodec.appendISO(sb, this.start).append(',');
+        DateTimeCodec.appendISO(sb, this.end).append(',').append(this.quantity)
+          .append(',').append(this.getDemandID()).append(',');
 
         if (this.workcenter != null) {
-            outStr += this.workcenter;
+            sb.append(this.workcenter);
         }
 
         if (this.isReleased) {
-            outStr += "," + this.relworkorder.getID() +
-                      "," + this.relworkorder.getLotID(this);
+            sb.append(',').append(this.relworkorder.getID())
+              .append(',').append(this.relworkorder.getLotID(this));
         }
         else {
-            outStr += ",,";
+            sb.append(",,");
         }
-        return outStr;
+        return sb;
     }
 
     /**
@@ -272,16 +282,27 @@ class TaskPlan {
      * @return String value representing the TaskPlan for output/log purposes
      */
     public String toString() {
-        String outStr = this.task.getTaskNumber() + " [ " +
-                        this.start + " - " + this.end + "] Qty: " +
-                        this.quantity + "; DemandID: " +
-                        this.getDemandID() +"; Plan: " +
-                        this.plan.getID() + "; Loads: " + this.workcenter;
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the string representation of the TaskPlan (see toString)
+     * to a StringBuilder
+     * @param sb StringBuilder to which the representation is appended
+     * @return StringBuilder that was passed in
+     */
+    StringBuilder appendTo(StringBuilder sb) {
+        sb.append(this.task.getTaskNumber()).append(" [ ");
+        DateTimeCodec.appendISO(sb, this.start).append(" - ");
+        DateTimeCodec.appendISO(sb, this.end).append("] Qty: ")
+          .append(this.quantity).append("; DemandID: ")
+          .append(this.getDemandID()).append("; Plan: ")
+          .append(this.plan.getID()).append("; Loads: ").append(this.workcenter);
 
         if (this.isReleased) {
-            outStr += "; RWO: " + this.relworkorder.getID() +
-                      "-" + this.relworkorder.getLotID(this);
+            sb.append("; RWO: ").append(this.relworkorder.getID())
+              .append('-').append(this.relworkorder.getLotID(this));
         }
-        return outStr;
+        return sb;
     }
 }
@@ -0,0 +1,249 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+package com.ushnisha.JobShop;
+
+import java.time.LocalDateTime;
+
+/**
+ * A start-ordered index of the busy spans (TaskPlans) loaded on a
+ * Workcenter for a single Plan.  The spans may overlap each other (for
+ * example, ReleasedWorkOrders are loaded as-is), so the index is kept as
+ * a balanced search tree (a treap) ordered by start date where each node
+ * also tracks the latest end date within its subtree.  This allows the
+ * first (and the last) span that intersects a given DateRange to be
+ * found in logarithmic time.
+ */
+class TaskPlanIndex {
+
+    private Node root;
+    private int size;
+    private long seed;
+
+    /**
+     * Constructor for an empty TaskPlanIndex
+     */
+    TaskPlanIndex() {
+        this.root = null;
+        this.size = 0;
+        this.seed = 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * Add the span of a TaskPlan to the index.  Spans of zero (or
+     * negative) length can never intersect another DateRange and are
+     * therefore not indexed.
+     * @param tp TaskPlan whose start and end must be added to the index
+     */
+    void add(TaskPlan tp) {
+        if (!tp.getStart().isBefore(tp.getEnd())) {
+            return;
+        }
+        this.root = insert(this.root, new Node(tp.getStart(), tp.getEnd(), nextPriority()));
+        this.size++;
+    }
+
+    /**
+     * Returns the number of spans in the index
+     * @return int value representing the number of indexed spans
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the latest end date of all the spans in the index
+     * @return LocalDateTime representing the latest end date of any span
+     *         in the index; null if the index is empty
+     */
+    LocalDateTime getLatestEnd() {
+        return (this.root == null) ? null : this.root.maxEnd;
+    }
+
+    /**
+     * Finds the earliest start date of all the spans that intersect
+     * the input DateRange
+     * @param dr DateRange with which the spans must intersect
+     * @return LocalDateTime representing the earliest start of an
+     *         intersecting span; null if no span intersects dr
+     */
+    LocalDateTime firstConflictStart(DateRange dr) {
+
+        LocalDateTime st = dr.getStart();
+        LocalDateTime en = dr.getEnd();
+        if (!st.isBefore(en)) {
+            return null;
+        }
+
+        // Leftmost span (in start order) that ends after st
+        Node n = this.root;
+        while (n != null) {
+            if (n.left != null && n.left.maxEnd.isAfter(st)) {
+                n = n.left;
+            }
+            else if (n.end.isAfter(st)) {
+                break;
+            }
+            else {
+                n = n.right;
+            }
+        }
+
+        if (n != null && n.start.isBefore(en)) {
+            return n.start;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the latest end date of all the spans that intersect
+     * the input DateRange
+     * @param dr DateRange with which the spans must intersect
+     * @return LocalDateTime representing the latest end of an
+     *         intersecting span; null if no span intersects dr
+     */
+    LocalDateTime lastConflictEnd(DateRange dr) {
+
+        LocalDateTime st = dr.getStart();
+        LocalDateTime en = dr.getEnd();
+        if (!st.isBefore(en)) {
+            return null;
+        }
+
+        // Latest end of all the spans that start before en
+        LocalDateTime latest = null;
+        Node n = this.root;
+        while (n != null) {
+            if (n.start.isBefore(en)) {
+                latest = later(latest, n.end);
+                if (n.left != null) {
+                    latest = later(latest, n.left.maxEnd);
+                }
+                n = n.right;
+            }
+            else {
+                n = n.left;
+            }
+        }
+
+        if (latest != null && latest.isAfter(st)) {
+            return latest;
+        }
+        return null;
+    }
+
+    /**
+     * Insert a node into the subtree rooted at n and rebalance
+     * @param n Node that is the root of the subtree
+     * @param node Node that must be inserted
+     * @return Node that is the new root of the subtree
+     */
+    private static Node insert(Node n, Node node) {
+        if (n == null) {
+            return node;
+        }
+        if (node.start.isBefore(n.start)) {
+            n.left = insert(n.left, node);
+            if (n.left.priority > n.priority) {
+                n = rotateRight(n);
+            }
+        }
+        else {
+            n.right = insert(n.right, node);
+            if (n.right.priority > n.priority) {
+                n = rotateLeft(n);
+            }
+        }
+        n.update();
+        return n;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        n.update();
+        l.update();
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        n.update();
+        r.update();
+        return r;
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b.isAfter(a)) {
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Deterministic (xorshift) priorities so that planning runs are
+     * repeatable
+     * @return int value representing the priority of the next tree node
+     */
+    private int nextPriority() {
+        this.seed ^= (this.seed << 13);
+        this.seed ^= (this.seed >>> 7);
+        this.seed ^= (this.seed << 17);
+        return (int) (this.seed >>> 32);
+    }
+
+    /**
+     * A node of the tree holding a single busy span
+     */
+    private static class Node {
+
+        private LocalDateTime start;
+        private LocalDateTime end;
+        private LocalDateTime maxEnd;
+        private int priority;
+        private Node left;
+        private Node right;
+
+        Node(LocalDateTime st, LocalDateTime en, int p) {
+            this.start = st;
+            this.end = en;
+            this.maxEnd = en;
+            this.priority = p;
+        }
+
+        void update() {
+            this.maxEnd = this.end;
+            if (this.left != null && this.left.maxEnd.isAfter(this.maxEnd)) {
+                this.maxEnd = this.left.maxEnd;
+            }
+            if (this.right != null && this.right.maxEnd.isAfter(this.maxEnd)) {
+                this.maxEnd = this.right.maxEnd;
+            }
+        }
+    }
+}
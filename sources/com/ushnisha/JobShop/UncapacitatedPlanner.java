@@ -0,0 +1,232 @@
+/**
+ **********************************************************************
+ * JobShop Minimal - A minimal JobShop Scheduler
+ **********************************************************************
+   Copyright (c) 2017-2018 Arun Kunchithapatham
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Affero General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Affero General Public License for more details.
+
+   You should have received a copy of the GNU Affero General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+   Contributors:
+   Arun Kunchithapatham - Initial Contribution
+ ***********************************************************************
+ *
+ */
+
+
+package com.ushnisha.JobShop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plans the demands of a Plan that is not RESOURCE_CONSTRAINED on a pool
+ * of threads.  Without capacity constraints a Workcenter never looks at
+ * the loads of the plan, so the only state shared by the demands is the
+ * unallocated quantity of the ReleasedWorkOrders that are not pegged to
+ * a demand.
+ *
+ * The demands whose routing has no such (unpegged) ReleasedWorkOrder are
+ * planned concurrently in chunks, each in its own PlanningContext.  The
+ * demands whose routing does are planned in priority order, one partition
+ * at a time, and the allocations (and splits) of the work orders of each
+ * are applied before the next demand of the partition is planned.  The
+ * TaskPlans of all the demands stay in their contexts until every demand
+ * is planned, and are then added to the plan in priority order, so the
+ * plan is identical to that of sequential planning.
+ */
+class UncapacitatedPlanner {
+
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final int threads;
+    private final Set<Task> shared;
+    private final List<Demand> demands;
+    private final Map<Integer, List<Integer>> partitions;
+    private final List<Integer> independent;
+    private long elapsed;
+
+    /**
+     * Constructor for an UncapacitatedPlanner
+     * @param threads int value representing the number of planning threads
+     * @param shared Set of Tasks that have ReleasedWorkOrders (of the plan)
+     *               that are not pegged to a demand
+     */
+    UncapacitatedPlanner(int threads, Set<Task> shared) {
+        this.threads = Math.max(1, threads);
+        this.shared = shared;
+        this.demands = new ArrayList<Demand>();
+        this.partitions = new TreeMap<Integer, List<Integer>>();
+        this.independent = new ArrayList<Integer>();
+        this.elapsed = 0;
+    }
+
+    /**
+     * Adds a demand to be planned.  Demands must be added in the order in
+     * which they must be planned
+     * @param d Demand that must be planned
+     */
+    void add(Demand d) {
+        int idx = this.demands.size();
+        this.demands.add(d);
+        if (usesSharedWorkOrders(d)) {
+            this.partitions.computeIfAbsent(d.getPartitionId(), k -> new ArrayList<Integer>())
+                           .add(idx);
+        }
+        else {
+            this.independent.add(idx);
+        }
+    }
+
+    /**
+     * Checks if any Task of the routing of a demand has unpegged
+     * ReleasedWorkOrders
+     */
+    private boolean usesSharedWorkOrders(Demand d) {
+        for (Task t = d.getSKU().getDeliveryTask(); t != null; t = t.getPredecessor()) {
+            if (this.shared.contains(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plans all the demands and adds their TaskPlans to the plan.  If the
+     * planning of any demand fails, the failure is rethrown and nothing
+     * is added to the plan
+     */
+    void run() {
+
+        long t0 = System.nanoTime();
+        int n = this.demands.size();
+        PlanningContext[] contexts = new PlanningContext[n];
+        Promise[] promises = new Promise[n];
+
+        try {
+            List<Callable<Void>> jobs = new ArrayList<Callable<Void>>();
+            for (List<Integer> idxs : this.partitions.values()) {
+                jobs.add(() -> plan(idxs, contexts, promises, true));
+            }
+            int chunk = Math.max(1, -Math.floorDiv(-this.independent.size(),
+                                                   this.threads * CHUNKS_PER_THREAD));
+            for (int i = 0; i < this.independent.size(); i += chunk) {
+                List<Integer> idxs = this.independent.subList(i, Math.min(i + chunk, this.independent.size()));
+                jobs.add(() -> plan(idxs, contexts, promises, false));
+            }
+            execute(jobs);
+
+            // Add the TaskPlans to the plan in priority order
+            for (int i = 0; i < n; i++) {
+                this.demands.get(i).commit(contexts[i], promises[i]);
+            }
+        }
+        finally {
+            this.elapsed = System.nanoTime() - t0;
+        }
+    }
+
+    /**
+     * Plans some of the demands, each in its own PlanningContext
+     * @param idxs List of the indexes of the demands to plan, in order
+     * @param contexts array in which the context of each demand is stored
+     * @param promises array in which the promise of each demand is stored
+     * @param allocate boolean value; if true, the work order allocations
+     *                 of each demand are applied before the next is planned
+     */
+    private Void plan(List<Integer> idxs, PlanningContext[] contexts,
+                      Promise[] promises, boolean allocate) {
+        for (int i : idxs) {
+            Demand d = this.demands.get(i);
+            PlanningContext ctx = new PlanningContext(d.getPlan());
+            promises[i] = d.request(ctx);
+            if (allocate) {
+                ctx.commitAllocations();
+            }
+            contexts[i] = ctx;
+        }
+        return null;
+    }
+
+    private void execute(List<Callable<Void>> jobs) {
+
+        if (this.threads == 1 || jobs.size() < 2) {
+            try {
+                for (Callable<Void> job : jobs) {
+                    job.call();
+                }
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.threads, jobs.size()),
+                                   r -> {
+                                       Thread t = new Thread(r, "jobshop-uncapacitated-" +
+                                                                counter.incrementAndGet());
+                                       t.setDaemon(true);
+                                       return t;
+                                   });
+        try {
+            for (Future<Void> f : pool.invokeAll(jobs)) {
+                f.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while planning demands", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of demands, the number of them that share
+     * ReleasedWorkOrders (and their partitions) and the planning time
+     * @return String representing the planning statistics for log purposes
+     */
+    public String toString() {
+        return this.demands.size() + " demands; " +
+               (this.demands.size() - this.independent.size()) +
+               " on shared work orders in " + this.partitions.size() +
+               (this.partitions.size() == 1 ? " partition; " : " partitions; ") +
+               this.elapsed / 1000000 + " ms (" + this.threads +
+               (this.threads == 1 ? " thread)" : " threads)");
+    }
+}
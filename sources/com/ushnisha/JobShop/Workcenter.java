@@ -28,7 +28,6 @@ package com.ushnisha.JobShop;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
 import java.util.Comparator;
 
 import static com.ushnisha.JobShop.JobShop.DEBUG_LEVELS;
@@ -50,7 +49,6 @@ class Workcenter implements Partitionable {
     private int internal_criticality;
     private int partitionid;
     private List<Task> tasks;
-    private List<TaskPlan> taskplans;
 
     /**
      * Constructor for the Workcenter
@@ -72,7 +70,6 @@ class Workcenter implements Partitionable {
         this.max_level = Integer.MIN_VALUE;
         this.internal_criticality = 0;
         this.tasks = new ArrayList<Task>();
-        this.taskplans = new ArrayList<TaskPlan>();
     }
 
     /**
@@ -202,35 +199,45 @@ class Workcenter implements Partitionable {
     }
 
     /**
-     * Assign a Task association for this Workcenter
-     * @param t Task that is associated with this workcenter and consumes time
+     * updates the internal_criticality of the workcenter (used when the
+     * result of the static analysis is restored from a model snapshot)
+     * @param c int value representing the internal_criticality of the workcenter
      */
-    void addTask(Task t) {
-        this.tasks.add(t);
+    void setInternalCriticality(int c) {
+        this.internal_criticality = c;
     }
 
     /**
-     * Gets the list of Tasks that are associated with this workcenter
-     * @return List<Task> that are associated with this workcenter
+     * returns the maximum number of unique Tasks that can be planned in
+     * any single shift on this workcenter
+     * @return int value representing the maximum number of setups per shift
      */
-    List<Task> getTasks() {
-        return this.tasks;
+    int getMaxSetupsPerShift() {
+        return this.max_setups_per_shift;
     }
 
     /**
-     * Assign a TaskPlan to load this Workcenter
-     * @param tp TaskPlan that is assigned to this workcenter and consumes time
+     * returns the (user specified) criticality index of this workcenter
+     * @return int value representing the criticality index of the workcenter
      */
-    void addTaskPlan(TaskPlan tp) {
-        this.taskplans.add(tp);
+    int getCriticalityIndex() {
+        return this.criticality_index;
     }
 
     /**
-     * Gets the list of TaskPlans that are planned on this workcenter
-     * @return List<TaskPlan> that are planned on this workcenter
+     * Assign a Task association for this Workcenter
+     * @param t Task that is associated with this workcenter and consumes time
+     */
+    void addTask(Task t) {
+        this.tasks.add(t);
+    }
+
+    /**
+     * Gets the list of Tasks that are associated with this workcenter
+     * @return List<Task> that are associated with this workcenter
      */
-    List<TaskPlan> getTaskPlans() {
-        return this.taskplans;
+    List<Task> getTasks() {
+        return this.tasks;
     }
 
     /**
@@ -240,9 +247,7 @@ class Workcenter implements Partitionable {
      *         specified, input Plan
      */
     List<TaskPlan> getTaskPlans(Plan p) {
-        return this.taskplans.stream()
-                   .filter(t -> t.getPlan().equals(p))
-                   .collect(Collectors.toList());
+        return p.getOverlay().getTaskPlans(this);
     }
 
     /**
@@ -251,53 +256,18 @@ class Workcenter implements Partitionable {
      * @param enddate a LocalDateTime on or before which the TaskPlan must end
      * @param baseLT a long value representing the lead time of the TaskPlan
      *        without any workcenter efficiency or working/holiday consideration
-     * @param p Plan under which we are trying to Plan this workcenter.  The PlanParams of
-     *        this plan will impose additional constraints on the planning algorithm
+     * @param ctx PlanningContext of the request.  The PlanParams of its plan
+     *        will impose additional constraints on the planning algorithm
+     * @return DateRange within which we can schedule the TaskPlan; null if
+     *         the workcenter has no free slot for it
      */
-    DateRange queryEndBefore(LocalDateTime enddate, long baseLT, Plan p) {
-
-        DateRange valid_DateRange = new DateRange(LocalDateTime.MIN, LocalDateTime.MAX);
-
-        boolean capacity_constrained = Boolean.parseBoolean(p.getParam("RESOURCE_CONSTRAINED"));
-
-        JobShop.LOG("Search for date ENDING ON ON BEFORE " +
-                    enddate + " on workcenter " + this.name,
-                    DEBUG_LEVELS.DETAILED);
-
-        valid_DateRange = CalendarUtils.calcEndBefore(efficiency_calendar, enddate, baseLT);
-
-        // If capacity constrained, make sure that there is no interesection with other taskplans
-        // planned on this workcenter
-        //
-        if (capacity_constrained) {
-            // If calendar is unable to find a valid date-range before end date; then we need to look forward
-            if (valid_DateRange.getEnd().isAfter(enddate)) {
-                return queryStartAfter(valid_DateRange.getStart(), baseLT, p);
-            }
+    DateRange queryEndBefore(LocalDateTime enddate, long baseLT, PlanningContext ctx) {
 
-            // Calendar was able to find a valid date-range before end date
-            // Now check if valid_DateRange is available and if not, look earlier
-            boolean intersects = false;
-            LocalDateTime new_enddate = LocalDateTime.MAX;
-            for (TaskPlan t : this.getTaskPlans(p)) {
-                if (t.intersects(valid_DateRange) && t.getStart().isBefore(new_enddate)) {
-                    intersects = true;
-                    new_enddate = t.getStart();
-                }
-            }
-            if (intersects) {
-
-                JobShop.LOG("Searching for daterange earlier than: " + enddate, DEBUG_LEVELS.DETAILED);
-                JobShop.LOG("Intersection of valid daterange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
-                JobShop.LOG("Looking now to end before: " + new_enddate, DEBUG_LEVELS.DETAILED);
+        JobShop.LOG(() -> "Search for date ENDING ON ON BEFORE " +
+                          enddate + " on workcenter " + this.name,
+                          DEBUG_LEVELS.DETAILED);
 
-                valid_DateRange = queryEndBefore(new_enddate, baseLT, p);
-            }
-        }
-
-        JobShop.LOG("\tFound DateRange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
-
-        return valid_DateRange;
+        return searchSlot(false, enddate, baseLT, ctx);
     }
 
     /**
@@ -306,53 +276,143 @@ class Workcenter implements Partitionable {
      * @param startdate a LocalDateTime on or after which the TaskPlan must end
      * @param baseLT a long value representing the lead time of the TaskPlan
      *        without any workcenter efficiency or working/holiday conpideration
-     * @param p Plan under which we are trying to Plan this workcenter.  The PlanParams of
-     *        this plan will impose additional constraints on the planning algorithm
+     * @param ctx PlanningContext of the request.  The PlanParams of its plan
+     *        will impose additional constraints on the planning algorithm
+     * @return DateRange within which we can schedule the TaskPlan; null if
+     *         the workcenter has no free slot for it
      */
-    DateRange queryStartAfter(LocalDateTime startdate, long baseLT, Plan p) {
+    DateRange queryStartAfter(LocalDateTime startdate, long baseLT, PlanningContext ctx) {
 
-        DateRange valid_DateRange = new DateRange(LocalDateTime.MIN, LocalDateTime.MAX);
+        JobShop.LOG(() -> "Search for date STARTING ON ON AFTER " +
+                          startdate + " on workcenter " + this.name,
+                          DEBUG_LEVELS.DETAILED);
 
-        boolean capacity_constrained = Boolean.parseBoolean(p.getParam("RESOURCE_CONSTRAINED"));
+        return searchSlot(true, startdate, baseLT, ctx);
+    }
+
+    /**
+     * Iterative search for a free slot on this workcenter.  The search moves a
+     * cursor backwards (ending on or before the cursor) or forwards (starting
+     * on or after the cursor) past the TaskPlans that intersect each probe.
+     * When the calendar cannot fit the TaskPlan in the current direction, the
+     * search switches direction.  The number of probes is capped by the
+     * MAX_SLOT_PROBES plan parameter; once the cap is reached the TaskPlan is
+     * placed after the latest load of the plan on this workcenter (or after
+     * the date, if it has none) if the calendar can fit it there, and
+     * otherwise it cannot be placed
+     * @param forward boolean value; true to search for a slot starting on or
+     *        after the date; false to search for a slot ending on or before it
+     * @param date LocalDateTime representing the initial search cursor
+     * @param baseLT a long value representing the lead time of the TaskPlan
+     *        without any workcenter efficiency or working/holiday consideration
+     * @param ctx PlanningContext of the request; the loads of its Plan and
+     *        the TaskPlans pending in the context occupy the workcenter
+     * @return DateRange within which we can schedule the TaskPlan; null if
+     *         no free slot is found within MAX_SLOT_PROBES probes
+     */
+    private DateRange searchSlot(boolean forward, LocalDateTime date, long baseLT, PlanningContext ctx) {
 
-        JobShop.LOG("Search for date STARTING ON ON AFTER " +
-                    startdate + " on workcenter " + this.name,
-                    DEBUG_LEVELS.DETAILED);
+        Plan p = ctx.getPlan();
+        boolean capacity_constrained = Boolean.parseBoolean(p.getParam("RESOURCE_CONSTRAINED"));
 
-        valid_DateRange = CalendarUtils.calcStartAfter(efficiency_calendar, startdate, baseLT);
+        if (!capacity_constrained) {
+            DateRange valid_DateRange = forward ?
+                        CalendarUtils.calcStartAfter(efficiency_calendar, date, baseLT) :
+                        CalendarUtils.calcEndBefore(efficiency_calendar, date, baseLT);
+            JobShop.LOG(() -> "\tFound DateRange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
+            return valid_DateRange;
+        }
 
         // If capacity constrained, make sure that there is no interesection with other taskplans
         // planned on this workcenter
         //
-        if (capacity_constrained) {
-            // If calendar is unable to find a valid date-range after start date; then we need to look backwards
-            if (valid_DateRange.getStart().isBefore(startdate)) {
-                return queryEndBefore(valid_DateRange.getEnd(), baseLT, p);
-            }
+        int max_probes = p.getMaxSlotProbes();
+        LocalDateTime cursor = date;
+        DateRange valid_DateRange = null;
+
+        for (int probe = 0; probe < max_probes; probe++) {
+
+            if (forward) {
+                valid_DateRange = CalendarUtils.calcStartAfter(efficiency_calendar, cursor, baseLT);
 
-            // Calendar was able to find a valid date-range after start date
-            // Now check if valid_DateRange is available and if not, look later
-            boolean intersects = false;
-            LocalDateTime new_startdate = LocalDateTime.MIN;
-            for (TaskPlan t : this.getTaskPlans(p)) {
-                if (t.intersects(valid_DateRange) && t.getEnd().isAfter(new_startdate)) {
-                    intersects = true;
-                    new_startdate = t.getEnd();
+                // If calendar is unable to find a valid date-range after start date; then we need to look backwards
+                if (valid_DateRange.getStart().isBefore(cursor)) {
+                    forward = false;
+                    cursor = valid_DateRange.getEnd();
+                    continue;
+                }
+
+                // Calendar was able to find a valid date-range after start date
+                // Now check if valid_DateRange is available and if not, look later
+                // than the latest end of the TaskPlans that intersect it
+                LocalDateTime new_startdate = ctx.lastConflictEnd(this, valid_DateRange);
+                if (new_startdate == null) {
+                    if (JobShop.isLoggable(DEBUG_LEVELS.DETAILED)) {
+                        JobShop.LOG("\tFound DateRange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
+                    }
+                    return valid_DateRange;
                 }
+
+                if (JobShop.isLoggable(DEBUG_LEVELS.DETAILED)) {
+                    JobShop.LOG("Searching for daterange later than: " + cursor, DEBUG_LEVELS.DETAILED);
+                    JobShop.LOG("Intersection with valid daterange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
+                    JobShop.LOG("Looking now to start after: " + new_startdate, DEBUG_LEVELS.DETAILED);
+                }
+
+                cursor = new_startdate;
             }
-            if (intersects) {
+            else {
+                valid_DateRange = CalendarUtils.calcEndBefore(efficiency_calendar, cursor, baseLT);
 
-                JobShop.LOG("Searching for daterange later than: " + startdate, DEBUG_LEVELS.DETAILED);
-                JobShop.LOG("Intersection with valid daterange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
-                JobShop.LOG("Looking now to start after: " + new_startdate, DEBUG_LEVELS.DETAILED);
+                // If calendar is unable to find a valid date-range before end date; then we need to look forward
+                if (valid_DateRange.getEnd().isAfter(cursor)) {
+                    forward = true;
+                    cursor = valid_DateRange.getStart();
+                    continue;
+                }
 
-                valid_DateRange = queryStartAfter(new_startdate, baseLT, p);
+                // Calendar was able to find a valid date-range before end date
+                // Now check if valid_DateRange is available and if not, look earlier
+                // than the earliest start of the TaskPlans that intersect it
+                LocalDateTime new_enddate = ctx.firstConflictStart(this, valid_DateRange);
+                if (new_enddate == null) {
+                    if (JobShop.isLoggable(DEBUG_LEVELS.DETAILED)) {
+                        JobShop.LOG("\tFound DateRange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
+                    }
+                    return valid_DateRange;
+                }
+
+                if (JobShop.isLoggable(DEBUG_LEVELS.DETAILED)) {
+                    JobShop.LOG("Searching for daterange earlier than: " + cursor, DEBUG_LEVELS.DETAILED);
+                    JobShop.LOG("Intersection of valid daterange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
+                    JobShop.LOG("Looking now to end before: " + new_enddate, DEBUG_LEVELS.DETAILED);
+                }
+
+                cursor = new_enddate;
             }
         }
 
-        JobShop.LOG("\tFound DateRange: " + valid_DateRange, DEBUG_LEVELS.DETAILED);
+        // Probe limit reached; fall back to the first slot after the latest
+        // load on this workcenter (or after the date, if it has no loads)
+        // if the calendar can accommodate it.  The last range probed
+        // intersects other loads, so it is never returned
+        LocalDateTime latest = ctx.getLatestEnd(this);
+        if (latest == null) {
+            latest = date;
+        }
+        DateRange fallback_DateRange = null;
+        DateRange dr = CalendarUtils.calcStartAfter(efficiency_calendar, latest, baseLT);
+        if (!dr.getStart().isBefore(latest) && ctx.lastConflictEnd(this, dr) == null) {
+            fallback_DateRange = dr;
+        }
+
+        JobShop.LOG("Warning! Workcenter " + this.name + " reached the limit of " +
+                    max_probes + " probes searching for a slot from " + date +
+                    (fallback_DateRange == null ? "; no free slot found" :
+                                                  "; using DateRange: " + fallback_DateRange),
+                    DEBUG_LEVELS.MINIMAL);
 
-        return valid_DateRange;
+        return fallback_DateRange;
     }
 
     /**
@@ -370,9 +430,7 @@ class Workcenter implements Partitionable {
         long drLength = dr.getLength();
         long tpCumlLength = 0;
 
-        for (TaskPlan tp : this.taskplans.stream()
-                               .filter(tp -> tp.getPlan() == pln)
-                               .collect(Collectors.toList())) {
+        for (TaskPlan tp : getTaskPlans(pln)) {
             ReleasedWorkOrder rwo = tp.getReleasedWorkOrder();
             if (rwo != null) {
                 if (rwos.contains(rwo)) {
@@ -400,12 +458,24 @@ class Workcenter implements Partitionable {
      *         a form suitable for output to file
      */
     String wrkUtilString(Plan pln, DateRange dr) {
+        return appendWrkUtilString(new StringBuilder(), pln, dr).toString();
+    }
+
+    /**
+     * Appends the string representing utilization of the workcenter for a
+     * given plan and data range (see wrkUtilString) to a StringBuilder
+     * @param sb StringBuilder to which the representation is appended
+     * @param pln Plan for which we are calculating utilization
+     * @param dr DateRange within which we want to calculate utilization
+     * @return StringBuilder that was passed in
+     */
+    StringBuilder appendWrkUtilString(StringBuilder sb, Plan pln, DateRange dr) {
 
         Double util = Double.max(this.calculateUtilization(pln, dr), Double.valueOf(0.0));
-        String outStr = pln.getID() + "," + this.name + "," +
-                        dr.getStart() + "," + dr.getEnd() + "," +
-                        util.toString();
-        return outStr;
+        sb.append(pln.getID()).append(',').append(this.name).append(',');
+        DateTimeCodec.appendISO(sb, dr.getStart()).append(',');
+        DateTimeCodec.appendISO(sb, dr.getEnd()).append(',');
+        return sb.append(util.toString());
     }
 
     /**
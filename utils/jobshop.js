@@ -106,10 +106,8 @@ function onClickDemandPlanView() {
 function handleImportInputClickEvent(event) {
     
     let input_file = event.target.files[0];
-    let reader = new FileReader();
-    reader.onload =
-        function(e) {
-            let inputStr = e.target.result;
+    readInputFile(input_file)
+        .then(function(inputStr) {
             try {
                 // initialize input data related variables
                 let input_data = JSON.parse(inputStr);
@@ -132,8 +130,20 @@ function handleImportInputClickEvent(event) {
             catch (e) {
                 console.log(e);
             }
-        };
-    reader.readAsText(input_file);
+        })
+        .catch(function(e) {
+            console.log(e);
+        });
+}
+
+// Read the exported plan as text; gzip compressed exports (.json.gz)
+// are decompressed as they are streamed in
+function readInputFile(input_file) {
+    if (input_file.name.endsWith(".gz")) {
+        let stream = input_file.stream().pipeThrough(new DecompressionStream("gzip"));
+        return new Response(stream).text();
+    }
+    return input_file.text();
 }
 
 function clearCharts() {